@@ -0,0 +1,159 @@
+package com.example.android.newsapp;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Flings through a feed of made up stories, with the text of the rows laid out while they
+ * are bound and then laid out ahead in the background, and reports the frame time
+ * percentiles of both. Run it on a real device for numbers that mean something.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FeedFlingTest {
+
+    private static final String LOG_TAG = FeedFlingTest.class.getSimpleName();
+
+    private static final int STORY_COUNT = 300;
+    private static final int FLINGS_PER_RUN = 4;
+    private static final long SETTLE_TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class);
+
+    private Instrumentation instrumentation;
+    private RecyclerView recyclerView;
+    private NewsItemAdapter adapter;
+
+    @Before
+    public void setUp() throws Throwable {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        final MainActivity activity = activityRule.getActivity();
+        recyclerView = activity.findViewById(R.id.newsItemRecyclerView);
+        adapter = (NewsItemAdapter) recyclerView.getAdapter();
+
+        final CountDownLatch committed = new CountDownLatch(1);
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // the same feed on every run, instead of whatever the network or the cache has
+                activity.getLoaderManager().destroyLoader(0);
+                activity.findViewById(R.id.loading_spinner).setVisibility(View.GONE);
+                activity.findViewById(R.id.empty_list_view).setVisibility(View.GONE);
+                recyclerView.setVisibility(View.VISIBLE);
+                adapter.submitList(madeUpStories(), new Runnable() {
+                    @Override
+                    public void run() {
+                        committed.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+        instrumentation.waitForIdleSync();
+        assertEquals(STORY_COUNT, adapter.getItemCount());
+    }
+
+    @Test
+    public void flingWithAndWithoutTextLaidOutAhead() throws Throwable {
+        // warm up, so neither run pays for loading fonts and compiling code
+        fling(true);
+
+        LatencyHistogram onBind = fling(false);
+        LatencyHistogram laidOutAhead = fling(true);
+
+        String onBindFrames = FrameTimeRecorder.describe(onBind);
+        String laidOutAheadFrames = FrameTimeRecorder.describe(laidOutAhead);
+        Log.i(LOG_TAG, "text laid out on bind: " + onBindFrames);
+        Log.i(LOG_TAG, "text laid out ahead: " + laidOutAheadFrames);
+        Bundle results = new Bundle();
+        results.putString("text_laid_out_on_bind", onBindFrames);
+        results.putString("text_laid_out_ahead", laidOutAheadFrames);
+        instrumentation.sendStatus(0, results);
+
+        assertTrue(onBind.getCount() > 0);
+        assertTrue(laidOutAhead.getCount() > 0);
+    }
+
+    /**
+     * Fling down the feed from the top a few times, recording the frame intervals.
+     */
+    private LatencyHistogram fling(final boolean layOutAhead) throws Throwable {
+        final FrameTimeRecorder recorder = new FrameTimeRecorder(new LatencyHistogram());
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                CardTextLayouts textLayouts = adapter.getTextLayouts();
+                textLayouts.setPrefetchEnabled(layOutAhead);
+                textLayouts.clear();
+                recyclerView.scrollToPosition(0);
+                recyclerView.addOnScrollListener(recorder);
+            }
+        });
+        instrumentation.waitForIdleSync();
+
+        for (int i = 0; i < FLINGS_PER_RUN; i++) {
+            activityRule.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    recyclerView.fling(0, recyclerView.getMaxFlingVelocity());
+                }
+            });
+            long deadline = SystemClock.uptimeMillis() + SETTLE_TIMEOUT_MILLIS;
+            while (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE
+                    && SystemClock.uptimeMillis() < deadline) {
+                SystemClock.sleep(50);
+            }
+        }
+
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView.removeOnScrollListener(recorder);
+                recorder.stop();
+            }
+        });
+        return recorder.getHistogram();
+    }
+
+    private static List<NewsItem> madeUpStories() {
+        String[] headlines = {
+                "Short headline",
+                "A headline long enough to wrap onto a second line of the card",
+                "A much longer headline, of the kind that wraps onto three lines on most phones, "
+                        + "with a clause or two more than it needs"
+        };
+        StringBuilder trailText = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            trailText.append("Trail text that runs well past the three lines the card shows. ");
+        }
+
+        long now = System.currentTimeMillis();
+        List<NewsItem> newsItems = new ArrayList<>(STORY_COUNT);
+        for (int i = 0; i < STORY_COUNT; i++) {
+            newsItems.add(new NewsItem("Section " + (i % 7), headlines[i % headlines.length] + " " + i,
+                    trailText.substring(i % 40), "Author " + (i % 11), now - TimeUnit.HOURS.toMillis(i),
+                    "https://example.com/story/" + i, ""));
+        }
+        return newsItems;
+    }
+}
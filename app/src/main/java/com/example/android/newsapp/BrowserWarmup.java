@@ -0,0 +1,233 @@
+package com.example.android.newsapp;
+
+import android.content.ActivityNotFoundException;
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.customtabs.CustomTabsClient;
+import android.support.customtabs.CustomTabsIntent;
+import android.support.customtabs.CustomTabsService;
+import android.support.customtabs.CustomTabsServiceConnection;
+import android.support.customtabs.CustomTabsSession;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a browser that supports Custom Tabs warm while the feed is on screen, so a story
+ * opens without waiting on a cold browser. Binding starts the browser and preconnects it,
+ * and the stories whose rows the user lingers on, as predicted by {@link WarmupPredictor},
+ * are hinted to it so it can connect to them and prerender the likeliest one.
+ * Stories open in a Custom Tab of that browser, or with a plain view intent when there is
+ * no such browser.
+ */
+public class BrowserWarmup extends RecyclerView.OnScrollListener {
+
+    private static final String LOG_TAG = BrowserWarmup.class.getSimpleName();
+
+    /** Time a row has to be fully visible, with the feed at rest, before its story is hinted */
+    static final long MIN_DWELL_MILLIS = 600;
+
+    /** Stories hinted at most per budget window */
+    static final int MAX_HINTS = 6;
+
+    private static final long BUDGET_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** Other likely stories sent along with each hint */
+    static final int MAX_OTHER_URLS = 3;
+
+    // Lists the saved stories, so telling the visible rows apart from them doesn't touch the disk
+    private static final Executor INDEX_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+    private final WarmupPredictor mPredictor =
+            new WarmupPredictor(MIN_DWELL_MILLIS, MAX_HINTS, BUDGET_WINDOW_MILLIS, MAX_OTHER_URLS);
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mHint = new Runnable() {
+        @Override
+        public void run() {
+            hintLikelyStories();
+        }
+    };
+
+    private CustomTabsServiceConnection mConnection;
+    private CustomTabsSession mSession;
+
+    /**
+     * Constructs a new {@link BrowserWarmup}.
+     *
+     * @param context of the activity showing the feed, which the browser is bound to
+     */
+    public BrowserWarmup(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Bind to the default browser if it supports Custom Tabs, and warm it up. Call from
+     * onStart.
+     */
+    public void bind() {
+        if (mConnection != null) {
+            return;
+        }
+        final ArticleBodyStore savedStories = OfflineArticles.getStore(mContext);
+        INDEX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                savedStories.index();
+            }
+        });
+        String packageName = CustomTabsClient.getPackageName(mContext, null);
+        if (packageName == null) {
+            Log.v(LOG_TAG, "no browser supports Custom Tabs, stories open with a view intent");
+            return;
+        }
+        mConnection = new CustomTabsServiceConnection() {
+            @Override
+            public void onCustomTabsServiceConnected(ComponentName name, CustomTabsClient client) {
+                client.warmup(0);
+                mSession = client.newSession(null);
+                scheduleHint();
+            }
+
+            @Override
+            public void onServiceDisconnected(ComponentName name) {
+                mSession = null;
+            }
+        };
+        if (!CustomTabsClient.bindCustomTabsService(mContext, packageName, mConnection)) {
+            mConnection = null;
+        }
+    }
+
+    /**
+     * Let the browser go. Call from onStop.
+     */
+    public void unbind() {
+        mHandler.removeCallbacks(mHint);
+        if (mConnection != null) {
+            mContext.unbindService(mConnection);
+            mConnection = null;
+            mSession = null;
+        }
+    }
+
+    /**
+     * Forget the stories seen so far, for a new feed.
+     */
+    public void reset() {
+        mHandler.removeCallbacks(mHint);
+        mPredictor.reset();
+    }
+
+    /**
+     * Open the url in a Custom Tab of the warmed up browser, or with a view intent if there
+     * is none.
+     */
+    public void open(Context context, String url) {
+        if (mSession != null) {
+            CustomTabsIntent customTabsIntent = new CustomTabsIntent.Builder(mSession)
+                    .setToolbarColor(ContextCompat.getColor(context, R.color.colorPrimary))
+                    .setShowTitle(true)
+                    .build();
+            try {
+                customTabsIntent.launchUrl(context, Uri.parse(url));
+                return;
+            } catch (ActivityNotFoundException e) {
+                // the browser went away since we bound to it
+                Log.w(LOG_TAG, "Custom Tab couldn't be opened", e);
+            }
+        }
+        ReaderActivity.openInBrowser(context, url);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        updateVisible(recyclerView);
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        // while scrolling nothing dwells; at rest this reports a layout, e.g. a new list
+        if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+            updateVisible(recyclerView);
+        }
+    }
+
+    private void updateVisible(RecyclerView recyclerView) {
+        long now = SystemClock.uptimeMillis();
+        if (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE
+                || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)
+                || !(recyclerView.getAdapter() instanceof NewsItemAdapter)) {
+            mPredictor.setVisible(Collections.<String>emptyList(), now);
+            mHandler.removeCallbacks(mHint);
+            return;
+        }
+
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstCompletelyVisibleItemPosition();
+        int last = layoutManager.findLastCompletelyVisibleItemPosition();
+        List<NewsItem> newsItems = ((NewsItemAdapter) recyclerView.getAdapter()).getNewsItems();
+        List<String> visibleUrls = new ArrayList<>();
+        if (first != RecyclerView.NO_POSITION) {
+            ArticleBodyStore savedStories = OfflineArticles.getStore(mContext);
+            for (int position = first; position <= last && position < newsItems.size(); position++) {
+                String webUrl = newsItems.get(position).getWebUrl();
+                // saved stories open in the reader, the browser doesn't need them; the store
+                // keeps their names in memory, so this doesn't touch the disk
+                if (!savedStories.contains(webUrl)) {
+                    visibleUrls.add(webUrl);
+                }
+            }
+        }
+        mPredictor.setVisible(visibleUrls, now);
+        scheduleHint();
+    }
+
+    private void scheduleHint() {
+        mHandler.removeCallbacks(mHint);
+        if (mSession == null) {
+            return;
+        }
+        long delay = mPredictor.millisUntilLikely(SystemClock.uptimeMillis());
+        if (delay >= 0) {
+            mHandler.postDelayed(mHint, delay);
+        }
+    }
+
+    private void hintLikelyStories() {
+        CustomTabsSession session = mSession;
+        if (session == null) {
+            return;
+        }
+        WarmupPredictor.Hint hint = mPredictor.nextHint(SystemClock.uptimeMillis());
+        if (hint == null) {
+            // the budget is spent, so try again once the oldest hint leaves the window, or
+            // the likely stories were hinted already and there's nothing to wait for
+            scheduleHint();
+            return;
+        }
+        List<Bundle> otherLikelyBundles = new ArrayList<>(hint.getOtherUrls().size());
+        for (String url : hint.getOtherUrls()) {
+            Bundle bundle = new Bundle();
+            bundle.putParcelable(CustomTabsService.KEY_URL, Uri.parse(url));
+            otherLikelyBundles.add(bundle);
+        }
+        session.mayLaunchUrl(Uri.parse(hint.getLikelyUrl()), null, otherLikelyBundles);
+        Log.v(LOG_TAG, "hinted " + hint.getLikelyUrl() + " and " + otherLikelyBundles.size() + " more");
+        // more stories on screen may become likely in turn
+        scheduleHint();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.android.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.util.LruCache;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Lays out the text of feed cards on a background thread, for the rows about to be bound, so
+ * binding a row only attaches prepared layouts and measuring it measures no text. The styles
+ * come from an inflated card and the widths from the width of the list, so the layouts are
+ * the ones the card's own views would have made.
+ * <p>
+ * The layouts of the most recently shown cards are kept, keyed by web url. A card whose
+ * layouts aren't ready when it is bound is laid out right away, on the main thread. All
+ * methods are called on the main thread.
+ */
+public class CardTextLayouts {
+
+    /** Number of rows ahead of the last bound row whose text is laid out */
+    static final int PREFETCH_COUNT = 6;
+
+    /** Number of cards whose layouts are kept, a few screens' worth */
+    private static final int CACHE_SIZE = 48;
+
+    // Layouts are built on this thread
+    private static final Executor LAYOUT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * The text of one card, laid out.
+     */
+    static final class Layouts {
+        final NewsItem newsItem;
+        final Layout headline;
+        final Layout trailText;
+        final Layout category;
+        final Layout author;
+        final Layout date;
+
+        Layouts(NewsItem newsItem, Layout headline, Layout trailText, Layout category, Layout author, Layout date) {
+            this.newsItem = newsItem;
+            this.headline = headline;
+            this.trailText = trailText;
+            this.category = category;
+            this.author = author;
+            this.date = date;
+        }
+    }
+
+    /**
+     * Style and width of one text view of the card.
+     */
+    private static final class Field {
+        private final TextLayoutView.Style mStyle;
+        private final int mWidth;
+        private final boolean mWrapWidth;
+
+        Field(TextLayoutView view, View itemView, int listWidth) {
+            mStyle = view.getStyle();
+            mWidth = textWidth(view, itemView, listWidth);
+            mWrapWidth = view.getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT;
+        }
+
+        Layout build(String text) {
+            return mStyle.build(text != null ? text : "", mWidth, mWrapWidth);
+        }
+    }
+
+    /**
+     * Styles and widths of all the text views of a card, in a list of the given width.
+     */
+    private static final class CardGeometry {
+        final int listWidth;
+        private final Field mHeadline;
+        private final Field mTrailText;
+        private final Field mCategory;
+        private final Field mAuthor;
+        private final Field mDate;
+
+        CardGeometry(NewsItemAdapter.ViewHolder viewHolder, int listWidth) {
+            this.listWidth = listWidth;
+            mHeadline = new Field(viewHolder.headlineView, viewHolder.itemView, listWidth);
+            mTrailText = new Field(viewHolder.trailTextView, viewHolder.itemView, listWidth);
+            mCategory = new Field(viewHolder.categoryView, viewHolder.itemView, listWidth);
+            mAuthor = new Field(viewHolder.authorView, viewHolder.itemView, listWidth);
+            mDate = new Field(viewHolder.dateView, viewHolder.itemView, listWidth);
+        }
+
+        Layouts build(NewsItem newsItem) {
+            return new Layouts(newsItem,
+                    mHeadline.build(newsItem.getHeadline()),
+                    mTrailText.build(newsItem.getTrailText()),
+                    mCategory.build(newsItem.getCategory()),
+                    mAuthor.build(newsItem.getAuthor()),
+                    // cached per day, so this doesn't parse or create a formatter
+                    mDate.build(PublicationDates.format(newsItem.getPublicationTime())));
+        }
+    }
+
+    private final LruCache<String, Layouts> mCache = new LruCache<>(CACHE_SIZE);
+    // web urls of the cards being laid out in the background
+    private final Set<String> mPending = new HashSet<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // read by the layout thread, to skip work for a geometry that was replaced
+    private volatile CardGeometry mGeometry;
+    private boolean mPrefetchEnabled = true;
+
+    /**
+     * Take the styles of the card's text from the given row, for a list of the given width.
+     * Layouts made for another width are dropped. Cheap when nothing changed.
+     */
+    public void setGeometry(NewsItemAdapter.ViewHolder viewHolder, int listWidth) {
+        if (listWidth <= 0 || (mGeometry != null && mGeometry.listWidth == listWidth)) {
+            return;
+        }
+        mGeometry = new CardGeometry(viewHolder, listWidth);
+        clear();
+    }
+
+    /**
+     * Get the layouts of the news item's text, laying them out now if they aren't ready.
+     * Returns null until the geometry of the cards is known.
+     */
+    public Layouts get(NewsItem newsItem) {
+        if (mGeometry == null) {
+            return null;
+        }
+        Layouts layouts = mCache.get(newsItem.getWebUrl());
+        // a refreshed story may have a new headline or trail text under the same url
+        boolean prepared = layouts != null
+                && (layouts.newsItem == newsItem || layouts.newsItem.contentEquals(newsItem));
+        ThumbnailMetrics.recordTextLayout(prepared);
+        if (!prepared) {
+            layouts = mGeometry.build(newsItem);
+            mCache.put(newsItem.getWebUrl(), layouts);
+        }
+        return layouts;
+    }
+
+    /**
+     * Lay out the news item's text in the background, unless that is already done or under way.
+     */
+    public void prefetch(NewsItem newsItem) {
+        final String webUrl = newsItem.getWebUrl();
+        if (!mPrefetchEnabled || mGeometry == null || mPending.contains(webUrl)) {
+            return;
+        }
+        Layouts cached = mCache.get(webUrl);
+        if (cached != null && (cached.newsItem == newsItem || cached.newsItem.contentEquals(newsItem))) {
+            return;
+        }
+
+        mPending.add(webUrl);
+        final CardGeometry geometry = mGeometry;
+        final NewsItem item = newsItem;
+        LAYOUT_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Layouts layouts = geometry == mGeometry ? geometry.build(item) : null;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // layouts for a list width that changed since are of no use
+                        if (layouts != null && geometry == mGeometry && mPending.remove(webUrl)) {
+                            mCache.put(webUrl, layouts);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Turn laying out ahead of binding on or off, e.g. to measure what it gains.
+     */
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        mPrefetchEnabled = prefetchEnabled;
+    }
+
+    /**
+     * Drop every prepared layout.
+     */
+    public void clear() {
+        mCache.evictAll();
+        mPending.clear();
+    }
+
+    /**
+     * Width the text of the view is laid out at: the width of the list, less the margins and
+     * padding of the view and of its parents up to the row.
+     */
+    private static int textWidth(View view, View itemView, int listWidth) {
+        int width = listWidth;
+        for (View v = view; ; v = (View) v.getParent()) {
+            width -= v.getPaddingLeft() + v.getPaddingRight();
+            if (v.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+                ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) v.getLayoutParams();
+                width -= params.getMarginStart() + params.getMarginEnd();
+            }
+            if (v == itemView) {
+                return Math.max(width, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds the Guardian API queries for the feed the user has configured in the settings,
+ * shared by {@link MainActivity} and the background sync so both load the same urls.
+ */
+public final class FeedQueries {
+
+    private static final String LOG_TAG = FeedQueries.class.getSimpleName();
+
+    /**
+     * target url for a Guardian API query
+     */
+    private static final String JSON_RESPONSE = "https://content.guardianapis.com/search?";
+
+    // initialize String constant to store value of private api key the the Guardian Api
+    private static final String API_KEY = "49c021e8-1aba-47fe-887d-e7ff6cd5888b";
+
+    private FeedQueries() {
+    }
+
+    /**
+     * Return the query urls for the configured topic and date order: one url, or one per
+     * section when the user reads several sections combined.
+     */
+    public static List<String> buildUrls(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        String topic = sharedPrefs.getString(
+                context.getString(R.string.settings_display_by_topic_key),
+                context.getString(R.string.settings_display_by_topic_default));
+
+        String dateOrder = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_date_key),
+                context.getString(R.string.settings_order_by_date_default));
+
+        if (topic.equals(context.getString(R.string.settings_display_my_sections_value))) {
+            // one query per chosen section, the loader fetches them in parallel and merges them
+            Set<String> sections = sharedPrefs.getStringSet(
+                    context.getString(R.string.settings_my_sections_key),
+                    new HashSet<>(Arrays.asList(context.getResources().getStringArray(R.array.settings_my_sections_default))));
+            if (!sections.isEmpty()) {
+                List<String> urls = new ArrayList<>(sections.size());
+                for (String section : new TreeSet<>(sections)) {
+                    urls.add(buildQueryUrl(context, section, dateOrder));
+                }
+                return urls;
+            }
+            topic = context.getString(R.string.settings_display_by_topic_default);
+        }
+
+        return Collections.singletonList(buildQueryUrl(context, topic, dateOrder));
+    }
+
+    /**
+     * Build the Guardian API query for the html bodies of the given articles, all in one
+     * response.
+     */
+    public static String buildArticleBodiesUrl(List<String> webUrls) {
+        // the content id of an article is the path of its web url
+        StringBuilder ids = new StringBuilder();
+        for (String webUrl : webUrls) {
+            String path = Uri.parse(webUrl).getPath();
+            if (path == null || path.length() <= 1) {
+                continue;
+            }
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(path.substring(1));
+        }
+
+        return Uri.parse(JSON_RESPONSE).buildUpon()
+                .appendQueryParameter("format", "json")
+                .appendQueryParameter("ids", ids.toString())
+                .appendQueryParameter("show-fields", "body")
+                .appendQueryParameter("page-size", String.valueOf(webUrls.size()))
+                .appendQueryParameter("api-key", API_KEY)
+                .toString();
+    }
+
+    /**
+     * Build the Guardian API query for the stories matching the search terms, best match
+     * first, with the same fields as the feed.
+     */
+    public static String buildSearchUrl(Context context, String query) {
+        Uri.Builder uriBuilder = Uri.parse(JSON_RESPONSE).buildUpon();
+        uriBuilder.appendQueryParameter("format", "json");
+        uriBuilder.appendQueryParameter("q", query);
+        uriBuilder.appendQueryParameter("show-fields", context.getString(R.string.show_fields_values));
+        uriBuilder.appendQueryParameter("order-by", "relevance");
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(NewsFeedPager.PAGE_SIZE));
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Build the Guardian API query for the first page of a section.
+     */
+    private static String buildQueryUrl(Context context, String section, String dateOrder) {
+        // parse breaks apart the URI string that's passed into its parameter
+        Uri baseUri = Uri.parse(JSON_RESPONSE);
+
+        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        // Append query parameter and its value. For example, the `format=geojson`
+        uriBuilder.appendQueryParameter("format", "json");
+        uriBuilder.appendQueryParameter("section", section);
+        uriBuilder.appendQueryParameter("show-fields", context.getString(R.string.show_fields_values));
+        uriBuilder.appendQueryParameter("order-by", dateOrder);
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(NewsFeedPager.PAGE_SIZE));
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+
+        Log.v(LOG_TAG, uriBuilder.toString());
+
+        return uriBuilder.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.android.newsapp;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic job that keeps the cached feed fresh while the app isn't open, so opening it
+ * shows recent news without waiting on the network.
+ * <p>
+ * Two jobs are scheduled: one that runs on an unmetered network, and one that runs on any
+ * network while the device is charging. Both hand the work to the shared {@link FeedSyncer},
+ * which makes sure only one of them actually syncs when they fire together. The job on an
+ * unmetered network also saves the top stories for offline reading, if the user wants that.
+ * The jobs are persisted, so syncing carries on after a reboot without the app being opened.
+ */
+public class FeedSyncJobService extends JobService {
+
+    private static final String LOG_TAG = FeedSyncJobService.class.getSimpleName();
+
+    private static final int JOB_ID_UNMETERED = 1;
+    private static final int JOB_ID_CHARGING = 2;
+
+    private static final long SYNC_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** First retry delay after a failed sync, doubled on every further failure */
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** Runs the syncs off the main thread, one at a time */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /** Cancels the sync of a running job, by job id */
+    private final ConcurrentMap<Integer, CancellationToken> mCancellations = new ConcurrentHashMap<>();
+
+    /**
+     * Schedule the sync jobs, unless they are scheduled already. Scheduling a job again
+     * would restart its period, so the jobs are left alone once they exist, except for jobs
+     * scheduled by an older version that weren't persisted.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        Objects.requireNonNull(scheduler);
+
+        boolean unmeteredScheduled = false;
+        boolean chargingScheduled = false;
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            unmeteredScheduled |= job.getId() == JOB_ID_UNMETERED && job.isPersisted();
+            chargingScheduled |= job.getId() == JOB_ID_CHARGING && job.isPersisted();
+        }
+
+        ComponentName service = new ComponentName(context, FeedSyncJobService.class);
+        if (!unmeteredScheduled) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_UNMETERED, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                    .setPeriodic(SYNC_PERIOD_MILLIS)
+                    .setBackoffCriteria(INITIAL_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                    .setPersisted(true)
+                    .build());
+        }
+        if (!chargingScheduled) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_CHARGING, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                    .setRequiresCharging(true)
+                    .setPeriodic(SYNC_PERIOD_MILLIS)
+                    .setBackoffCriteria(INITIAL_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final List<String> urls = FeedQueries.buildUrls(this);
+        final FeedSyncer syncer = FeedSyncer.getInstance(NewsItemCache.getInstance(this));
+        // story bodies are large, so they are only fetched when the data is free
+        final boolean prefetchArticles = params.getJobId() == JOB_ID_UNMETERED && OfflineArticles.isEnabled(this);
+        final Context context = getApplicationContext();
+        final CancellationToken cancellation = new CancellationToken();
+        mCancellations.put(params.getJobId(), cancellation);
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FeedSyncer.Result result = syncer.sync(urls, cancellation);
+                    Log.v(LOG_TAG, "job " + params.getJobId() + ": " + result);
+                    if (result == FeedSyncer.Result.CANCELLED || cancellation.isCanceled()) {
+                        // onStopJob already asked for the job to run again
+                        return;
+                    }
+                    boolean retry = result == FeedSyncer.Result.FAILED || result == FeedSyncer.Result.DEFERRED;
+                    if (prefetchArticles && !retry) {
+                        try {
+                            OfflineArticles.prefetch(context, urls, cancellation);
+                        } catch (InterruptedIOException e) {
+                            Log.v(LOG_TAG, "job " + params.getJobId() + ": saving stories cancelled");
+                            return;
+                        } catch (IOException e) {
+                            // the stories already saved are still there, try again next time
+                            Log.e(LOG_TAG, "Problem saving stories for offline reading", e);
+                        }
+                    }
+                    // a failed or deferred sync is retried with exponential backoff
+                    jobFinished(params, retry);
+                } finally {
+                    mCancellations.remove(params.getJobId(), cancellation);
+                }
+            }
+        });
+        // the work continues on the executor
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // the constraints stopped holding before the sync finished: stop using the network
+        // now and try again later
+        CancellationToken cancellation = mCancellations.remove(params.getJobId());
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Refreshes the cached feed in the background. All the configured queries are fetched in one
+ * batch, each one revalidated against its cache entry, and the results written to the
+ * {@link NewsItemCache} that {@link NewsItemLoader} serves the feed from.
+ * <p>
+ * Only one sync runs at a time, and a sync that finished less than the minimum interval ago
+ * is not repeated, so jobs that fire close together only hit the network once. Syncs take
+ * their requests from the API quota at background priority, and when it runs short the rest
+ * of the batch is left for the next run rather than crowding out the app in the foreground.
+ */
+public class FeedSyncer {
+
+    private static final String LOG_TAG = FeedSyncer.class.getSimpleName();
+
+    /** Cached news items younger than this are served without a refresh */
+    public static final long MIN_SYNC_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * Source of the current time, replaced by a fake clock in tests.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    /** Clock of the device */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Outcome of a call to {@link #sync(List)}.
+     */
+    public enum Result {
+        /** every query was refreshed */
+        SYNCED,
+        /** the feed was synced less than the minimum interval ago */
+        SKIPPED_RECENT,
+        /** another sync was running */
+        ALREADY_RUNNING,
+        /** at least one query failed and the sync should be retried later */
+        FAILED,
+        /** the API quota was short, so the sync stopped and should be retried later */
+        DEFERRED,
+        /** the sync was cancelled before it finished */
+        CANCELLED
+    }
+
+    private static FeedSyncer sInstance;
+
+    private final NewsItemCache mCache;
+    private final GuardianClient mClient;
+    private final QuotaScheduler mQuota;
+    private final Clock mClock;
+    private final long mMinIntervalMillis;
+
+    /** Set while a sync runs, guards against overlapping runs */
+    private final AtomicBoolean mRunning = new AtomicBoolean();
+
+    /** Time the last successful sync finished, 0 if there was none */
+    private volatile long mLastSyncMillis;
+
+    /**
+     * Get the syncer shared by all the sync jobs, so they never run at the same time.
+     */
+    public static synchronized FeedSyncer getInstance(NewsItemCache cache) {
+        if (sInstance == null) {
+            sInstance = new FeedSyncer(cache, QueryUtils.API_CLIENT, QueryUtils.QUOTA, SYSTEM_CLOCK,
+                    MIN_SYNC_INTERVAL_MILLIS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link FeedSyncer}.
+     *
+     * @param cache             to revalidate against and store the news items in
+     * @param client            to fetch the news items with
+     * @param quota             the requests are taken from, may be null
+     * @param clock             to time the syncs with
+     * @param minIntervalMillis time after a successful sync during which no other sync runs
+     */
+    public FeedSyncer(NewsItemCache cache, GuardianClient client, QuotaScheduler quota, Clock clock,
+                      long minIntervalMillis) {
+        mCache = cache;
+        mClient = client;
+        mQuota = quota;
+        mClock = clock;
+        mMinIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Fetch every query url and store the results in the cache. This blocks, so call it
+     * on a background thread.
+     */
+    public Result sync(List<String> urls) {
+        return sync(urls, null);
+    }
+
+    /**
+     * Fetch every query url and store the results in the cache, until the token is cancelled.
+     * Cancelling aborts the request in flight. This blocks, so call it on a background thread.
+     *
+     * @param cancellation stops the sync, may be null
+     */
+    public Result sync(List<String> urls, CancellationToken cancellation) {
+        if (!mRunning.compareAndSet(false, true)) {
+            return Result.ALREADY_RUNNING;
+        }
+        try {
+            long now = mClock.currentTimeMillis();
+            if (mLastSyncMillis != 0 && now - mLastSyncMillis < mMinIntervalMillis) {
+                return Result.SKIPPED_RECENT;
+            }
+
+            // fetch all the queries in one go, so the radio wakes up once per sync
+            List<String> failed = new ArrayList<>();
+            for (int i = 0; i < urls.size(); i++) {
+                try {
+                    if (!syncQuery(urls.get(i), cancellation)) {
+                        failed.add(urls.get(i));
+                    }
+                } catch (QuotaScheduler.QuotaExceededException e) {
+                    Log.v(LOG_TAG, "quota short, deferring " + (urls.size() - i) + " of " + urls.size() + " queries");
+                    return Result.DEFERRED;
+                }
+                if (cancellation != null && cancellation.isCanceled()) {
+                    Log.v(LOG_TAG, "cancelled after " + (i + 1) + " of " + urls.size() + " queries");
+                    return Result.CANCELLED;
+                }
+            }
+            if (!failed.isEmpty()) {
+                Log.e(LOG_TAG, failed.size() + " of " + urls.size() + " queries failed");
+                return Result.FAILED;
+            }
+            mLastSyncMillis = mClock.currentTimeMillis();
+            return Result.SYNCED;
+        } finally {
+            mRunning.set(false);
+        }
+    }
+
+    /**
+     * Get the time the last successful sync finished, 0 if there was none.
+     */
+    public long getLastSyncMillis() {
+        return mLastSyncMillis;
+    }
+
+    /**
+     * Refresh one query, revalidating the cached entry if there is one.
+     *
+     * @return true if the cache now holds the latest news items for the query
+     * @throws QuotaScheduler.QuotaExceededException if the quota was too short to make the request
+     */
+    private boolean syncQuery(String requestUrl, CancellationToken cancellation)
+            throws QuotaScheduler.QuotaExceededException {
+        NewsItemCache.Entry cachedEntry = mCache.get(requestUrl);
+        Runnable cancelListener = null;
+        try {
+            URL url = new URL(requestUrl);
+            if (mQuota != null) {
+                mQuota.acquire(url, QuotaScheduler.Priority.BACKGROUND, cancellation);
+            }
+            // the url as it is asks for the standard profile; the validators of news items
+            // fetched with another profile describe another response
+            final GuardianClient.Call call = cachedEntry != null && cachedEntry.getProfile() == FetchProfile.STANDARD
+                    ? mClient.newCall(url, cachedEntry.getETag(), cachedEntry.getLastModified())
+                    : mClient.newCall(url, null, null);
+            if (cancellation != null) {
+                cancelListener = new Runnable() {
+                    @Override
+                    public void run() {
+                        call.cancel();
+                    }
+                };
+                cancellation.addListener(cancelListener);
+            }
+            NewsResponse response = call.execute();
+            ArrayList<NewsItem> newsItems = response.isNotModified() && cachedEntry != null
+                    ? cachedEntry.getNewsItems()
+                    : response.getNewsItems();
+            if (newsItems == null) {
+                return false;
+            }
+            // store even an unchanged entry, which resets its age
+            mCache.put(requestUrl, newsItems, response.getETag(), response.getLastModified());
+            return true;
+        } catch (MalformedURLException e) {
+            Log.e(LOG_TAG, "Error with creating URL ", e);
+        } catch (QuotaScheduler.QuotaExceededException e) {
+            throw e;
+        } catch (InterruptedIOException e) {
+            Log.v(LOG_TAG, "Sync cancelled: " + requestUrl);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem syncing " + requestUrl, e);
+        } finally {
+            if (cancelListener != null) {
+                cancellation.removeListener(cancelListener);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.android.newsapp;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+
+import java.util.Locale;
+
+/**
+ * Records the time between frames while the list scrolls, from {@link Choreographer}
+ * callbacks. A frame that missed its vsync shows up as an interval of two or more vsyncs, so
+ * the upper percentiles show the jank the user sees. Recording stops while the list is at
+ * rest, where intervals say nothing about scrolling.
+ */
+public class FrameTimeRecorder extends RecyclerView.OnScrollListener implements Choreographer.FrameCallback {
+
+    private final LatencyHistogram mHistogram;
+    private boolean mRecording;
+    private long mLastFrameNanos;
+
+    /**
+     * Constructs a new {@link FrameTimeRecorder}.
+     *
+     * @param histogram the frame intervals are recorded into
+     */
+    public FrameTimeRecorder(LatencyHistogram histogram) {
+        mHistogram = histogram;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return mHistogram;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            stop();
+        } else {
+            start();
+        }
+    }
+
+    /**
+     * Start recording, if not recording already.
+     */
+    public void start() {
+        if (mRecording) {
+            return;
+        }
+        mRecording = true;
+        mLastFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stop recording. Also call this when the list goes away while scrolling.
+     */
+    public void stop() {
+        mRecording = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRecording) {
+            return;
+        }
+        if (mLastFrameNanos != 0) {
+            mHistogram.recordNanos(frameTimeNanos - mLastFrameNanos);
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Describe the frame interval percentiles in the histogram, in milliseconds.
+     */
+    public static String describe(LatencyHistogram histogram) {
+        return String.format(Locale.US, "%d frames, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms",
+                histogram.getCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getMaxMicros() / 1000.0);
+    }
+}
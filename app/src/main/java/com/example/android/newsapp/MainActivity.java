@@ -1,50 +1,110 @@
 package com.example.android.newsapp;
 
 import android.app.LoaderManager;
-import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.Uri;
-import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.preference.PreferenceManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
+import android.widget.SearchView;
 import android.widget.TextView;
 
+import com.bumptech.glide.Glide;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<ArrayList<NewsItem>> {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<ArrayList<NewsItem>>,
+        SharedPreferences.OnSharedPreferenceChangeListener, NetworkMonitor.Listener {
 
     private static final String LOG_TAG = MainActivity.class.getName();
-    /**
-     * target url for a Guardian API query
-     */
-    private static final String JSON_RESPONSE = "https://content.guardianapis.com/search?";
 
-    // initialize String constant to store value of private api key the the Guardian Api
-    private static final String API_KEY = "49c021e8-1aba-47fe-887d-e7ff6cd5888b";
+    /** How long the settings have to stay unchanged before the feed is reloaded */
+    private static final long SETTINGS_DEBOUNCE_MILLIS = 300;
+
+    private static final String SNAPSHOT_FILE_NAME = "feed.snapshot";
+
+    // metrics keys of the time to the first card on a cold start, with and without a snapshot
+    private static final String COLD_START_SNAPSHOT_KEY = "cold start, snapshot";
+    private static final String COLD_START_NO_SNAPSHOT_KEY = "cold start, no snapshot";
+
+    // snapshots are written in the order the feeds were shown
+    private static final Executor SNAPSHOT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /** Most news items shown for a search */
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    // the cached news items are added to the search index once per process
+    private static final Executor SEARCH_INDEX_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static boolean cacheIndexed;
+
+    // results of the searches sent to the API, kept across activities
+    private static final SearchResultCache SEARCH_RESULT_CACHE = new SearchResultCache();
 
     // initialize global variables
     private RecyclerView recyclerView;
     private ProgressBar progressBar;
     private TextView emptyTextView;
     private NewsItemAdapter newsItemAdapter;
-    private ArrayList<NewsItem> mNewsItems;
+    private NewsFeedPager newsFeedPager;
+    private ThumbnailLoader thumbnailLoader;
+    private ThumbnailPreloader thumbnailPreloader;
+    private BrowserWarmup browserWarmup;
+    private FrameTimeRecorder frameTimeRecorder;
+    private NetworkMonitor networkMonitor;
+    // whether the feed is empty because the device was offline, or because there was no news
+    private boolean showingOfflineMessage;
+    private boolean noNewsFound;
+    // shows the search results in place of the feed while the search is open
+    private NewsItemAdapter searchAdapter;
+    private MenuItem searchItem;
+    private SearchView searchView;
+    private ServerSearch serverSearch;
+    private boolean searching;
+    // the latest results from the API, and the normalized query they are for
+    private List<NewsItem> serverResults = new ArrayList<>();
+    private String serverResultsQuery = "";
+    // where the feed was scrolled to when the search opened, and whether it was loading
+    private Parcelable feedScrollState;
+    private boolean feedLoading;
+    private File snapshotFile;
+    // the news items last written to or read from the snapshot
+    private List<NewsItem> snapshotNewsItems;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable reloadFeed = new Runnable() {
+        @Override
+        public void run() {
+            reloadFeedIfChanged();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long createdNanos = System.nanoTime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
@@ -70,40 +130,277 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
 
         emptyTextView = findViewById(R.id.empty_list_view);
 
-        mNewsItems = new ArrayList<>();
-        // Create adapter passing in this ArrayList as the data source
+        // On a cold start there is no loader holding the feed yet. Show the snapshot of the
+        // feed shown last time, so the first frame has news in it while the loader refreshes.
+        snapshotFile = new File(getCacheDir(), SNAPSHOT_FILE_NAME);
+        boolean coldStart = getLoaderManager().getLoader(0) == null;
+        ArrayList<NewsItem> snapshot = coldStart ? readSnapshot(snapshotKey(FeedQueries.buildUrls(this))) : null;
+        if (snapshot != null) {
+            progressBar.setVisibility(View.GONE);
+        }
+        if (coldStart) {
+            recordFirstCard(snapshot != null ? COLD_START_SNAPSHOT_KEY : COLD_START_NO_SNAPSHOT_KEY, createdNanos);
+        }
 
-        newsItemAdapter = new NewsItemAdapter(this, mNewsItems);
+        // Create adapter, starting with the snapshot or an empty list of news items
+        thumbnailLoader = new ThumbnailLoader(Glide.with(this));
+        browserWarmup = new BrowserWarmup(this);
+        newsItemAdapter = new NewsItemAdapter(this, snapshot != null ? snapshot : new ArrayList<NewsItem>(),
+                thumbnailLoader, browserWarmup);
 
         // Attach the adapter to the RecyclerView to populate items
         recyclerView.setAdapter(newsItemAdapter);
+        searchAdapter = new NewsItemAdapter(this, new ArrayList<NewsItem>(), thumbnailLoader, browserWarmup);
+        serverSearch = new ServerSearch(this, SEARCH_RESULT_CACHE, new ServerSearch.Listener() {
+            @Override
+            public void onServerResults(String normalizedQuery, List<NewsItem> newsItems, boolean complete) {
+                serverResults = newsItems;
+                serverResultsQuery = normalizedQuery;
+                if (searching && searchView != null) {
+                    showSearchResults(searchView.getQuery().toString());
+                }
+            }
+        });
 
         // Set layout manager to position the items
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
+        // Load the following pages as the user scrolls towards the end of the list
+        newsFeedPager = new NewsFeedPager(newsItemAdapter);
+        recyclerView.addOnScrollListener(newsFeedPager);
+
+        // Load the thumbnails of the rows about to scroll into view
+        thumbnailPreloader = new ThumbnailPreloader(newsItemAdapter, thumbnailLoader);
+        recyclerView.addOnScrollListener(thumbnailPreloader);
+
+        // Get the browser ready for the stories the user lingers on
+        recyclerView.addOnScrollListener(browserWarmup);
 
-        // check there is a network connection
-        ConnectivityManager cm = (ConnectivityManager) this.getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Record how smoothly the feed scrolls
+        frameTimeRecorder = new FrameTimeRecorder(ThumbnailMetrics.getScrollFrames());
+        recyclerView.addOnScrollListener(frameTimeRecorder);
 
-        NetworkInfo activeNetwork = Objects.requireNonNull(cm).getActiveNetworkInfo();
+        // follow the network, to fetch as much as it suits and to reload when it comes back
+        networkMonitor = NetworkMonitor.getInstance(this);
 
-        boolean isConnected = activeNetwork != null &&
-                activeNetwork.isConnectedOrConnecting();
+        // keep the cached feed fresh in the background, so the next start has recent news to show
+        FeedSyncJobService.schedule(this);
+
+        // create new instance of load manager and instantiate new Loader object , or renew existing one.
+        // The loader serves cached news items first, so this is worthwhile even without a connection.
+        getLoaderManager().initLoader(0, null, this);
+        Log.v(LOG_TAG, "load manager initialized");
+
+        // reload the feed when the topic, sections or order change in the settings
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
+
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (!getString(R.string.settings_display_by_topic_key).equals(key)
+                && !getString(R.string.settings_my_sections_key).equals(key)
+                && !getString(R.string.settings_order_by_date_key).equals(key)) {
+            return;
+        }
+        // settings tend to change in bursts, only reload once they have settled
+        mainHandler.removeCallbacks(reloadFeed);
+        mainHandler.postDelayed(reloadFeed, SETTINGS_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Restart the loader if the settings now describe a different feed. The old loader's
+     * requests are cancelled, and a feed still cached in memory is shown straight away
+     * while the new loader revalidates it.
+     */
+    private void reloadFeedIfChanged() {
+        List<String> urls = FeedQueries.buildUrls(this);
+        Loader<ArrayList<NewsItem>> loader = getLoaderManager().getLoader(0);
+        if (loader != null && urls.equals(((NewsItemLoader) loader).getUrls())) {
+            return;
+        }
+        Log.v(LOG_TAG, "feed settings changed, reloading");
+
+        // show the new feed rather than search results from the old one
+        if (searching) {
+            searchItem.collapseActionView();
+        }
+        // stop paging and preloading the old feed
+        newsFeedPager.reset(null, null);
+        thumbnailPreloader.cancelAll();
+        browserWarmup.reset();
 
-        if (isConnected) {
-            // If there is a network connection,
-            // create new instance of load manager and instantiate new Loader object , or renew existing one.
-            getLoaderManager().initLoader(0, null, this);
-            Log.v(LOG_TAG, "load manager initialized");
+        ArrayList<NewsItem> cachedNewsItems = NewsItemLoader.peekMemoryCache(NewsItemCache.getInstance(this), urls);
+        if (cachedNewsItems != null) {
+            emptyTextView.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+            newsItemAdapter.submitList(cachedNewsItems, null);
+            recyclerView.scrollToPosition(0);
         } else {
-            // if no connection, display message explaining the issue to users
-            progressBar.setVisibility(View.GONE);
+            newsItemAdapter.submitList(new ArrayList<NewsItem>(), null);
+            progressBar.setVisibility(View.VISIBLE);
+            feedLoading = true;
+        }
+        getLoaderManager().restartLoader(0, null, this);
+    }
+
+    /**
+     * Read the snapshot of the feed shown last time. This runs on the main thread before the
+     * first frame, which is what it is for; the file is small and memory mapped.
+     *
+     * @return the news items of the snapshot, or null if there is none for the given feed
+     */
+    private ArrayList<NewsItem> readSnapshot(String key) {
+        long start = System.nanoTime();
+        try {
+            FeedSnapshot snapshot = FeedSnapshot.read(snapshotFile);
+            if (snapshot == null || !snapshot.getKey().equals(key) || snapshot.getNewsItems().isEmpty()) {
+                return null;
+            }
+            Log.v(LOG_TAG, "read " + snapshot.getNewsItems().size() + " news items from the snapshot in "
+                    + (System.nanoTime() - start) / 1000 + " us");
+            snapshotNewsItems = snapshot.getNewsItems();
+            return snapshot.getNewsItems();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the feed snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Save a snapshot of the news items the loader delivered, on a background thread.
+     */
+    private void writeSnapshot(final String key, final List<NewsItem> newsItems) {
+        if (newsItems == snapshotNewsItems) {
+            return;
+        }
+        snapshotNewsItems = newsItems;
+        final File file = snapshotFile;
+        SNAPSHOT_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FeedSnapshot.write(file, key, newsItems);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the feed snapshot", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * The key of a feed in the snapshot, so the snapshot of a feed the settings no longer
+     * describe isn't shown.
+     */
+    private static String snapshotKey(List<String> urls) {
+        StringBuilder key = new StringBuilder();
+        for (String url : urls) {
+            key.append(url).append('\n');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Record the time from the activity being created to the end of the first frame that
+     * shows a news item, whether it came from the snapshot or the loader.
+     */
+    private void recordFirstCard(final String metricsKey, final long createdNanos) {
+        recyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (recyclerView.getChildCount() == 0) {
+                    return true;
+                }
+                recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // runs once this frame has been drawn
+                mainHandler.postAtFrontOfQueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        long nanos = System.nanoTime() - createdNanos;
+                        LoadMetrics.getInstance().record(metricsKey, LoadMetrics.STAGE_FIRST_CARD, nanos);
+                        Log.v(LOG_TAG, metricsKey + ": first card after " + nanos / 1000000 + " ms");
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Show why the feed is empty, or the feed if it isn't.
+     */
+    private void showFeedMessage() {
+        if (showingOfflineMessage) {
+            showOfflineMessage();
+        } else if (noNewsFound) {
             recyclerView.setVisibility(View.GONE);
-            emptyTextView.setText(R.string.user_offline);
-            Drawable img = getDrawable(R.drawable.ic_signal_wifi_off);
-            emptyTextView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, img);
+            emptyTextView.setVisibility(View.VISIBLE);
+            emptyTextView.setText(R.string.no_news_found);
+            emptyTextView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
+        } else {
+            emptyTextView.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Display message explaining to users that there is no connection and nothing cached to show.
+     */
+    private void showOfflineMessage() {
+        recyclerView.setVisibility(View.GONE);
+        emptyTextView.setVisibility(View.VISIBLE);
+        emptyTextView.setText(R.string.user_offline);
+        Drawable img = getDrawable(R.drawable.ic_signal_wifi_off);
+        emptyTextView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, img);
+        showingOfflineMessage = true;
+    }
+
+    /**
+     * Fetch as much as the network suits, and load the feed once the device is back online
+     * if there was nothing to show without a connection.
+     */
+    @Override
+    public void onNetworkChanged(boolean connected, FetchProfile profile) {
+        thumbnailLoader.setProfile(profile);
+        thumbnailPreloader.setProfile(profile);
+        if (connected && showingOfflineMessage) {
+            Log.v(LOG_TAG, "back online, reloading");
+            showingOfflineMessage = false;
+            feedLoading = true;
+            if (!searching) {
+                emptyTextView.setVisibility(View.GONE);
+                progressBar.setVisibility(View.VISIBLE);
+            }
+            getLoaderManager().restartLoader(0, null, this);
         }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        browserWarmup.bind();
+        // catch up with what changed while the activity was stopped
+        networkMonitor.addListener(this);
+        onNetworkChanged(networkMonitor.isConnected(), networkMonitor.getProfile());
+    }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        browserWarmup.unbind();
+        networkMonitor.removeListener(this);
+        Log.v(LOG_TAG, ThumbnailMetrics.summary());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(this);
+        mainHandler.removeCallbacks(reloadFeed);
+        newsFeedPager.shutdown();
+        serverSearch.shutdown();
+        thumbnailPreloader.cancelAll();
+        frameTimeRecorder.stop();
     }
 
     @Override
@@ -111,9 +408,133 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the Options Menu we specified in XML
         getMenuInflater().inflate(R.menu.main, menu);
+        // the load metrics are recorded in every build, but only debug builds show them
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
+
+        // search the news items seen so far as the user types, and the API once the typing pauses
+        searchItem = menu.findItem(R.id.action_search);
+        searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // the results are already shown, only the keyboard is in the way
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (searching) {
+                    showSearchResults(newText);
+                    recyclerView.scrollToPosition(0);
+                    serverSearch.setQuery(newText);
+                }
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                openSearch();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                closeSearch();
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Show the search results in place of the feed, which keeps its place and keeps
+     * loading in the background.
+     */
+    private void openSearch() {
+        searching = true;
+        feedScrollState = recyclerView.getLayoutManager().onSaveInstanceState();
+        feedLoading = progressBar.getVisibility() == View.VISIBLE;
+        thumbnailPreloader.cancelAll();
+        searchAdapter.submitList(new ArrayList<NewsItem>(), null);
+        recyclerView.setAdapter(searchAdapter);
+        recyclerView.setVisibility(View.VISIBLE);
+        emptyTextView.setVisibility(View.GONE);
+        progressBar.setVisibility(View.GONE);
+        indexCachedNewsItems();
+    }
+
+    /**
+     * Put the feed back where it was when the search opened.
+     */
+    private void closeSearch() {
+        searching = false;
+        serverSearch.cancel();
+        serverResults = new ArrayList<>();
+        serverResultsQuery = "";
+        recyclerView.setAdapter(newsItemAdapter);
+        recyclerView.getLayoutManager().onRestoreInstanceState(feedScrollState);
+        progressBar.setVisibility(feedLoading ? View.VISIBLE : View.GONE);
+        showFeedMessage();
+    }
+
+    /**
+     * Show the news items seen so far that match the query, followed by the results from
+     * the API that aren't among them, so the rows shown while typing don't move when the
+     * API answers.
+     */
+    private void showSearchResults(String query) {
+        List<NewsItem> results = new ArrayList<>(QueryUtils.SEARCH_INDEX.search(query, MAX_SEARCH_RESULTS));
+        if (serverResultsQuery.equals(SearchResultCache.normalize(query))) {
+            Set<String> webUrls = new HashSet<>();
+            for (NewsItem newsItem : results) {
+                webUrls.add(newsItem.getWebUrl());
+            }
+            for (NewsItem newsItem : serverResults) {
+                if (webUrls.add(newsItem.getWebUrl())) {
+                    results.add(newsItem);
+                }
+            }
+        }
+        searchAdapter.submitList(results, null);
+        if (results.isEmpty() && !query.trim().isEmpty()) {
+            emptyTextView.setVisibility(View.VISIBLE);
+            emptyTextView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
+            emptyTextView.setText(R.string.no_search_results);
+        } else {
+            emptyTextView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Add the news items cached by earlier runs to the search index, on a background
+     * thread, then search again with what the user typed meanwhile.
+     */
+    private void indexCachedNewsItems() {
+        if (cacheIndexed) {
+            return;
+        }
+        cacheIndexed = true;
+        final NewsItemCache cache = NewsItemCache.getInstance(this);
+        SEARCH_INDEX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                cache.indexAll(QueryUtils.SEARCH_INDEX);
+                Log.v(LOG_TAG, QueryUtils.SEARCH_INDEX.summary());
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (searching && searchView != null) {
+                            showSearchResults(searchView.getQuery().toString());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
     @Override
     // This method opens Settings Activity when the settings option is selected from the menu
     public boolean onOptionsItemSelected(MenuItem item) {
@@ -123,6 +544,10 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             startActivity(settingsIntent);
             return true;
         }
+        if (id == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
@@ -131,65 +556,98 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // Create a new loader for the given URL
         Log.v(LOG_TAG, "onCreateLoader called");
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-
-        String topic = sharedPrefs.getString(
-                getString(R.string.settings_display_by_topic_key),
-                getString(R.string.settings_display_by_topic_default));
-
-        String dateOrder = sharedPrefs.getString(
-                getString(R.string.settings_order_by_date_key),
-                getString(R.string.settings_order_by_date_default));
-
-        // parse breaks apart the URI string that's passed into its parameter
-        Uri baseUri = Uri.parse(JSON_RESPONSE);
-
-        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-
-        // Append query parameter and its value. For example, the `format=geojson`
-        uriBuilder.appendQueryParameter("format", "json");
-        uriBuilder.appendQueryParameter("section", topic);
-        uriBuilder.appendQueryParameter("show-fields", getResources().getString(R.string.show_fields_values));
-        uriBuilder.appendQueryParameter("order-by", dateOrder);
-        uriBuilder.appendQueryParameter("api-key", API_KEY);
-
-        Log.v(LOG_TAG, uriBuilder.toString());
-
-        return new NewsItemLoader(this, uriBuilder.toString());
+        return new NewsItemLoader(this, FeedQueries.buildUrls(this));
     }
 
     @Override
     public void onLoadFinished(Loader<ArrayList<NewsItem>> loader, ArrayList<NewsItem> newsItems) {
         Log.v(LOG_TAG, "onFinishedLoader called");
+        final long receivedNanos = System.nanoTime();
+        final NewsItemLoader newsItemLoader = (NewsItemLoader) loader;
+        final String metricsKey = newsItemLoader.getMetricsKey();
+        LoadMetrics.getInstance().record(metricsKey, LoadMetrics.STAGE_HAND_OFF,
+                receivedNanos - newsItemLoader.getLoadFinishedNanos());
+        // the requests just made may have changed the estimate of the network
+        networkMonitor.refresh();
 
         // make progress bar disappear when background thread finishes loading
         progressBar.setVisibility(View.GONE);
-
-
-        if (newsItems == null) {
+        feedLoading = false;
+
+
+        if (newsItems == null || newsItems.isEmpty()) {
+            // keep showing the news items we already have, e.g. from the cache
+            if (newsItemAdapter.getItemCount() > 0) {
+                return;
+            }
+            if (!networkMonitor.isConnected()) {
+                showingOfflineMessage = true;
+            } else if (newsItems != null) {
+                noNewsFound = true;
+            }
+            // the search results stay in place, the message shows once the search closes
+            if (!searching) {
+                showFeedMessage();
+            }
             return;
         }
-        if (newsItems.isEmpty()) {
-            recyclerView.setVisibility(View.GONE);
-            emptyTextView.setVisibility(View.VISIBLE);
-            emptyTextView.setText(R.string.no_news_found);
-        }
-        if (newsItems != null && !newsItems.isEmpty()) {
-            emptyTextView.setVisibility(View.GONE);
-            mNewsItems.addAll(newsItems);
-            newsItemAdapter.notifyDataSetChanged();
+
+        // the loader delivers cached news items first and fresh ones afterwards;
+        // the adapter works out which rows actually changed
+        showingOfflineMessage = false;
+        noNewsFound = false;
+        if (!searching) {
+            showFeedMessage();
         }
+        final String url = newsItemLoader.getUrl();
+        writeSnapshot(snapshotKey(newsItemLoader.getUrls()), newsItems);
+        newsItemAdapter.submitList(newsItems, new Runnable() {
+            @Override
+            public void run() {
+                // the loader delivers the first page, the pager takes it from there;
+                // a feed combining several sections has no url and isn't paged
+                newsFeedPager.reset(url, newsItemLoader.getProfile());
+                recordFirstFrame(metricsKey, receivedNanos);
+            }
+        });
+
+    }
 
+    /**
+     * Record the time from receiving a result to the end of the first frame drawn with it.
+     * The frame callback runs as the frame starts; a message posted from it at the front of
+     * the queue runs once the frame has been laid out and drawn.
+     */
+    private void recordFirstFrame(final String metricsKey, final long receivedNanos) {
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                mainHandler.postAtFrontOfQueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        LoadMetrics.getInstance().record(metricsKey, LoadMetrics.STAGE_FIRST_FRAME,
+                                System.nanoTime() - receivedNanos);
+                    }
+                });
+            }
+        });
+    }
 
+    // Print the load metrics with: adb shell dumpsys activity com.example.android.newsapp/.MainActivity
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(MetricsActivity.dumpMetrics());
+        writer.flush();
     }
 
     @Override
     public void onLoaderReset(Loader<ArrayList<NewsItem>> loader) {
         Log.v(LOG_TAG, "onResetLoader called");
         // Loader reset, so we can clear out our existing data.
-        mNewsItems.clear();
-        newsItemAdapter.notifyDataSetChanged();
+        newsFeedPager.reset(null, null);
+        thumbnailPreloader.cancelAll();
+        newsItemAdapter.submitList(new ArrayList<NewsItem>(), null);
 
     }
 }
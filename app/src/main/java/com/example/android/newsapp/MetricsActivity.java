@@ -0,0 +1,70 @@
+package com.example.android.newsapp;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+/**
+ * Debug screen showing the latency percentiles of every load stage, per query, and the
+ * thumbnail metrics. The same text is printed by {@code adb shell dumpsys activity
+ * com.example.android.newsapp/.MainActivity}.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private TextView metricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        metricsTextView = findViewById(R.id.metrics_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_reset_metrics) {
+            LoadMetrics.getInstance().reset();
+            ThumbnailMetrics.reset();
+            showMetrics();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showMetrics() {
+        String metrics = dumpMetrics();
+        metricsTextView.setText(metrics.isEmpty() ? getString(R.string.metrics_empty) : metrics);
+    }
+
+    /**
+     * Describe all the recorded metrics, or return an empty string if there are none.
+     */
+    static String dumpMetrics() {
+        StringBuilder out = new StringBuilder();
+        LoadMetrics.getInstance().dump(out);
+        if (ThumbnailMetrics.getBindCount() > 0) {
+            out.append('\n').append(ThumbnailMetrics.summary()).append('\n');
+        }
+        if (out.length() > 0) {
+            out.append('\n').append(QueryUtils.API_CLIENT.summary()).append('\n');
+            out.append('\n').append(QueryUtils.QUOTA.summary()).append('\n');
+            out.append('\n').append(QueryUtils.NETWORK_QUALITY.summary()).append('\n');
+            out.append('\n').append(QueryUtils.SEARCH_INDEX.summary());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches several sections at the same time and merges them into a single feed.
+ * Sections run on a small bounded pool, each with its own timeout, so a slow or failing
+ * section only loses its own news items and the feed takes about as long as the slowest
+ * section rather than the sum of them all. A section that times out has its request
+ * cancelled, which closes the connection, so its thread is free for the next section.
+ */
+public final class MultiSectionFetcher {
+
+    private static final String LOG_TAG = MultiSectionFetcher.class.getSimpleName();
+
+    /** Most sections fetched at once */
+    private static final int MAX_PARALLEL_SECTIONS = 4;
+
+    private static final long SECTION_TIMEOUT_MILLIS = 8000;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            MAX_PARALLEL_SECTIONS, MAX_PARALLEL_SECTIONS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>());
+
+    static {
+        // don't keep idle threads around between refreshes
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads the news items of one section.
+     */
+    public interface SectionSource {
+        /**
+         * @param cancellation cancelled when the section times out or the load is cancelled
+         * @return the news items of the section, or null if they couldn't be loaded
+         */
+        ArrayList<NewsItem> fetch(String url, CancellationToken cancellation);
+    }
+
+    private MultiSectionFetcher() {
+    }
+
+    /**
+     * Fetch all the section urls concurrently and merge the results.
+     *
+     * @param newestFirst  order of the merged feed by publication time
+     * @param cancellation of the load, cancels every section; may be null
+     * @return the merged news items, or null if no section could be loaded
+     */
+    public static ArrayList<NewsItem> fetchAll(List<String> urls, SectionSource source, boolean newestFirst,
+                                               CancellationToken cancellation) {
+        return fetchAll(urls, source, newestFirst, cancellation, SECTION_TIMEOUT_MILLIS);
+    }
+
+    static ArrayList<NewsItem> fetchAll(List<String> urls, final SectionSource source, boolean newestFirst,
+                                        CancellationToken cancellation, long sectionTimeoutMillis) {
+        // one token per section, so a section can be cancelled on its own
+        final List<CancellationToken> sectionCancellations = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            sectionCancellations.add(new CancellationToken());
+        }
+        Runnable cancelSections = new Runnable() {
+            @Override
+            public void run() {
+                for (CancellationToken sectionCancellation : sectionCancellations) {
+                    sectionCancellation.cancel();
+                }
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addListener(cancelSections);
+        }
+
+        long start = System.nanoTime();
+        List<Future<ArrayList<NewsItem>>> futures = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            final String url = urls.get(i);
+            final CancellationToken sectionCancellation = sectionCancellations.get(i);
+            futures.add(EXECUTOR.submit(new Callable<ArrayList<NewsItem>>() {
+                @Override
+                public ArrayList<NewsItem> call() {
+                    return source.fetch(url, sectionCancellation);
+                }
+            }));
+        }
+
+        try {
+            List<List<NewsItem>> sections = new ArrayList<>(urls.size());
+            boolean anyLoaded = false;
+            for (int i = 0; i < futures.size(); i++) {
+                // sections beyond the pool size wait for a thread, so they get one more timeout per wave
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(
+                        sectionTimeoutMillis * (1 + i / MAX_PARALLEL_SECTIONS));
+                Future<ArrayList<NewsItem>> future = futures.get(i);
+                try {
+                    ArrayList<NewsItem> newsItems = future.get(Math.max(0, deadline - System.nanoTime()),
+                            TimeUnit.NANOSECONDS);
+                    if (newsItems != null) {
+                        sections.add(newsItems);
+                        anyLoaded = true;
+                    }
+                } catch (TimeoutException e) {
+                    Log.e(LOG_TAG, "Section timed out: " + urls.get(i));
+                    // interrupting alone leaves a blocking read running until the read timeout
+                    sectionCancellations.get(i).cancel();
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    Log.e(LOG_TAG, "Section failed: " + urls.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    // the load was cancelled, stop waiting for the other sections too
+                    cancelSections.run();
+                    for (Future<ArrayList<NewsItem>> pending : futures) {
+                        pending.cancel(true);
+                    }
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return anyLoaded ? merge(sections, newestFirst) : null;
+        } finally {
+            if (cancellation != null) {
+                cancellation.removeListener(cancelSections);
+            }
+        }
+    }
+
+    /**
+     * Merge sections into one list ordered by publication time, dropping news items that
+     * appear in more than one section (matched by web url).
+     */
+    public static ArrayList<NewsItem> merge(List<? extends List<NewsItem>> sections, final boolean newestFirst) {
+        Map<String, NewsItem> byWebUrl = new LinkedHashMap<>();
+        for (List<NewsItem> section : sections) {
+            for (NewsItem newsItem : section) {
+                if (!byWebUrl.containsKey(newsItem.getWebUrl())) {
+                    byWebUrl.put(newsItem.getWebUrl(), newsItem);
+                }
+            }
+        }
+
+        ArrayList<NewsItem> merged = new ArrayList<>(byWebUrl.values());
+        Collections.sort(merged, new Comparator<NewsItem>() {
+            @Override
+            public int compare(NewsItem a, NewsItem b) {
+                long timeA = a.getPublicationTime();
+                long timeB = b.getPublicationTime();
+                int ascending = timeA < timeB ? -1 : (timeA == timeB ? 0 : 1);
+                return newestFirst ? -ascending : ascending;
+            }
+        });
+        return merged;
+    }
+}
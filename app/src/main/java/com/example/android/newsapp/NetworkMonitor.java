@@ -0,0 +1,192 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows the network the device is on, and picks the {@link FetchProfile} that suits it
+ * from whether it is metered and how well the app's own requests did on it, as measured by
+ * {@link QueryUtils#NETWORK_QUALITY}.
+ * <p>
+ * Listeners hear on the main thread when the device goes on or offline, or the profile
+ * changes, which happens when the device moves to another network or when
+ * {@link #refresh()} finds the measurements moved the network to another quality.
+ */
+public final class NetworkMonitor {
+
+    private static final String LOG_TAG = NetworkMonitor.class.getSimpleName();
+
+    /**
+     * Told about changes of the network, on the main thread.
+     */
+    public interface Listener {
+        void onNetworkChanged(boolean connected, FetchProfile profile);
+    }
+
+    private static NetworkMonitor sInstance;
+
+    private final ConnectivityManager mConnectivityManager;
+    private final NetworkQualityEstimator mEstimator;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean mConnected;
+    private volatile boolean mMetered;
+    // identifies the network the estimate was measured on; guarded by this
+    private String mNetworkId;
+
+    // only touched on the main thread
+    private final List<Listener> mListeners = new ArrayList<>();
+    private boolean mNotifiedConnected;
+    private FetchProfile mNotifiedProfile;
+
+    private final ConnectivityManager.NetworkCallback mNetworkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            refresh();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            refresh();
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+            refresh();
+        }
+    };
+
+    /**
+     * Get the monitor shared by the whole app, which follows the network from the first call on.
+     */
+    public static synchronized NetworkMonitor getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NetworkMonitor(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private NetworkMonitor(Context context) {
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mEstimator = QueryUtils.NETWORK_QUALITY;
+        readActiveNetwork();
+        mNotifiedConnected = mConnected;
+        mNotifiedProfile = getProfile();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mConnectivityManager.registerDefaultNetworkCallback(mNetworkCallback);
+        } else {
+            // every network with internet access; the active one is looked up on each callback
+            mConnectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build(), mNetworkCallback);
+        }
+    }
+
+    /**
+     * Whether the device is on a network, or getting on one.
+     */
+    public boolean isConnected() {
+        return mConnected;
+    }
+
+    public boolean isMetered() {
+        return mMetered;
+    }
+
+    /**
+     * Get the profile for the network the device is on now.
+     */
+    public FetchProfile getProfile() {
+        return FetchProfile.select(mEstimator.getQuality(), mMetered);
+    }
+
+    /**
+     * Start telling the listener about changes. Call on the main thread.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Stop telling the listener about changes. Call on the main thread.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Read the network again and tell the listeners if the connectivity or the profile
+     * changed. Safe to call from any thread.
+     */
+    public void refresh() {
+        readActiveNetwork();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                notifyIfChanged();
+            }
+        });
+    }
+
+    private void notifyIfChanged() {
+        boolean connected = mConnected;
+        FetchProfile profile = getProfile();
+        if (connected == mNotifiedConnected && profile == mNotifiedProfile) {
+            return;
+        }
+        mNotifiedConnected = connected;
+        mNotifiedProfile = profile;
+        Log.v(LOG_TAG, (connected ? "online, " : "offline, ") + (mMetered ? "metered, " : "unmetered, ")
+                + mEstimator.summary() + ", profile " + profile);
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onNetworkChanged(connected, profile);
+        }
+    }
+
+    /**
+     * Read the state of the active network, and start a new estimate when it is another
+     * network than the one measured so far.
+     */
+    private synchronized void readActiveNetwork() {
+        NetworkInfo activeNetwork = mConnectivityManager.getActiveNetworkInfo();
+        mConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        mMetered = mConnectivityManager.isActiveNetworkMetered();
+        if (!mConnected) {
+            return;
+        }
+        String networkId = activeNetwork.getType() + ":" + activeNetwork.getSubtype() + ":"
+                + activeNetwork.getExtraInfo();
+        if (networkId.equals(mNetworkId)) {
+            return;
+        }
+        mNetworkId = networkId;
+        mEstimator.reset(linkBytesPerSecond());
+    }
+
+    /**
+     * Get the downstream bandwidth the active network claims, or -1 if it doesn't say.
+     * Only a first guess: it is the link's, not what a request actually gets.
+     */
+    private double linkBytesPerSecond() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        NetworkCapabilities capabilities =
+                mConnectivityManager.getNetworkCapabilities(mConnectivityManager.getActiveNetwork());
+        if (capabilities == null || capabilities.getLinkDownstreamBandwidthKbps() <= 0) {
+            return -1;
+        }
+        return capabilities.getLinkDownstreamBandwidthKbps() * 1000 / 8.0;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.android.newsapp;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the pages after the first one as the user scrolls towards the end of the feed.
+ * The first page comes from {@link NewsItemLoader}; this class appends the following pages
+ * to the same list, prefetching the next page when the last visible item gets within the
+ * paging distance of the {@link FetchProfile} from the end. The pages are fetched with the
+ * profile the first page was, so their offsets line up. Only {@link #MAX_PAGES_IN_MEMORY} pages are
+ * kept, older pages are dropped from the top of the list.
+ * All methods must be called on the main thread.
+ */
+public class NewsFeedPager extends RecyclerView.OnScrollListener {
+
+    private static final String LOG_TAG = NewsFeedPager.class.getSimpleName();
+
+    /** Number of news items in the query urls, before a fetch profile sets its own */
+    public static final int PAGE_SIZE = 20;
+
+    private static final int MAX_PAGES_IN_MEMORY = 10;
+
+    /** Time to wait before retrying a page that failed to load */
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private final NewsItemAdapter mAdapter;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Number of news items in each page held in the list, oldest page first */
+    private final ArrayDeque<Integer> mPageSizes = new ArrayDeque<>();
+    /** Web urls of the news items held, used to skip stories that moved onto a later page */
+    private final Set<String> mWebUrls = new HashSet<>();
+    private final Set<Integer> mInFlightPages = new HashSet<>();
+
+    private String mBaseUrl;
+    private FetchProfile mProfile;
+    private int mNextPage;
+    private boolean mEndReached;
+    private long mRetryAt;
+    /** Incremented on every reset, so pages requested for an older feed are ignored */
+    private int mGeneration;
+    /** Cancels the page requests of the current feed */
+    private CancellationToken mCancellation = new CancellationToken();
+
+    /**
+     * Constructs a new {@link NewsFeedPager}.
+     *
+     * @param adapter showing the feed, pages are appended to its list
+     */
+    public NewsFeedPager(NewsItemAdapter adapter) {
+        mAdapter = adapter;
+    }
+
+    /**
+     * Start paging a new feed, whose first page has just been put in the adapter.
+     *
+     * @param baseUrl query url of the first page, without a page parameter, or null for no paging
+     * @param profile the first page was fetched with, null if there is no paging
+     */
+    public void reset(String baseUrl, FetchProfile profile) {
+        mGeneration++;
+        // pages of the previous feed are no longer wanted
+        mCancellation.cancel();
+        mCancellation = new CancellationToken();
+        mBaseUrl = baseUrl;
+        mProfile = profile;
+        mNextPage = 2;
+        List<NewsItem> firstPage = mAdapter.getNewsItems();
+        mEndReached = profile == null || firstPage.size() < profile.getPageSize();
+        mRetryAt = 0;
+        mInFlightPages.clear();
+        mPageSizes.clear();
+        mPageSizes.add(firstPage.size());
+        mWebUrls.clear();
+        for (NewsItem newsItem : firstPage) {
+            mWebUrls.add(newsItem.getWebUrl());
+        }
+    }
+
+    /**
+     * Stop loading pages, pending results are dropped.
+     */
+    public void shutdown() {
+        mGeneration++;
+        mBaseUrl = null;
+        mCancellation.cancel();
+        mExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        // only scrolling down brings the end of the feed closer; the list may be showing
+        // something else than the feed for a while, like search results
+        if (dy <= 0 || mBaseUrl == null || recyclerView.getAdapter() != mAdapter) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible != RecyclerView.NO_POSITION
+                && lastVisible >= layoutManager.getItemCount() - mProfile.getPagingDistance()) {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Request the next page, unless it is already on its way or there are no more pages.
+     */
+    public void loadNextPage() {
+        if (mBaseUrl == null || mEndReached || SystemClock.uptimeMillis() < mRetryAt) {
+            return;
+        }
+        final int page = mNextPage;
+        if (!mInFlightPages.add(page)) {
+            return;
+        }
+
+        final int generation = mGeneration;
+        final CancellationToken cancellation = mCancellation;
+        final String pageUrl = mProfile.apply(Uri.parse(mBaseUrl).buildUpon()
+                .appendQueryParameter("page", String.valueOf(page))
+                .build().toString());
+        Log.v(LOG_TAG, "loading page " + page);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                NewsResponse response = QueryUtils.fetchNewsItemData(pageUrl, null, null, cancellation,
+                        QuotaScheduler.Priority.PREFETCH);
+                final ArrayList<NewsItem> newsItems = response != null ? response.getNewsItems() : null;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, newsItems);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int page, ArrayList<NewsItem> newsItems) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mInFlightPages.remove(page);
+        if (newsItems == null) {
+            // failed, or asked past the last page; try again a little later
+            mRetryAt = SystemClock.uptimeMillis() + RETRY_DELAY_MILLIS;
+            return;
+        }
+
+        mNextPage = page + 1;
+        if (newsItems.size() < mProfile.getPageSize()) {
+            mEndReached = true;
+        }
+
+        ArrayList<NewsItem> newItems = new ArrayList<>(newsItems.size());
+        for (NewsItem newsItem : newsItems) {
+            if (mWebUrls.add(newsItem.getWebUrl())) {
+                newItems.add(newsItem);
+            }
+        }
+        mAdapter.appendNewsItems(newItems);
+        mPageSizes.add(newItems.size());
+
+        // drop the oldest pages once too many are held
+        while (mPageSizes.size() > MAX_PAGES_IN_MEMORY) {
+            int pageSize = mPageSizes.removeFirst();
+            for (NewsItem newsItem : mAdapter.getNewsItems().subList(0, pageSize)) {
+                mWebUrls.remove(newsItem.getWebUrl());
+            }
+            mAdapter.removeLeadingNewsItems(pageSize);
+        }
+    }
+}
@@ -1,33 +1,128 @@
 package com.example.android.newsapp;
 import android.content.Context;
-import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
-import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import android.widget.TextView;
-import java.text.ParseException;
-import java.util.Date;
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.RequestOptions;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class NewsItemAdapter extends
         RecyclerView.Adapter<NewsItemAdapter.ViewHolder> {
 
+    // Diffs are calculated on this thread, the result is applied on the main thread
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
     // Store a member variable for the News Items Array
     final private List<NewsItem> mNewsItems;
     final Context mContext;
-
-    // Pass in the news items array into the constructor
-    public NewsItemAdapter(Context context, List<NewsItem> newsItems) {
-        mNewsItems = newsItems;
+    final private ThumbnailLoader mThumbnailLoader;
+    final private BrowserWarmup mBrowserWarmup;
+    final private Handler mMainHandler = new Handler(Looper.getMainLooper());
+    final private CardTextLayouts mTextLayouts = new CardTextLayouts();
+    private RecyclerView mRecyclerView;
+    // the row bound last, which tells which way the feed is scrolled
+    private int mLastBoundPosition;
+
+    // Incremented on every change to mNewsItems, so a diff calculated against
+    // an older version of the list is never applied
+    private int mListVersion;
+    // Incremented on every submitList call, so only the latest list is applied
+    private int mSubmitGeneration;
+
+    // Pass in the news items array, the loader for their thumbnails and the browser
+    // warmup that opens the stories into the constructor
+    public NewsItemAdapter(Context context, List<NewsItem> newsItems, ThumbnailLoader thumbnailLoader,
+                           BrowserWarmup browserWarmup) {
+        mNewsItems = new ArrayList<>(newsItems);
         mContext = context;
+        mThumbnailLoader = thumbnailLoader;
+        mBrowserWarmup = browserWarmup;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replace the news items with the given list. The difference between the lists is
+     * calculated on a background thread, so only the rows that actually changed are
+     * rebound, inserted, moved or removed.
+     *
+     * @param newsItems   the new list of news items
+     * @param onCommitted run on the main thread once the new list is shown, may be null
+     */
+    public void submitList(List<NewsItem> newsItems, final Runnable onCommitted) {
+        final int generation = ++mSubmitGeneration;
+        final int listVersion = mListVersion;
+        final List<NewsItem> oldList = new ArrayList<>(mNewsItems);
+        final List<NewsItem> newList = new ArrayList<>(newsItems);
+
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new NewsItemDiffCallback(oldList, newList));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSubmitGeneration) {
+                            // a newer list was submitted in the meantime
+                            return;
+                        }
+                        if (listVersion != mListVersion) {
+                            // the list changed while the diff was calculated, start over
+                            submitList(newList, onCommitted);
+                            return;
+                        }
+                        mNewsItems.clear();
+                        mNewsItems.addAll(newList);
+                        mListVersion++;
+                        result.dispatchUpdatesTo(NewsItemAdapter.this);
+                        if (onCommitted != null) {
+                            onCommitted.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Get a read only view of the news items shown.
+     */
+    public List<NewsItem> getNewsItems() {
+        return Collections.unmodifiableList(mNewsItems);
+    }
+
+    /**
+     * Get the layouts of the rows' text, prepared ahead of binding.
+     */
+    CardTextLayouts getTextLayouts() {
+        return mTextLayouts;
+    }
+
+    /**
+     * Add news items to the end of the list.
+     */
+    public void appendNewsItems(List<NewsItem> newsItems) {
+        int positionStart = mNewsItems.size();
+        mNewsItems.addAll(newsItems);
+        mListVersion++;
+        notifyItemRangeInserted(positionStart, newsItems.size());
+    }
+
+    /**
+     * Remove the given number of news items from the top of the list.
+     */
+    public void removeLeadingNewsItems(int count) {
+        mNewsItems.subList(0, count).clear();
+        mListVersion++;
+        notifyItemRangeRemoved(0, count);
     }
 
     @NonNull
@@ -47,6 +142,8 @@ public class NewsItemAdapter extends
     // Involves populating data into the item through holder
     @Override
     public void onBindViewHolder(@NonNull NewsItemAdapter.ViewHolder viewHolder, final int position) {
+        long bindStart = System.nanoTime();
+
         // Get the data model based on position
         final NewsItem currentNewsItem = mNewsItems.get(position);
 
@@ -54,56 +151,73 @@ public class NewsItemAdapter extends
         // Set item views based on your views and data model
         final ImageView imageView = viewHolder.newsImageView;
 
-        // in order to use centerCrop() we must first write this code in Glide version 4 and up
-        RequestOptions options = new RequestOptions();
-        options.centerCrop();
-
-        // use Glide to get image from url and put it in image view
-        Glide.with(mContext)
-                .load(currentNewsItem.getThumbnailUrl())
-                .apply(options)
-                .into(imageView);
-
-
-        TextView headlineView = viewHolder.headlineView;
-        headlineView.setText(currentNewsItem.getHeadline());
-
-        TextView trailTextView = viewHolder.trailTextView;
-        trailTextView.setText(currentNewsItem.getTrailText());
-
-        TextView categoryView = viewHolder.categoryView;
-        categoryView.setText(currentNewsItem.getCategory());
-
-        TextView authorView = viewHolder.authorView;
-        authorView.setText(currentNewsItem.getAuthor());
-
-        TextView dateView = viewHolder.dateView;
+        // use Glide to get image from url and put it in image view, sized to the view
+        mThumbnailLoader.bind(imageView, currentNewsItem.getThumbnailUrl());
 
-        String dateOfArticle = formatDate(currentNewsItem.getDate());
 
-        dateView.setText(dateOfArticle);
+        // the text is usually laid out in the background already, so this only attaches it
+        CardTextLayouts.Layouts layouts = null;
+        if (mRecyclerView != null) {
+            mTextLayouts.setGeometry(viewHolder, mRecyclerView.getWidth());
+            layouts = mTextLayouts.get(currentNewsItem);
+        }
+        if (layouts != null) {
+            viewHolder.headlineView.setLayout(layouts.headline);
+            viewHolder.trailTextView.setLayout(layouts.trailText);
+            viewHolder.categoryView.setLayout(layouts.category);
+            viewHolder.authorView.setLayout(layouts.author);
+            viewHolder.dateView.setLayout(layouts.date);
+        } else {
+            // the list hasn't been laid out yet, so the views lay their text out when measured
+            viewHolder.headlineView.setText(currentNewsItem.getHeadline());
+            viewHolder.trailTextView.setText(currentNewsItem.getTrailText());
+            viewHolder.categoryView.setText(currentNewsItem.getCategory());
+            viewHolder.authorView.setText(currentNewsItem.getAuthor());
+            viewHolder.dateView.setText(PublicationDates.format(currentNewsItem.getPublicationTime()));
+        }
+        prefetchTextLayouts(position);
 
 
-        // create click listener which will open the url of the news story that user clicks on
+        // create click listener which will open the news story that user clicks on,
+        // from local storage when it was saved for offline reading
         viewHolder.itemView.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                Context context = view.getContext();
-
-                // get url of news item
-                String webUrl = currentNewsItem.getWebUrl();
+                ReaderActivity.open(view.getContext(), currentNewsItem, mBrowserWarmup);
+            }
+        });
 
-                // convert the url into a uri to use in an intent
-                Uri webpage = Uri.parse(webUrl);
+        ThumbnailMetrics.recordBind(System.nanoTime() - bindStart);
+    }
 
-                // create implicit intent to open a web browser to show the url
-                Intent intent = new Intent(Intent.ACTION_VIEW, webpage);
-                if (intent.resolveActivity(context.getPackageManager()) != null) {
-                    context.startActivity(intent);
-                }
+    // Lay out the text of the rows after this one, in the direction the feed is scrolled
+    private void prefetchTextLayouts(int position) {
+        int step = position >= mLastBoundPosition ? 1 : -1;
+        mLastBoundPosition = position;
+        for (int i = 1; i <= CardTextLayouts.PREFETCH_COUNT; i++) {
+            int ahead = position + step * i;
+            if (ahead < 0 || ahead >= mNewsItems.size()) {
+                break;
             }
-        });
+            mTextLayouts.prefetch(mNewsItems.get(ahead));
+        }
+    }
 
+    // The text is laid out at the width of the list
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        mRecyclerView = null;
+    }
+
+    // The row left the screen, so stop loading its thumbnail and let Glide reuse the bitmap
+    @Override
+    public void onViewRecycled(@NonNull NewsItemAdapter.ViewHolder viewHolder) {
+        mThumbnailLoader.clear(viewHolder.newsImageView);
     }
 
     // Returns the total count of items in the list
@@ -112,23 +226,56 @@ public class NewsItemAdapter extends
         return mNewsItems.size();
     }
 
+    // The web url identifies a news item, so its hash is used as the stable id
+    @Override
+    public long getItemId(int position) {
+        return stableId(mNewsItems.get(position).getWebUrl());
+    }
+
     /**
-     * This method format the date into a specific pattern.
-     *
-     * @param dateObj is the web publication date.
-     * @return a date formatted's string.
+     * 64 bit FNV-1a hash of the web url, wide enough that ids of different news items
+     * don't collide in practice.
      */
-    private String formatDate(String dateObj) {
-        String dateFormatted = "";
-        SimpleDateFormat inputDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.getDefault());
-        SimpleDateFormat outputDate = new SimpleDateFormat("EEEE, dd.MM.yyyy", Locale.getDefault());
-        try {
-            Date newDate = inputDate.parse(dateObj);
-            return outputDate.format(newDate);
-        } catch (ParseException e) {
-            e.printStackTrace();
+    private static long stableId(String webUrl) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < webUrl.length(); i++) {
+            hash ^= webUrl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Compares news items by web url for identity, and by the displayed fields for content.
+     */
+    private static class NewsItemDiffCallback extends DiffUtil.Callback {
+        private final List<NewsItem> mOldList;
+        private final List<NewsItem> mNewList;
+
+        NewsItemDiffCallback(List<NewsItem> oldList, List<NewsItem> newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).getWebUrl().equals(mNewList.get(newItemPosition).getWebUrl());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).contentEquals(mNewList.get(newItemPosition));
         }
-        return dateFormatted;
     }
 
     public class ViewHolder extends RecyclerView.ViewHolder {
@@ -138,11 +285,11 @@ public class NewsItemAdapter extends
         // Used to cache the views within the item layout for fast access
         public final View view;
         public final ImageView newsImageView;
-        public final TextView headlineView;
-        public final TextView trailTextView;
-        public final TextView categoryView;
-        public final TextView authorView;
-        public final TextView dateView;
+        public final TextLayoutView headlineView;
+        public final TextLayoutView trailTextView;
+        public final TextLayoutView categoryView;
+        public final TextLayoutView authorView;
+        public final TextLayoutView dateView;
 
         // We also create a constructor that accepts the entire item row
         // and does the view lookups to find each subview
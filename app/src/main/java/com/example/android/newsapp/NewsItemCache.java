@@ -0,0 +1,411 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disk backed cache of {@link NewsItem} lists, keyed by the query url they were loaded from.
+ * Entries are evicted once they are older than the maximum age, and the least recently
+ * used entries are evicted once the cache grows beyond its maximum size.
+ * The most recently used entries are also kept in memory, so switching back to a feed
+ * read a moment ago doesn't touch the disk. The memory has a lock of its own, so the main
+ * thread can look there while another thread reads or writes the disk.
+ */
+public class NewsItemCache {
+
+    private static final String LOG_TAG = NewsItemCache.class.getSimpleName();
+
+    /** Bump this whenever the file format changes, old entries are then ignored */
+    private static final int FORMAT_VERSION = 4;
+
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    private static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(3);
+
+    /** Entries kept in memory, enough for the topics a user flips between */
+    private static final int MAX_MEMORY_ENTRIES = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static NewsItemCache sInstance;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final long mMaxAgeMillis;
+
+    /**
+     * Most recently used entries, in access order; guarded by itself. The files are guarded
+     * by this, which is taken first when both are needed.
+     */
+    private final LinkedHashMap<String, Entry> mMemory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        // qualified, as within the map Entry is Map.Entry
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NewsItemCache.Entry> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    };
+
+    /**
+     * Get the cache shared by the whole app, stored in the app's cache directory.
+     */
+    public static synchronized NewsItemCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "news_items");
+            sInstance = new NewsItemCache(directory, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MILLIS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link NewsItemCache}.
+     *
+     * @param directory    where the cache files are kept
+     * @param maxBytes     total size of the cache files above which entries are evicted
+     * @param maxAgeMillis age after which an entry is no longer returned
+     */
+    public NewsItemCache(File directory, long maxBytes, long maxAgeMillis) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Return the entry cached for the given key, or null if there is no entry
+     * or the entry has expired.
+     */
+    public synchronized Entry get(String key) {
+        Entry memoryEntry = getFromMemory(key);
+        if (memoryEntry != null) {
+            // keep the file's least recently used order in step
+            fileFor(key).setLastModified(System.currentTimeMillis());
+            return memoryEntry;
+        }
+
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        Entry entry = readFile(file);
+        if (entry != null) {
+            // mark the entry as recently used
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (mMemory) {
+                mMemory.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Add the news items of every entry on disk to the search index. Reads the disk, so
+     * call it on a background thread; other callers only wait for one entry at a time.
+     */
+    public void indexAll(ArticleSearchIndex searchIndex) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                continue;
+            }
+            Entry entry;
+            synchronized (this) {
+                entry = file.exists() ? readFile(file) : null;
+            }
+            if (entry != null) {
+                searchIndex.add(entry.getNewsItems());
+            }
+        }
+    }
+
+    /**
+     * Read a cache file, deleting it if it has expired or can't be read.
+     */
+    private Entry readFile(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION) {
+                deleteFile(file);
+                return null;
+            }
+            long savedAt = in.readLong();
+            if (System.currentTimeMillis() - savedAt > mMaxAgeMillis) {
+                deleteFile(file);
+                return null;
+            }
+            FetchProfile profile = FetchProfile.forName(readString(in));
+            if (profile == null) {
+                deleteFile(file);
+                return null;
+            }
+            String eTag = readString(in);
+            String lastModified = readString(in);
+            int count = in.readInt();
+            ArrayList<NewsItem> newsItems = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                // the trailText stays encoded, as the news item keeps it
+                newsItems.add(new NewsItem(readString(in), readString(in), readBytes(in), readString(in),
+                        in.readLong(), readString(in), readString(in)));
+            }
+            return new Entry(newsItems, eTag, lastModified, savedAt, profile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading cached news items", e);
+            deleteFile(file);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Return the entry cached in memory for the given key, or null if it is only on disk,
+     * not cached at all or has expired. Never reads the disk nor waits for another thread
+     * that does, so it is safe to call from the main thread.
+     */
+    public Entry getFromMemory(String key) {
+        synchronized (mMemory) {
+            Entry entry = mMemory.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.getSavedAt() > mMaxAgeMillis) {
+                mMemory.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Store the news items for the given key, fetched from the key's url as it is, replacing
+     * any existing entry.
+     *
+     * @param eTag         entity tag of the response the news items came from, or null
+     * @param lastModified last modified date of the response the news items came from, or null
+     */
+    public void put(String key, List<NewsItem> newsItems, String eTag, String lastModified) {
+        put(key, newsItems, eTag, lastModified, FetchProfile.STANDARD);
+    }
+
+    /**
+     * Store the news items for the given key, replacing any existing entry.
+     *
+     * @param eTag         entity tag of the response the news items came from, or null
+     * @param lastModified last modified date of the response the news items came from, or null
+     * @param profile      the news items were fetched with
+     */
+    public synchronized void put(String key, List<NewsItem> newsItems, String eTag, String lastModified,
+                                 FetchProfile profile) {
+        long savedAt = System.currentTimeMillis();
+        // still under this, so a get reading the old file can't put it back in memory after us
+        synchronized (mMemory) {
+            mMemory.put(key, new Entry(new ArrayList<>(newsItems), eTag != null ? eTag : "",
+                    lastModified != null ? lastModified : "", savedAt, profile));
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Unable to create cache directory " + mDirectory);
+            return;
+        }
+
+        // write to a temporary file first so a crash never leaves a half written entry
+        File file = fileFor(key);
+        File tempFile = new File(mDirectory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(savedAt);
+            writeString(out, profile.getName());
+            writeString(out, eTag != null ? eTag : "");
+            writeString(out, lastModified != null ? lastModified : "");
+            out.writeInt(newsItems.size());
+            for (NewsItem newsItem : newsItems) {
+                writeString(out, newsItem.getCategory());
+                writeString(out, newsItem.getHeadline());
+                writeBytes(out, newsItem.getTrailTextBytes());
+                writeString(out, newsItem.getAuthor());
+                out.writeLong(newsItem.getPublicationTime());
+                writeString(out, newsItem.getWebUrl());
+                writeString(out, newsItem.getThumbnailUrl());
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tempFile + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing news items to the cache", e);
+            deleteFile(tempFile);
+        } finally {
+            closeQuietly(out);
+        }
+
+        trimToSize();
+    }
+
+    /**
+     * Delete expired entries, then the least recently used ones until the cache fits in its
+     * maximum size.
+     */
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // oldest first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long lastModifiedA = a.lastModified();
+                long lastModifiedB = b.lastModified();
+                return lastModifiedA < lastModifiedB ? -1 : (lastModifiedA == lastModifiedB ? 0 : 1);
+            }
+        });
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            // an entry unused for longer than the maximum age was saved even earlier, so it has expired
+            if (totalBytes <= mMaxBytes && now - file.lastModified() <= mMaxAgeMillis) {
+                break;
+            }
+            totalBytes -= file.length();
+            deleteFile(file);
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, hash(key));
+    }
+
+    /**
+     * Hash the key so any url can be used as a file name.
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(LOG_TAG, "Unable to delete " + file);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // nothing useful left to do
+            }
+        }
+    }
+
+    /**
+     * News items stored in the cache, with the validators of the response they came from.
+     */
+    public static class Entry {
+        private ArrayList<NewsItem> newsItems;
+        private String eTag;
+        private String lastModified;
+        private long savedAt;
+        private FetchProfile profile;
+
+        Entry(ArrayList<NewsItem> newsItems, String eTag, String lastModified, long savedAt, FetchProfile profile) {
+            this.newsItems = newsItems;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.savedAt = savedAt;
+            this.profile = profile;
+        }
+
+        /**
+         * Get the cached news items.
+         */
+        public ArrayList<NewsItem> getNewsItems() {
+            return newsItems;
+        }
+
+        /**
+         * Get the entity tag to revalidate the entry with, empty if there is none.
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Get the last modified date to revalidate the entry with, empty if there is none.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Get the time the entry was stored, in milliseconds since the epoch.
+         */
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        /**
+         * Get the profile the news items were fetched with. The validators only hold for a
+         * request made with the same profile.
+         */
+        public FetchProfile getProfile() {
+            return profile;
+        }
+    }
+}
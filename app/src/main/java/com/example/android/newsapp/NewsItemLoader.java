@@ -2,16 +2,65 @@ package com.example.android.newsapp;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.net.Uri;
+import android.os.OperationCanceledException;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NewsItemLoader extends AsyncTaskLoader<ArrayList<NewsItem>> {
 
+    /** Metrics key of a feed combining several sections */
+    private static final String MULTI_SECTION_METRICS_KEY = "my sections";
+
+    /**
+     * Query URLs, one per section; several sections are merged into one feed
+     */
+    List<String> mUrls;
+
+    /**
+     * Disk cache of previously loaded news items, keyed by query URL
+     */
+    private final NewsItemCache mCache;
+
+    /**
+     * True once the first load has looked for a cached result
+     */
+    private volatile boolean mCacheChecked;
+
+    /**
+     * Cache entries by query URL, used to revalidate them with conditional requests
+     */
+    private final Map<String, NewsItemCache.Entry> mCachedEntries = new ConcurrentHashMap<>();
+
+    /**
+     * True when a cached result was delivered and still needs refreshing from the network
+     */
+    private volatile boolean mRefreshPending;
+
     /**
-     * Query URL
+     * When the last load finished on the background thread, as {@link System#nanoTime()}
      */
-    String mUrl;
+    private volatile long mLoadFinishedNanos;
+
+    /**
+     * The last news items delivered, handed out again when loading restarts
+     */
+    private ArrayList<NewsItem> mNewsItems;
+
+    /**
+     * Cancels the requests of the load in progress, null when none is; guarded by this
+     */
+    private CancellationToken mCancellation;
+
+    /**
+     * The fetch profile of the last load, which the following pages should be fetched with
+     */
+    private volatile FetchProfile mProfile = FetchProfile.STANDARD;
 
     /**
      * Constructs a new {@link NewsItemLoader}.
@@ -20,30 +69,321 @@ public class NewsItemLoader extends AsyncTaskLoader<ArrayList<NewsItem>> {
      * @param url     to load data from
      */
     public NewsItemLoader(Context context, String url) {
+        this(context, Collections.singletonList(url));
+    }
+
+    /**
+     * Constructs a new {@link NewsItemLoader} for a feed combining several sections.
+     *
+     * @param context of the activity
+     * @param urls    to load data from, one per section
+     */
+    public NewsItemLoader(Context context, List<String> urls) {
         super(context);
-        this.mUrl = url;
+        this.mUrls = urls;
+        this.mCache = NewsItemCache.getInstance(context);
+    }
+
+    /**
+     * Get the query URL of this loader, or null if it combines several sections.
+     */
+    public String getUrl() {
+        return mUrls.size() == 1 ? mUrls.get(0) : null;
+    }
+
+    /**
+     * Get the query URLs of this loader, one per section.
+     */
+    public List<String> getUrls() {
+        return mUrls;
+    }
+
+    /**
+     * Get the key the load metrics of this loader are recorded under.
+     */
+    public String getMetricsKey() {
+        return mUrls.size() == 1 ? LoadMetrics.queryKey(mUrls.get(0)) : MULTI_SECTION_METRICS_KEY;
+    }
+
+    /**
+     * Get the fetch profile the last load requested its news items with.
+     */
+    public FetchProfile getProfile() {
+        return mProfile;
+    }
+
+    /**
+     * Get the time the last load finished on the background thread, as {@link System#nanoTime()}.
+     */
+    public long getLoadFinishedNanos() {
+        return mLoadFinishedNanos;
     }
 
     @Override
     protected void onStartLoading() {
         Log.v(NewsItemLoader.class.getName(), "onStartLoader called");
-        forceLoad();
+        // hand out what we already have, and only go back to the network when it has changed
+        if (mNewsItems != null) {
+            deliverResult(mNewsItems);
+        }
+        if (takeContentChanged() || mNewsItems == null) {
+            forceLoad();
+        }
     }
 
     /**
      * This is on a background thread.
+     * The first load returns the cached news items straight away if there are any,
+     * and unless the background sync stored them moments ago, a refresh from the
+     * network is started as soon as they are delivered.
      */
     @Override
     public ArrayList<NewsItem> loadInBackground() {
         Log.v(NewsItemLoader.class.getName(), "onLoadInBackground called");
+        CancellationToken cancellation;
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            cancellation = new CancellationToken();
+            mCancellation = cancellation;
+        }
+        try {
+            ArrayList<NewsItem> newsItems = loadNewsItems(cancellation);
+            // the hand-off to the main thread starts here
+            mLoadFinishedNanos = System.nanoTime();
+            return newsItems;
+        } finally {
+            synchronized (this) {
+                mCancellation = null;
+            }
+        }
+    }
+
+    /**
+     * Abort the requests of the load in progress, closing their connections straight away
+     * unless another caller is waiting on the same request.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (mCancellation != null) {
+                mCancellation.cancel();
+            }
+        }
+    }
+
+    private ArrayList<NewsItem> loadNewsItems(CancellationToken cancellation) {
         // Don't perform the request if there are no URLs, or the first URL is null.
-        if (this.mUrl == null) {
+        if (this.mUrls.isEmpty() || this.mUrls.get(0) == null) {
             return null;
         }
-        // Perform the HTTP request for earthquake data and process the response.
-        ArrayList<NewsItem> latestNewsItems = QueryUtils.fetchNewsItemData(this.mUrl);
+        // every section of a load is fetched with the same profile
+        final FetchProfile profile = NetworkMonitor.getInstance(getContext()).getProfile();
+        mProfile = profile;
+
+        if (!mCacheChecked) {
+            mCacheChecked = true;
+            ArrayList<NewsItem> cachedNewsItems = loadFromCache();
+            if (cachedNewsItems != null) {
+                Log.v(NewsItemLoader.class.getName(), "serving cached news items");
+                // a feed the background sync refreshed a moment ago is served as it is
+                mRefreshPending = !isCacheFresh(profile);
+                return cachedNewsItems;
+            }
+        }
+
+        if (mUrls.size() == 1) {
+            return fetchSection(mUrls.get(0), profile, cancellation);
+        }
+
+        // fetch all the sections at once and merge them
+        return MultiSectionFetcher.fetchAll(mUrls, new MultiSectionFetcher.SectionSource() {
+            @Override
+            public ArrayList<NewsItem> fetch(String url, CancellationToken sectionCancellation) {
+                return fetchSection(url, profile, sectionCancellation);
+            }
+        }, isNewestFirst(), cancellation);
+    }
+
+    /**
+     * Read the cached news items of every section, merged when there are several.
+     *
+     * @return the cached news items, or null if none of the sections are cached
+     */
+    private ArrayList<NewsItem> loadFromCache() {
+        List<ArrayList<NewsItem>> sections = new ArrayList<>(mUrls.size());
+        for (String url : mUrls) {
+            NewsItemCache.Entry entry = mCache.get(url);
+            if (entry != null) {
+                mCachedEntries.put(url, entry);
+                sections.add(entry.getNewsItems());
+            }
+        }
+        if (sections.isEmpty()) {
+            return null;
+        }
+        return sections.size() == 1 ? sections.get(0) : MultiSectionFetcher.merge(sections, isNewestFirst());
+    }
+
+    /**
+     * True if every section is cached, was stored less than the sync interval ago, and has
+     * every field the profile asks for.
+     */
+    private boolean isCacheFresh(FetchProfile profile) {
+        if (mCachedEntries.size() < mUrls.size()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (NewsItemCache.Entry entry : mCachedEntries.values()) {
+            if (now - entry.getSavedAt() >= FeedSyncer.MIN_SYNC_INTERVAL_MILLIS
+                    || !entry.getProfile().hasFieldsOf(profile)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Load one section from the network and store it in the cache.
+     * When we hold a cached entry of a feed ordered newest first, only the stories published
+     * since are requested. Otherwise a cached entry makes the request conditional, so an
+     * unchanged section costs a 304 instead of a full download and parse.
+     * The section is cached under its url, whatever profile it was requested with, and the
+     * profile is recorded with it: cached news items missing fields the profile asks for,
+     * like those of the lite profile on a network that has since got better, are neither
+     * merged into nor revalidated, but fetched again in full.
+     */
+    private ArrayList<NewsItem> fetchSection(String url, FetchProfile profile, CancellationToken cancellation) {
+        NewsItemCache.Entry cachedEntry = mCachedEntries.get(url);
+        if (cachedEntry != null && isNewestFirst() && cachedEntry.getProfile().hasFieldsOf(profile)) {
+            long newest = DeltaSync.newestPublicationTime(cachedEntry.getNewsItems());
+            if (newest != PublicationDates.UNKNOWN) {
+                return fetchDelta(url, profile, cachedEntry, newest, cancellation);
+            }
+        }
+
+        String requestUrl = profile.apply(url);
+        // the validators only describe the response to the same request
+        NewsResponse response = cachedEntry != null && cachedEntry.getProfile() == profile
+                ? QueryUtils.fetchNewsItemData(requestUrl, cachedEntry.getETag(), cachedEntry.getLastModified(),
+                        cancellation)
+                : QueryUtils.fetchNewsItemData(requestUrl, null, null, cancellation);
+        if (response == null) {
+            return servedFromCache(cachedEntry, cancellation);
+        }
+
+        ArrayList<NewsItem> latestNewsItems = response.isNotModified() && cachedEntry != null
+                ? cachedEntry.getNewsItems()
+                : response.getNewsItems();
+        if (latestNewsItems != null) {
+            mCache.put(url, latestNewsItems, response.getETag(), response.getLastModified(), profile);
+            mCachedEntries.put(url, new NewsItemCache.Entry(latestNewsItems,
+                    response.getETag(), response.getLastModified(), System.currentTimeMillis(), profile));
+        }
         return latestNewsItems;
     }
 
+    /**
+     * Load only the stories of one section published since the newest cached one, and merge
+     * them into the cached stories. New stories only ever appear at the top of a feed ordered
+     * newest first, so this gives the same first page as a full refresh.
+     */
+    private ArrayList<NewsItem> fetchDelta(String url, FetchProfile profile, NewsItemCache.Entry cachedEntry,
+                                           long newest, CancellationToken cancellation) {
+        NewsResponse response = QueryUtils.fetchNewsItemData(
+                DeltaSync.buildDeltaUrl(profile.apply(url), newest), null, null, cancellation);
+        if (response == null || response.getNewsItems() == null) {
+            return servedFromCache(cachedEntry, cancellation);
+        }
+
+        ArrayList<NewsItem> delta = response.getNewsItems();
+        ArrayList<NewsItem> latestNewsItems;
+        FetchProfile latestProfile;
+        if (DeltaSync.isGap(delta, profile.getPageSize())) {
+            // a page or more of new stories: the response is a full first page on its own
+            Log.v(NewsItemLoader.class.getName(), "gap since the last refresh, replacing cached news items");
+            latestNewsItems = delta;
+            latestProfile = profile;
+        } else {
+            latestNewsItems = DeltaSync.merge(delta, cachedEntry.getNewsItems(), profile.getPageSize());
+            // the merged list is only as complete as its lighter part
+            latestProfile = profile.hasFieldsOf(cachedEntry.getProfile()) ? cachedEntry.getProfile() : profile;
+        }
+        // the validators of a full response don't describe the merged list
+        mCache.put(url, latestNewsItems, null, null, latestProfile);
+        mCachedEntries.put(url, new NewsItemCache.Entry(latestNewsItems, "", "", System.currentTimeMillis(),
+                latestProfile));
+        return latestNewsItems;
+    }
+
+    /**
+     * Return the cached news items of a section that couldn't be refreshed, or null if there
+     * are none or the load was cancelled. The requests were retried already, and while the
+     * API is unhealthy they fail fast, so the stale section is shown without delay.
+     */
+    private static ArrayList<NewsItem> servedFromCache(NewsItemCache.Entry cachedEntry,
+                                                      CancellationToken cancellation) {
+        if (cachedEntry == null || (cancellation != null && cancellation.isCanceled())) {
+            return null;
+        }
+        Log.v(NewsItemLoader.class.getName(), "refresh failed, serving cached news items");
+        return cachedEntry.getNewsItems();
+    }
+
+    /**
+     * Whether the feed is ordered newest first, which decides how sections are merged.
+     */
+    private boolean isNewestFirst() {
+        return isNewestFirst(mUrls);
+    }
+
+    private static boolean isNewestFirst(List<String> urls) {
+        return !"oldest".equals(Uri.parse(urls.get(0)).getQueryParameter("order-by"));
+    }
+
+    /**
+     * Return the feed for the given urls if every section of it is cached in memory,
+     * merged when there are several, or null otherwise. Never reads the disk or the
+     * network, so the main thread can show the result before a loader has even started.
+     */
+    public static ArrayList<NewsItem> peekMemoryCache(NewsItemCache cache, List<String> urls) {
+        if (urls.isEmpty() || urls.get(0) == null) {
+            return null;
+        }
+        List<ArrayList<NewsItem>> sections = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            NewsItemCache.Entry entry = cache.getFromMemory(url);
+            if (entry == null) {
+                return null;
+            }
+            sections.add(entry.getNewsItems());
+        }
+        return sections.size() == 1 ? sections.get(0) : MultiSectionFetcher.merge(sections, isNewestFirst(urls));
+    }
+
+    @Override
+    public void deliverResult(ArrayList<NewsItem> data) {
+        if (isReset()) {
+            return;
+        }
+        if (data != null) {
+            mNewsItems = data;
+        }
+        super.deliverResult(data);
+        // the cached result is on screen, now fetch the fresh one
+        if (mRefreshPending && isStarted()) {
+            mRefreshPending = false;
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+        mNewsItems = null;
+    }
 
 }
@@ -0,0 +1,98 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the bodies of the top stories of the feed for reading offline, once the user has
+ * turned it on in the settings. The bodies are fetched in a single request by the sync job
+ * that runs on unmetered networks, and {@link ReaderActivity} shows them from local storage.
+ */
+public final class OfflineArticles {
+
+    private static final String LOG_TAG = OfflineArticles.class.getSimpleName();
+
+    /** Number of stories from the top of the feed that are saved */
+    static final int PREFETCH_COUNT = 20;
+
+    /** Total compressed size of the saved stories, beyond which the least recently used go */
+    private static final long MAX_BYTES = 10 * 1024 * 1024;
+
+    private static ArticleBodyStore sStore;
+
+    private OfflineArticles() {
+    }
+
+    /**
+     * Get the store of saved stories shared by the whole app, kept in the app's cache directory.
+     */
+    public static synchronized ArticleBodyStore getStore(Context context) {
+        if (sStore == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "articles");
+            sStore = new ArticleBodyStore(directory, MAX_BYTES);
+        }
+        return sStore;
+    }
+
+    /**
+     * Whether the user wants stories saved for offline reading.
+     */
+    public static boolean isEnabled(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(context.getString(R.string.settings_offline_reading_key), false);
+    }
+
+    /**
+     * Fetch and save the bodies of the top stories of the cached feed that aren't saved yet.
+     * Runs the request on the calling thread.
+     *
+     * @param feedUrls     query urls of the feed, one per section
+     * @param cancellation cancels the wait for the quota, may be null
+     * @return the number of stories saved
+     */
+    public static int prefetch(Context context, List<String> feedUrls, CancellationToken cancellation)
+            throws IOException {
+        NewsItemCache cache = NewsItemCache.getInstance(context);
+        List<ArrayList<NewsItem>> sections = new ArrayList<>(feedUrls.size());
+        for (String url : feedUrls) {
+            NewsItemCache.Entry entry = cache.get(url);
+            if (entry != null) {
+                sections.add(entry.getNewsItems());
+            }
+        }
+        if (sections.isEmpty()) {
+            return 0;
+        }
+        List<NewsItem> feed = sections.size() == 1 ? sections.get(0) : MultiSectionFetcher.merge(sections, true);
+
+        ArticleBodyStore store = getStore(context);
+        List<String> missing = new ArrayList<>(PREFETCH_COUNT);
+        for (int i = 0; i < feed.size() && i < PREFETCH_COUNT; i++) {
+            String webUrl = feed.get(i).getWebUrl();
+            if (!store.contains(webUrl)) {
+                missing.add(webUrl);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        URL url = new URL(FeedQueries.buildArticleBodiesUrl(missing));
+        QueryUtils.QUOTA.acquire(url, QuotaScheduler.Priority.BACKGROUND, cancellation);
+        Map<String, String> bodies = QueryUtils.API_CLIENT.fetchBody(url, new ArticleBodyParser());
+        for (Map.Entry<String, String> body : bodies.entrySet()) {
+            store.put(body.getKey(), body.getValue());
+        }
+        Log.v(LOG_TAG, "saved " + bodies.size() + " of " + missing.size() + " stories, "
+                + store.size() / 1024 + " kB in total");
+        return bodies.size();
+    }
+}
@@ -1,19 +1,10 @@
 package com.example.android.newsapp;
 
-import android.text.Html;
-import android.text.TextUtils;
 import android.util.Log;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 
 /**
@@ -33,169 +24,144 @@ public final class QueryUtils {
     }
 
     /**
-     * Query the Guardian API and return a {@link ArrayList<NewsItem>} object to represent an array of news items.
+     * Rate limit of the API key, shared by the feed, paging, the sync jobs and the offline
+     * downloads, so they take turns by priority instead of running into 429s.
      */
-    public static ArrayList<NewsItem> fetchNewsItemData(String requestUrl) {
-        Log.v(QueryUtils.class.getName(), "fetchNewsItemData called");
+    static final QuotaScheduler QUOTA = new QuotaScheduler();
 
-        // Create URL object
-        URL url = createUrl(requestUrl);
+    /**
+     * Quality of the network as measured by the feed requests, which {@link NetworkMonitor}
+     * picks the fetch profile by.
+     */
+    static final NetworkQualityEstimator NETWORK_QUALITY = new NetworkQualityEstimator();
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
-        try {
-            jsonResponse = makeHttpRequest(url);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error closing input stream", e);
-        }
+    /**
+     * Every news item fetched, for searching them without the network. The news items
+     * cached from earlier runs are added by {@link NewsItemCache#indexAll}.
+     */
+    static final ArticleSearchIndex SEARCH_INDEX = new ArticleSearchIndex();
 
-        // Extract relevant fields from the JSON response and create an {@link ArrayList<NewsItem>} object
-        ArrayList<NewsItem> latestNewsItems = extractEarthquakes(jsonResponse);
+    /**
+     * Client for every request to the Guardian API, so they all retry within the same
+     * circuit breaker and share one view of the API's health.
+     */
+    static final ResilientClient API_CLIENT = new ResilientClient(new NewsItemParser(), QUOTA);
 
-        // Return the {@link Event}
-        return latestNewsItems;
+    /**
+     * Client that reads news items straight from the response stream, with identical
+     * requests in flight at the same time sharing one call, and one token of the quota.
+     * Each response is measured and indexed once, however many callers shared it.
+     */
+    private static final RequestCoalescer CLIENT = new RequestCoalescer(API_CLIENT, QUOTA,
+            new RequestCoalescer.Listener() {
+                @Override
+                public void onResponse(URL url, NewsResponse response) {
+                    Log.v(LOG_TAG, (response.isNotModified() ? "not modified, " : "") +
+                            response.getBytesReceived() + " bytes received");
+                    recordTimings(LoadMetrics.queryKey(url.toString()), response);
+                    NETWORK_QUALITY.record(response.getBytesReceived(), response.getReadNanos(),
+                            response.getFirstByteNanos());
+                    if (response.getNewsItems() != null) {
+                        SEARCH_INDEX.add(response.getNewsItems());
+                    }
+                }
+            });
 
+    /**
+     * Query the Guardian API and return a {@link ArrayList<NewsItem>} object to represent an array of news items.
+     */
+    public static ArrayList<NewsItem> fetchNewsItemData(String requestUrl) {
+        NewsResponse response = fetchNewsItemData(requestUrl, null, null);
+        return response != null ? response.getNewsItems() : null;
     }
 
     /**
-     * Return a list of {@link NewsItem} objects that has been built up from
-     * parsing a JSON response.
+     * Query the Guardian API with a conditional request, using the validators of a stored response.
+     *
+     * @param eTag         entity tag of the stored response, or null
+     * @param lastModified last modified date of the stored response, or null
+     * @return the response, or null if the request failed
      */
-    public static ArrayList<NewsItem> extractEarthquakes(String jsonResponse) {
-
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(jsonResponse)) {
-            return null;
-        }
-
-        // Create an empty ArrayList that we can start adding news items to
-        ArrayList<NewsItem> newsItems = new ArrayList<>();
-
-        // Try to parse the jsonResponse. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
-        try {
-            // get root JSONObject
-            JSONObject jsonRootObject = new JSONObject(jsonResponse);
-
-            // get object with key value "response" which contains array with news item data.
-            JSONObject jsonResponseObject = jsonRootObject.getJSONObject("response");
-
-            //Get the instance of JSONArray that contains JSONObjects containing the news item data
-            JSONArray jsonArray = jsonResponseObject.getJSONArray("results");
-
-            //Iterate the jsonArray and print the info of JSONObjects
-            for(int i=0; i < jsonArray.length(); i++) {
-
-                // get current object in results Array
-                JSONObject currentNewsItemJSONObject = jsonArray.getJSONObject(i);
-
-                // get "fields" object from the current news item object in the Array
-                JSONObject fieldsJSONObject = currentNewsItemJSONObject.getJSONObject("fields");
-
-                // get data for this news item in order that they are passed into NewsItem constructor
-
-                String category = currentNewsItemJSONObject.optString("sectionName");
-                String headline = fieldsJSONObject.optString("headline");
-                String trailTextHtml = fieldsJSONObject.optString("trailText");
-                // remove html tags from this string
-                String trailText = Html.fromHtml(trailTextHtml).toString();
-                String author = fieldsJSONObject.optString("byline");
-                String date = currentNewsItemJSONObject.optString("webPublicationDate");
-                String webUrl = currentNewsItemJSONObject.optString("webUrl");
-                String thumbnailUrl = fieldsJSONObject.optString("thumbnail");
-
-                // create new News Item object with these values as parameters and pass it into
-                // the earthquakes array
-                newsItems.add(new NewsItem(category, headline, trailText, author, date, webUrl, thumbnailUrl));
-
-            }
-
-            // Return the list of news items
-            return newsItems;
-
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
-        }
-
-        return null;
+    public static NewsResponse fetchNewsItemData(String requestUrl, String eTag, String lastModified) {
+        return fetchNewsItemData(requestUrl, eTag, lastModified, null);
     }
 
     /**
-     * Returns new URL object from the given string URL.
+     * Query the Guardian API with a conditional request that can be cancelled, for the feed
+     * the user is waiting on.
+     *
+     * @see #fetchNewsItemData(String, String, String, CancellationToken, QuotaScheduler.Priority)
      */
-    private static URL createUrl(String stringUrl) {
-        URL url = null;
-        try {
-            url = new URL(stringUrl);
-        } catch (MalformedURLException e) {
-            Log.e(LOG_TAG, "Error with creating URL ", e);
-        }
-        return url;
+    public static NewsResponse fetchNewsItemData(String requestUrl, String eTag, String lastModified,
+                                                 CancellationToken cancellation) {
+        return fetchNewsItemData(requestUrl, eTag, lastModified, cancellation, QuotaScheduler.Priority.FOREGROUND);
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Query the Guardian API with a conditional request that can be cancelled. Cancelling
+     * aborts the connection straight away, unless another caller is waiting on the same request.
+     * A request that doesn't join an identical one in flight waits its turn in the
+     * {@link #QUOTA} first, and is dropped if the quota is too short for its priority.
+     *
+     * @param eTag         entity tag of the stored response, or null
+     * @param lastModified last modified date of the stored response, or null
+     * @param cancellation cancels the request, may be null
+     * @param priority     of the request in the quota
+     * @return the response, or null if the request failed, was cancelled or was dropped
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    public static NewsResponse fetchNewsItemData(String requestUrl, String eTag, String lastModified,
+                                                 CancellationToken cancellation,
+                                                 QuotaScheduler.Priority priority) {
+        Log.v(QueryUtils.class.getName(), "fetchNewsItemData called");
+
+        // Create URL object
+        URL url = createUrl(requestUrl);
 
         // If the URL is null, then return early.
         if (url == null) {
-            return jsonResponse;
+            return null;
         }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        // Perform HTTP request to the URL and parse the JSON response as it arrives
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
+            return CLIENT.fetch(url, eTag, lastModified, cancellation, priority);
+        } catch (InterruptedIOException e) {
+            Log.v(LOG_TAG, "Request cancelled: " + requestUrl);
+        } catch (CircuitBreaker.OpenException e) {
+            Log.v(LOG_TAG, "API unhealthy, not requesting " + requestUrl);
+        } catch (QuotaScheduler.QuotaExceededException e) {
+            Log.v(LOG_TAG, e.getMessage() + ": " + requestUrl);
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                inputStream.close();
-            }
+            // MalformedJsonException is an IOException, so bad responses end up here too
+            Log.e(LOG_TAG, "Problem retrieving the news item JSON results.", e);
         }
-        return jsonResponse;
+        return null;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * Add the stage timings of a response to the load metrics of its query.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
-            }
+    private static void recordTimings(String queryKey, NewsResponse response) {
+        LoadMetrics metrics = LoadMetrics.getInstance();
+        metrics.record(queryKey, LoadMetrics.STAGE_CONNECT, response.getConnectNanos());
+        metrics.record(queryKey, LoadMetrics.STAGE_FIRST_BYTE, response.getFirstByteNanos());
+        if (!response.isNotModified()) {
+            metrics.record(queryKey, LoadMetrics.STAGE_READ, response.getReadNanos());
+            metrics.record(queryKey, LoadMetrics.STAGE_PARSE, response.getParseNanos());
         }
-        return output.toString();
     }
 
-
+    /**
+     * Returns new URL object from the given string URL.
+     */
+    private static URL createUrl(String stringUrl) {
+        URL url = null;
+        try {
+            url = new URL(stringUrl);
+        } catch (MalformedURLException e) {
+            Log.e(LOG_TAG, "Error with creating URL ", e);
+        }
+        return url;
+    }
 
 }
@@ -0,0 +1,159 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows a story saved for offline reading, rendered from local storage instead of loaded
+ * over the network. Stories that aren't saved open in the browser instead.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = ReaderActivity.class.getSimpleName();
+
+    private static final String EXTRA_WEB_URL = "com.example.android.newsapp.extra.WEB_URL";
+    private static final String EXTRA_HEADLINE = "com.example.android.newsapp.extra.HEADLINE";
+
+    // Saved stories are read and inflated on this thread
+    private static final Executor READ_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private WebView webView;
+    private String webUrl;
+    private long createdNanos;
+
+    /**
+     * Open the news item in the reader if it is saved for offline reading, otherwise in the
+     * browser, warmed up by the given {@link BrowserWarmup} if there is one.
+     */
+    public static void open(Context context, NewsItem newsItem, BrowserWarmup browserWarmup) {
+        if (OfflineArticles.getStore(context).contains(newsItem.getWebUrl())) {
+            context.startActivity(new Intent(context, ReaderActivity.class)
+                    .putExtra(EXTRA_WEB_URL, newsItem.getWebUrl())
+                    .putExtra(EXTRA_HEADLINE, newsItem.getHeadline()));
+        } else if (browserWarmup != null) {
+            browserWarmup.open(context, newsItem.getWebUrl());
+        } else {
+            openInBrowser(context, newsItem.getWebUrl());
+        }
+    }
+
+    /**
+     * Open the url in a browser, if there is one.
+     */
+    static void openInBrowser(Context context, String url) {
+        // create implicit intent to open a web browser to show the url
+        Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
+        if (intent.resolveActivity(context.getPackageManager()) != null) {
+            context.startActivity(intent);
+        }
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        createdNanos = System.nanoTime();
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_reader);
+
+        webUrl = getIntent().getStringExtra(EXTRA_WEB_URL);
+        final String headline = getIntent().getStringExtra(EXTRA_HEADLINE);
+        setTitle(headline);
+
+        webView = findViewById(R.id.reader_web_view);
+        webView.setWebViewClient(new WebViewClient() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public boolean shouldOverrideUrlLoading(WebView view, String url) {
+                // links lead out of the saved story, so follow them in the browser
+                openInBrowser(ReaderActivity.this, url);
+                return true;
+            }
+
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                Log.v(LOG_TAG, "story shown after " + (System.nanoTime() - createdNanos) / 1000000 + " ms");
+            }
+        });
+
+        final ArticleBodyStore store = OfflineArticles.getStore(this);
+        READ_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                String body;
+                try {
+                    body = store.get(webUrl);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem reading the saved story", e);
+                    body = null;
+                }
+                final String html = body != null ? toPage(headline, body) : null;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showPage(html);
+                    }
+                });
+            }
+        });
+    }
+
+    private void showPage(String html) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (html == null) {
+            // deleted to make room since the click, read it online instead
+            openInBrowser(this, webUrl);
+            finish();
+            return;
+        }
+        // relative links and images resolve against the story's own url
+        webView.loadDataWithBaseURL(webUrl, html, "text/html", "UTF-8", null);
+    }
+
+    /**
+     * Wrap the html body of a story in a page that fits the screen.
+     */
+    private static String toPage(String headline, String body) {
+        return "<!DOCTYPE html><html><head><meta charset=\"utf-8\">"
+                + "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+                + "<style>body{margin:16px;font-family:serif;line-height:1.5}"
+                + "img,figure,iframe{max-width:100%;height:auto}</style></head><body>"
+                + "<h1>" + TextUtils.htmlEncode(headline != null ? headline : "") + "</h1>"
+                + body
+                + "</body></html>";
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reader, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            openInBrowser(this, webUrl);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onDestroy() {
+        webView.destroy();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Searches the Guardian API as the user types. The request waits until the typing pauses,
+ * and a request the user typed past is cancelled, which closes its connection. Results are
+ * kept in a {@link SearchResultCache}, so a query typed again is answered without a request,
+ * and a longer query is answered at once from the results of a shorter one while its own
+ * request is in flight.
+ * All methods must be called on the main thread.
+ */
+public class ServerSearch {
+
+    private static final String LOG_TAG = ServerSearch.class.getSimpleName();
+
+    /** How long the query has to stay unchanged before it is sent */
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    /**
+     * Told about the results of the query, on the main thread.
+     */
+    public interface Listener {
+        /**
+         * @param normalizedQuery the results are for
+         * @param newsItems       best match first
+         * @param complete        false if the results were narrowed down from a shorter query,
+         *                        and the query's own results are still to come
+         */
+        void onServerResults(String normalizedQuery, List<NewsItem> newsItems, boolean complete);
+    }
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final SearchResultCache mCache;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private String mQuery = "";
+    /** Incremented on every new query, so results of an older query are ignored */
+    private int mGeneration;
+    /** Cancels the request of the current query */
+    private CancellationToken mCancellation = new CancellationToken();
+
+    private final Runnable mSendRequest = new Runnable() {
+        @Override
+        public void run() {
+            sendRequest();
+        }
+    };
+
+    /**
+     * Constructs a new {@link ServerSearch}.
+     *
+     * @param cache    shared by the searches, so it outlives a single one
+     * @param listener told about the results
+     */
+    public ServerSearch(Context context, SearchResultCache cache, Listener listener) {
+        mContext = context.getApplicationContext();
+        mCache = cache;
+        mListener = listener;
+    }
+
+    /**
+     * Search for the query as typed so far. Results cached for it, or narrowed down from a
+     * shorter query, are delivered straight away.
+     */
+    public void setQuery(String query) {
+        String normalizedQuery = SearchResultCache.normalize(query);
+        if (normalizedQuery.equals(mQuery)) {
+            return;
+        }
+        cancel();
+        mQuery = normalizedQuery;
+        if (normalizedQuery.length() < ArticleSearchIndex.MIN_WORD_LENGTH) {
+            return;
+        }
+
+        List<NewsItem> cached = mCache.get(normalizedQuery);
+        if (cached != null) {
+            mListener.onServerResults(normalizedQuery, cached, true);
+            return;
+        }
+        List<NewsItem> narrowed = mCache.getFromPrefix(normalizedQuery);
+        if (narrowed != null) {
+            mListener.onServerResults(normalizedQuery, narrowed, false);
+        }
+        mMainHandler.postDelayed(mSendRequest, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Cancel the request of the current query, and forget the query.
+     */
+    public void cancel() {
+        mMainHandler.removeCallbacks(mSendRequest);
+        mGeneration++;
+        mCancellation.cancel();
+        mCancellation = new CancellationToken();
+        mQuery = "";
+    }
+
+    /**
+     * Stop the background thread, once the activity goes away.
+     */
+    public void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+    }
+
+    private void sendRequest() {
+        final String normalizedQuery = mQuery;
+        final int generation = mGeneration;
+        final CancellationToken cancellation = mCancellation;
+        // the same fields and page size as the feed on this network
+        final String url = NetworkMonitor.getInstance(mContext).getProfile()
+                .apply(FeedQueries.buildSearchUrl(mContext, normalizedQuery));
+        Log.v(LOG_TAG, "searching for " + normalizedQuery);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                NewsResponse response = QueryUtils.fetchNewsItemData(url, null, null, cancellation);
+                final ArrayList<NewsItem> newsItems = response != null ? response.getNewsItems() : null;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onResults(generation, normalizedQuery, newsItems);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onResults(int generation, String normalizedQuery, List<NewsItem> newsItems) {
+        if (newsItems == null) {
+            // failed or cancelled; whatever was shown for the query stays
+            return;
+        }
+        // cached even if the user typed on, as the query may be typed again
+        mCache.put(normalizedQuery, newsItems);
+        if (generation == mGeneration) {
+            mListener.onServerResults(normalizedQuery, newsItems, true);
+        }
+    }
+}
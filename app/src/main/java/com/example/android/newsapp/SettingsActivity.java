@@ -3,13 +3,16 @@ package com.example.android.newsapp;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 
+import java.util.Collections;
 import java.util.Objects;
+import java.util.Set;
 
 public class SettingsActivity extends AppCompatActivity {
 
@@ -32,6 +35,9 @@ public class SettingsActivity extends AppCompatActivity {
             Preference topic = findPreference(getString(R.string.settings_display_by_topic_key));
             bindPreferenceSummaryToValue(topic);
 
+            Preference mySections = findPreference(getString(R.string.settings_my_sections_key));
+            bindMultiSelectSummaryToValue(mySections);
+
             Preference dateOrder = findPreference(getString(R.string.settings_order_by_date_key));
             bindPreferenceSummaryToValue(dateOrder);
 
@@ -39,6 +45,24 @@ public class SettingsActivity extends AppCompatActivity {
         @Override
         public boolean onPreferenceChange(Preference preference, Object value) {
             // The code in this method takes care of updating the displayed preference summary after it has been changed
+            if (preference instanceof MultiSelectListPreference) {
+                // list the labels of the chosen values, in the order they appear in the preference
+                MultiSelectListPreference multiSelectPreference = (MultiSelectListPreference) preference;
+                Set<?> values = (Set<?>) value;
+                CharSequence[] labels = multiSelectPreference.getEntries();
+                CharSequence[] entryValues = multiSelectPreference.getEntryValues();
+                StringBuilder summary = new StringBuilder();
+                for (int i = 0; i < entryValues.length; i++) {
+                    if (values.contains(entryValues[i].toString())) {
+                        if (summary.length() > 0) {
+                            summary.append(", ");
+                        }
+                        summary.append(labels[i]);
+                    }
+                }
+                preference.setSummary(summary);
+                return true;
+            }
             String stringValue = value.toString();
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
@@ -59,5 +83,15 @@ public class SettingsActivity extends AppCompatActivity {
             String preferenceString = preferences.getString(preference.getKey(), "");
             onPreferenceChange(preference, preferenceString);
         }
+
+        private void bindMultiSelectSummaryToValue(Preference preference) {
+            preference.setOnPreferenceChangeListener(this);
+            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(preference.getContext());
+            Set<String> preferenceValues = preferences.getStringSet(preference.getKey(), null);
+            if (preferenceValues == null) {
+                preferenceValues = ((MultiSelectListPreference) preference).getValues();
+            }
+            onPreferenceChange(preference, preferenceValues != null ? preferenceValues : Collections.<String>emptySet());
+        }
     }
 }
@@ -0,0 +1,240 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.v4.content.res.ResourcesCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Draws text from a {@link Layout} prepared ahead of time, possibly on another thread, so
+ * binding and measuring the view doesn't measure any text. Supports the few TextView
+ * attributes the feed cards use.
+ * <p>
+ * Text set with {@link #setText} is laid out when the view is measured, like a TextView
+ * does, and so is a prepared layout that doesn't fit the width the view is given.
+ */
+public class TextLayoutView extends View {
+
+    private static final String LOG_TAG = TextLayoutView.class.getSimpleName();
+
+    private static final float DEFAULT_TEXT_SIZE_SP = 14;
+
+    // value of android:ellipsize="end"
+    private static final int ELLIPSIZE_END = 3;
+
+    /**
+     * How the text of a view is laid out: its paint, the maximum number of lines, and whether
+     * text beyond them is ellipsized. Never changes once created, so layouts can be built with
+     * it on any thread. A Paint isn't thread safe and a layout draws with the paint it was
+     * built with, so each layout gets its own copy of the style's paint, which is only ever read.
+     */
+    public static final class Style {
+        private final TextPaint mPaint;
+        private final int mMaxLines;
+        private final boolean mEllipsize;
+
+        Style(TextPaint paint, int maxLines, boolean ellipsize) {
+            mPaint = paint;
+            mMaxLines = maxLines;
+            mEllipsize = ellipsize;
+        }
+
+        /**
+         * Lay the text out at the given width or, if {@code wrapWidth} is set, at the width of
+         * its longest line when that is narrower, as for a wrap_content view.
+         */
+        public Layout build(CharSequence text, int width, boolean wrapWidth) {
+            TextPaint paint = new TextPaint(mPaint);
+            if (wrapWidth) {
+                width = Math.min(width, (int) Math.ceil(Layout.getDesiredWidth(text, paint)));
+            }
+            width = Math.max(width, 0);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                StaticLayout.Builder builder = StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+                        // what a TextView uses by default
+                        .setBreakStrategy(Layout.BREAK_STRATEGY_HIGH_QUALITY)
+                        .setHyphenationFrequency(Layout.HYPHENATION_FREQUENCY_NORMAL)
+                        .setMaxLines(mMaxLines);
+                if (mEllipsize) {
+                    builder.setEllipsize(TextUtils.TruncateAt.END);
+                }
+                return builder.build();
+            }
+
+            Layout layout = new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, true);
+            if (layout.getLineCount() <= mMaxLines) {
+                return layout;
+            }
+            // StaticLayout can't limit the lines before M, so keep the lines that fit and
+            // ellipsize the last of them ourselves
+            int lastLineStart = layout.getLineStart(mMaxLines - 1);
+            CharSequence lastLine = mEllipsize
+                    ? TextUtils.ellipsize(text.subSequence(lastLineStart, text.length()), paint, width,
+                    TextUtils.TruncateAt.END)
+                    : text.subSequence(lastLineStart, layout.getLineEnd(mMaxLines - 1));
+            return new StaticLayout(TextUtils.concat(text.subSequence(0, lastLineStart), lastLine), paint,
+                    width, Layout.Alignment.ALIGN_NORMAL, 1, 0, true);
+        }
+    }
+
+    private final Style mStyle;
+    private CharSequence mText;
+    private Layout mLayout;
+
+    public TextLayoutView(Context context) {
+        this(context, null);
+    }
+
+    public TextLayoutView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public TextLayoutView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.TextLayoutView, defStyleAttr, 0);
+        try {
+            TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            paint.density = getResources().getDisplayMetrics().density;
+            paint.setTextSize(a.getDimension(R.styleable.TextLayoutView_android_textSize,
+                    TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DEFAULT_TEXT_SIZE_SP,
+                            getResources().getDisplayMetrics())));
+            ColorStateList textColor = a.getColorStateList(R.styleable.TextLayoutView_android_textColor);
+            paint.setColor(textColor != null ? textColor.getDefaultColor() : Color.BLACK);
+            setTypeface(paint, a.getResourceId(R.styleable.TextLayoutView_android_fontFamily, 0),
+                    a.getInt(R.styleable.TextLayoutView_android_textStyle, Typeface.NORMAL));
+
+            mStyle = new Style(paint, a.getInt(R.styleable.TextLayoutView_android_maxLines, Integer.MAX_VALUE),
+                    a.getInt(R.styleable.TextLayoutView_android_ellipsize, 0) == ELLIPSIZE_END);
+            mText = a.getText(R.styleable.TextLayoutView_android_text);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    /**
+     * Set the typeface of the paint the way a TextView does, faking the bold or italic style
+     * if the font has no such variant.
+     */
+    private void setTypeface(TextPaint paint, int fontId, int style) {
+        Typeface typeface = null;
+        if (fontId != 0 && !isInEditMode()) {
+            try {
+                // the fonts are preloaded, so once the first card is inflated this is a cache lookup
+                typeface = ResourcesCompat.getFont(getContext(), fontId);
+            } catch (Resources.NotFoundException e) {
+                Log.w(LOG_TAG, "Font not available, using the default", e);
+            }
+        }
+        typeface = typeface == null ? Typeface.defaultFromStyle(style) : Typeface.create(typeface, style);
+        paint.setTypeface(typeface);
+        int missingStyle = style & ~typeface.getStyle();
+        paint.setFakeBoldText((missingStyle & Typeface.BOLD) != 0);
+        paint.setTextSkewX((missingStyle & Typeface.ITALIC) != 0 ? -0.25f : 0);
+    }
+
+    /**
+     * Get the style this view's text is laid out with, to prepare layouts elsewhere.
+     */
+    public Style getStyle() {
+        return mStyle;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * Show the given text, laid out when the view is next measured.
+     */
+    public void setText(CharSequence text) {
+        if (mLayout == null && TextUtils.equals(text, mText)) {
+            return;
+        }
+        mText = text;
+        mLayout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Show a layout prepared with this view's {@link #getStyle() style}.
+     */
+    public void setLayout(Layout layout) {
+        if (layout == mLayout) {
+            return;
+        }
+        boolean sameSize = mLayout != null
+                && mLayout.getWidth() == layout.getWidth() && mLayout.getHeight() == layout.getHeight();
+        mText = layout.getText();
+        mLayout = layout;
+        if (!sameSize) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int textWidth = widthMode == MeasureSpec.UNSPECIFIED
+                ? Integer.MAX_VALUE : Math.max(0, MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+        boolean exactWidth = widthMode == MeasureSpec.EXACTLY;
+        if (mText != null && (mLayout == null || !fits(mLayout, textWidth, exactWidth))) {
+            mLayout = mStyle.build(mText, textWidth, !exactWidth);
+        }
+
+        int desiredWidth = horizontalPadding;
+        int desiredHeight = getPaddingTop() + getPaddingBottom();
+        if (mLayout != null) {
+            desiredWidth += mLayout.getWidth();
+            desiredHeight += mLayout.getHeight();
+        }
+        setMeasuredDimension(resolveSize(desiredWidth, widthMeasureSpec), resolveSize(desiredHeight, heightMeasureSpec));
+    }
+
+    private static boolean fits(Layout layout, int textWidth, boolean exactWidth) {
+        return exactWidth ? layout.getWidth() == textWidth : layout.getWidth() <= textWidth;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setText(mText);
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (!TextUtils.isEmpty(mText)) {
+            event.getText().add(mText);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.newsapp;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.widget.ImageView;
+
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Loads the news item thumbnails. Every request shares the same options, and once the size of
+ * a thumbnail view is known the requests ask for exactly that size, so a thumbnail preloaded by
+ * {@link ThumbnailPreloader} is the same memory cache entry the bound row asks for. The
+ * thumbnails are requested at the width of the {@link FetchProfile} of the network.
+ */
+public class ThumbnailLoader {
+
+    // centerCrop, and RGB_565 bitmaps, which take half the memory; thumbnails have no alpha
+    private static final RequestOptions BASE_OPTIONS = new RequestOptions()
+            .centerCrop()
+            .format(DecodeFormat.PREFER_RGB_565)
+            .lock();
+
+    /**
+     * Records the size of decoded thumbnails, and how many were served from memory
+     */
+    private static final RequestListener<Drawable> METRICS_LISTENER = new RequestListener<Drawable>() {
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target,
+                                    boolean isFirstResource) {
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                       DataSource dataSource, boolean isFirstResource) {
+            if (dataSource == DataSource.MEMORY_CACHE) {
+                ThumbnailMetrics.recordMemoryCacheHit();
+            } else if (resource instanceof BitmapDrawable) {
+                Bitmap bitmap = ((BitmapDrawable) resource).getBitmap();
+                ThumbnailMetrics.recordDecode(bitmap.getAllocationByteCount());
+            }
+            return false;
+        }
+    };
+
+    private final RequestManager mGlide;
+
+    // size of the thumbnail views in pixels, 0 until one has been laid out
+    private int mWidth;
+    private int mHeight;
+    private RequestOptions mSizedOptions;
+
+    private FetchProfile mProfile = FetchProfile.STANDARD;
+
+    /**
+     * Constructs a new {@link ThumbnailLoader}.
+     *
+     * @param glide request manager tied to the lifecycle of the activity showing the thumbnails
+     */
+    public ThumbnailLoader(RequestManager glide) {
+        mGlide = glide;
+    }
+
+    /**
+     * Request the thumbnails bound and preloaded from now on at the width of the profile.
+     */
+    public void setProfile(FetchProfile profile) {
+        mProfile = profile;
+    }
+
+    /**
+     * Load the thumbnail at the given url into the view of a row.
+     */
+    public void bind(ImageView imageView, String url) {
+        // a recycled view has been laid out, which tells us the size all thumbnails are shown at
+        if (mSizedOptions == null && imageView.getWidth() > 0 && imageView.getHeight() > 0) {
+            mWidth = imageView.getWidth();
+            mHeight = imageView.getHeight();
+            mSizedOptions = BASE_OPTIONS.clone().override(mWidth, mHeight).lock();
+        }
+        // with the size known, Glide doesn't have to wait for the view to be laid out to start
+        mGlide.load(mProfile.thumbnailUrl(url))
+                .apply(mSizedOptions != null ? mSizedOptions : BASE_OPTIONS)
+                .listener(METRICS_LISTENER)
+                .into(imageView);
+    }
+
+    /**
+     * Start loading the thumbnail at the given url into the memory cache, ahead of its row
+     * being shown.
+     *
+     * @return the target to clear once the thumbnail is no longer needed, or null if the size
+     * of the thumbnail views isn't known yet
+     */
+    @Nullable
+    public Target<Drawable> preload(String url) {
+        if (mSizedOptions == null) {
+            return null;
+        }
+        ThumbnailMetrics.recordPreload();
+        return mGlide.load(mProfile.thumbnailUrl(url))
+                .apply(mSizedOptions)
+                .listener(METRICS_LISTENER)
+                .preload(mWidth, mHeight);
+    }
+
+    /**
+     * Cancel the thumbnail request of a view, releasing its bitmap back to Glide's pool.
+     */
+    public void clear(ImageView imageView) {
+        mGlide.clear(imageView);
+    }
+
+    /**
+     * Cancel a preload request, or release its thumbnail if it has finished.
+     */
+    public void clear(Target<?> target) {
+        mGlide.clear(target);
+    }
+}
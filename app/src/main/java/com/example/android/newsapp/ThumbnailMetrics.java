@@ -0,0 +1,150 @@
+package com.example.android.newsapp;
+
+import java.util.Locale;
+
+/**
+ * Counters for the cost of showing news items: time spent binding rows on the main thread,
+ * how often their text was laid out ahead of time, the memory taken by the thumbnails Glide
+ * decoded, and the time between frames while the feed scrolls.
+ */
+public final class ThumbnailMetrics {
+
+    private static long sBindCount;
+    private static long sBindNanosTotal;
+    private static long sBindNanosMax;
+
+    private static long sDecodeCount;
+    private static long sDecodeBytesTotal;
+    private static long sDecodeBytesMax;
+    private static long sMemoryCacheHits;
+    private static long sPreloadCount;
+
+    private static long sTextLayoutsPrepared;
+    private static long sTextLayoutsBuiltOnBind;
+
+    // frame intervals while the feed is scrolled; records itself without locking
+    private static final LatencyHistogram sScrollFrames = new LatencyHistogram();
+
+    private ThumbnailMetrics() {
+    }
+
+    /**
+     * Record the time one {@code onBindViewHolder} call took.
+     */
+    public static synchronized void recordBind(long nanos) {
+        sBindCount++;
+        sBindNanosTotal += nanos;
+        sBindNanosMax = Math.max(sBindNanosMax, nanos);
+    }
+
+    /**
+     * Record a thumbnail that was decoded into a bitmap of the given size.
+     */
+    public static synchronized void recordDecode(long bytes) {
+        sDecodeCount++;
+        sDecodeBytesTotal += bytes;
+        sDecodeBytesMax = Math.max(sDecodeBytesMax, bytes);
+    }
+
+    /**
+     * Record a thumbnail that was served from Glide's memory cache without decoding.
+     */
+    public static synchronized void recordMemoryCacheHit() {
+        sMemoryCacheHits++;
+    }
+
+    /**
+     * Record a thumbnail requested ahead of its row being shown.
+     */
+    public static synchronized void recordPreload() {
+        sPreloadCount++;
+    }
+
+    /**
+     * Record a row bound with text laid out ahead of time, or laid out while binding.
+     */
+    public static synchronized void recordTextLayout(boolean prepared) {
+        if (prepared) {
+            sTextLayoutsPrepared++;
+        } else {
+            sTextLayoutsBuiltOnBind++;
+        }
+    }
+
+    /**
+     * Get the histogram of the time between frames while the feed scrolls, for a
+     * {@link FrameTimeRecorder} to record into.
+     */
+    public static LatencyHistogram getScrollFrames() {
+        return sScrollFrames;
+    }
+
+    public static synchronized long getBindCount() {
+        return sBindCount;
+    }
+
+    /**
+     * Get the average bind time in nanoseconds, 0 if nothing was bound yet.
+     */
+    public static synchronized long getAverageBindNanos() {
+        return sBindCount == 0 ? 0 : sBindNanosTotal / sBindCount;
+    }
+
+    public static synchronized long getMaxBindNanos() {
+        return sBindNanosMax;
+    }
+
+    public static synchronized long getDecodeCount() {
+        return sDecodeCount;
+    }
+
+    /**
+     * Get the average size of a decoded thumbnail in bytes, 0 if nothing was decoded yet.
+     */
+    public static synchronized long getAverageDecodeBytes() {
+        return sDecodeCount == 0 ? 0 : sDecodeBytesTotal / sDecodeCount;
+    }
+
+    public static synchronized long getMaxDecodeBytes() {
+        return sDecodeBytesMax;
+    }
+
+    public static synchronized long getMemoryCacheHits() {
+        return sMemoryCacheHits;
+    }
+
+    public static synchronized long getPreloadCount() {
+        return sPreloadCount;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public static synchronized void reset() {
+        sBindCount = 0;
+        sBindNanosTotal = 0;
+        sBindNanosMax = 0;
+        sDecodeCount = 0;
+        sDecodeBytesTotal = 0;
+        sDecodeBytesMax = 0;
+        sMemoryCacheHits = 0;
+        sPreloadCount = 0;
+        sTextLayoutsPrepared = 0;
+        sTextLayoutsBuiltOnBind = 0;
+        sScrollFrames.reset();
+    }
+
+    /**
+     * Describe the recorded metrics in one line, for the log.
+     */
+    public static synchronized String summary() {
+        return String.format(Locale.US,
+                "bind: %d rows, avg %d us, max %d us | text layouts: %d prepared, %d on bind | "
+                        + "decode: %d bitmaps, avg %d KB, max %d KB | memory cache hits: %d | preloads: %d | "
+                        + "scroll frames: %s",
+                sBindCount, getAverageBindNanos() / 1000, sBindNanosMax / 1000,
+                sTextLayoutsPrepared, sTextLayoutsBuiltOnBind,
+                sDecodeCount, getAverageDecodeBytes() / 1024, sDecodeBytesMax / 1024,
+                sMemoryCacheHits, sPreloadCount, FrameTimeRecorder.describe(sScrollFrames));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.android.newsapp;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.bumptech.glide.request.target.Target;
+
+import java.util.List;
+
+/**
+ * Loads the thumbnails of the rows just beyond the screen, in the direction the feed is
+ * scrolled, so they are in memory by the time the rows are bound. How many rows ahead is up
+ * to the {@link FetchProfile} of the network. Only the most recent preloads are kept; older
+ * ones are cleared, which cancels those still loading.
+ */
+public class ThumbnailPreloader extends RecyclerView.OnScrollListener {
+
+    /** Most rows ahead of the screen whose thumbnails are preloaded, in any profile */
+    static final int MAX_PRELOAD_COUNT = 8;
+
+    private final NewsItemAdapter mAdapter;
+    private final ThumbnailLoader mThumbnailLoader;
+
+    /** Number of rows ahead of the screen whose thumbnails are preloaded */
+    private int mPreloadCount = FetchProfile.STANDARD.getPrefetchRows();
+
+    // the most recent preload requests, used as a ring
+    private final Target<?>[] mTargets = new Target<?>[MAX_PRELOAD_COUNT];
+    private int mNextTarget;
+
+    // positions already preloaded: below the screen up to mPreloadedEnd (exclusive), or above
+    // it down to mPreloadedStart, depending on the direction
+    private boolean mScrollingDown = true;
+    private int mPreloadedEnd;
+    private int mPreloadedStart;
+
+    /**
+     * Constructs a new {@link ThumbnailPreloader}.
+     *
+     * @param adapter         of the feed, to find the thumbnail urls of rows not bound yet
+     * @param thumbnailLoader that binds the thumbnails, so preloads use the same request
+     */
+    public ThumbnailPreloader(NewsItemAdapter adapter, ThumbnailLoader thumbnailLoader) {
+        mAdapter = adapter;
+        mThumbnailLoader = thumbnailLoader;
+    }
+
+    /**
+     * Preload as many rows ahead as the profile says.
+     */
+    public void setProfile(FetchProfile profile) {
+        mPreloadCount = Math.min(profile.getPrefetchRows(), MAX_PRELOAD_COUNT);
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)
+                || recyclerView.getAdapter() != mAdapter) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        boolean scrollingDown = dy > 0;
+        if (scrollingDown != mScrollingDown) {
+            // the rows preloaded for the other direction won't be needed soon
+            mScrollingDown = scrollingDown;
+            cancelAll();
+        }
+
+        List<NewsItem> newsItems = mAdapter.getNewsItems();
+        if (scrollingDown) {
+            int start = lastVisible + 1;
+            int end = Math.min(newsItems.size(), start + mPreloadCount);
+            if (mPreloadedEnd < start || mPreloadedEnd > end) {
+                // first preload this way, or the list changed underneath us
+                mPreloadedEnd = start;
+            }
+            for (int position = mPreloadedEnd; position < end; position++) {
+                preload(newsItems.get(position));
+            }
+            mPreloadedEnd = Math.max(mPreloadedEnd, end);
+        } else {
+            int end = firstVisible;
+            int start = Math.max(0, end - mPreloadCount);
+            if (mPreloadedStart > end || mPreloadedStart < start) {
+                mPreloadedStart = end;
+            }
+            for (int position = mPreloadedStart - 1; position >= start; position--) {
+                preload(newsItems.get(position));
+            }
+            mPreloadedStart = Math.min(mPreloadedStart, start);
+        }
+    }
+
+    private void preload(NewsItem newsItem) {
+        String thumbnailUrl = newsItem.getThumbnailUrl();
+        if (thumbnailUrl == null || thumbnailUrl.isEmpty()) {
+            return;
+        }
+        Target<?> target = mThumbnailLoader.preload(thumbnailUrl);
+        if (target == null) {
+            return;
+        }
+        // the oldest preload is either on screen by now, so held by its row, or was passed by
+        if (mTargets[mNextTarget] != null) {
+            mThumbnailLoader.clear(mTargets[mNextTarget]);
+        }
+        mTargets[mNextTarget] = target;
+        mNextTarget = (mNextTarget + 1) % MAX_PRELOAD_COUNT;
+    }
+
+    /**
+     * Clear every preload request, e.g. when the feed is replaced or the activity goes away.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mTargets.length; i++) {
+            if (mTargets[i] != null) {
+                mThumbnailLoader.clear(mTargets[i]);
+                mTargets[i] = null;
+            }
+        }
+        mPreloadedEnd = 0;
+        mPreloadedStart = 0;
+    }
+}
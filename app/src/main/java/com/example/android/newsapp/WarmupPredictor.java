@@ -0,0 +1,192 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Predicts which stories the user is about to open from the rows on screen, so the browser
+ * can get ready for them before the click. A story is likely once its row has been fully
+ * visible for the minimum dwell time; the longer it has been on screen, the likelier.
+ * <p>
+ * Every hint costs the browser a connection and maybe a prerender, so hints are rationed:
+ * at most a few per window of time, and a story is never the main hint twice. Times are
+ * passed in, so this runs and is tested on the JVM.
+ */
+public class WarmupPredictor {
+
+    /**
+     * Stories to warm the browser up for.
+     */
+    public static final class Hint {
+        private final String mLikelyUrl;
+        private final List<String> mOtherUrls;
+
+        Hint(String likelyUrl, List<String> otherUrls) {
+            mLikelyUrl = likelyUrl;
+            mOtherUrls = otherUrls;
+        }
+
+        /**
+         * Get the url of the story most likely to be opened.
+         */
+        public String getLikelyUrl() {
+            return mLikelyUrl;
+        }
+
+        /**
+         * Get the urls of other stories that may be opened, likeliest first.
+         */
+        public List<String> getOtherUrls() {
+            return mOtherUrls;
+        }
+    }
+
+    private final long mMinDwellMillis;
+    private final int mMaxHints;
+    private final long mBudgetWindowMillis;
+    private final int mMaxOtherUrls;
+
+    // time each fully visible story came into full view, in the order they are on screen
+    private final Map<String, Long> mVisibleSince = new LinkedHashMap<>();
+    // stories already given as the main hint
+    private final Set<String> mHinted = new HashSet<>();
+    // times of the hints given within the budget window, oldest first
+    private final ArrayDeque<Long> mHintTimes = new ArrayDeque<>();
+
+    /**
+     * Constructs a new {@link WarmupPredictor}.
+     *
+     * @param minDwellMillis     time a row has to be fully visible before its story is likely
+     * @param maxHints           number of hints given at most within the budget window
+     * @param budgetWindowMillis length of the budget window
+     * @param maxOtherUrls       number of other likely stories given at most with each hint
+     */
+    public WarmupPredictor(long minDwellMillis, int maxHints, long budgetWindowMillis, int maxOtherUrls) {
+        mMinDwellMillis = minDwellMillis;
+        mMaxHints = maxHints;
+        mBudgetWindowMillis = budgetWindowMillis;
+        mMaxOtherUrls = maxOtherUrls;
+    }
+
+    /**
+     * Report the stories whose rows are now fully visible, in screen order. Stories that
+     * stayed visible keep their dwell time; the others start over.
+     */
+    public void setVisible(List<String> fullyVisibleUrls, long nowMillis) {
+        mVisibleSince.keySet().retainAll(fullyVisibleUrls);
+        for (String url : fullyVisibleUrls) {
+            if (!mVisibleSince.containsKey(url)) {
+                mVisibleSince.put(url, nowMillis);
+            }
+        }
+    }
+
+    /**
+     * Return the time until the next hint can be given, because a visible story not hinted
+     * yet becomes likely and the budget has room for it: 0 if it can be given now, or -1 if
+     * no story will become likely without the screen changing.
+     */
+    public long millisUntilLikely(long nowMillis) {
+        long soonest = -1;
+        for (Map.Entry<String, Long> visible : mVisibleSince.entrySet()) {
+            if (mHinted.contains(visible.getKey())) {
+                continue;
+            }
+            long remaining = Math.max(0, visible.getValue() + mMinDwellMillis - nowMillis);
+            if (soonest < 0 || remaining < soonest) {
+                soonest = remaining;
+            }
+        }
+        if (soonest < 0) {
+            return -1;
+        }
+        return Math.max(soonest, millisUntilBudget(nowMillis));
+    }
+
+    /**
+     * Return the next hint to give the browser, or null if no story not hinted yet is likely,
+     * or the budget is spent. A returned hint counts against the budget.
+     */
+    public Hint nextHint(long nowMillis) {
+        while (!mHintTimes.isEmpty() && nowMillis - mHintTimes.peekFirst() >= mBudgetWindowMillis) {
+            mHintTimes.pollFirst();
+        }
+        if (mHintTimes.size() >= mMaxHints) {
+            return null;
+        }
+
+        // likely stories, longest on screen first, ties in screen order
+        List<Map.Entry<String, Long>> likely = new ArrayList<>();
+        for (Map.Entry<String, Long> visible : mVisibleSince.entrySet()) {
+            if (nowMillis - visible.getValue() >= mMinDwellMillis) {
+                likely.add(visible);
+            }
+        }
+        Collections.sort(likely, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                long sinceA = a.getValue();
+                long sinceB = b.getValue();
+                return sinceA < sinceB ? -1 : (sinceA == sinceB ? 0 : 1);
+            }
+        });
+
+        String likelyUrl = null;
+        for (Map.Entry<String, Long> entry : likely) {
+            if (!mHinted.contains(entry.getKey())) {
+                likelyUrl = entry.getKey();
+                break;
+            }
+        }
+        if (likelyUrl == null) {
+            return null;
+        }
+        // the other likely stories, including those hinted before, are worth keeping warm
+        List<String> otherUrls = new ArrayList<>(mMaxOtherUrls);
+        for (Map.Entry<String, Long> entry : likely) {
+            if (otherUrls.size() == mMaxOtherUrls) {
+                break;
+            }
+            if (!entry.getKey().equals(likelyUrl)) {
+                otherUrls.add(entry.getKey());
+            }
+        }
+
+        mHinted.add(likelyUrl);
+        mHintTimes.addLast(nowMillis);
+        return new Hint(likelyUrl, otherUrls);
+    }
+
+    /**
+     * Return the time until the budget has room for another hint, when the oldest hint in
+     * the window leaves it, or 0 if it has room now.
+     */
+    private long millisUntilBudget(long nowMillis) {
+        int hintsInWindow = 0;
+        long oldestInWindow = 0;
+        for (long hintTime : mHintTimes) {
+            if (nowMillis - hintTime < mBudgetWindowMillis) {
+                if (hintsInWindow == 0) {
+                    oldestInWindow = hintTime;
+                }
+                hintsInWindow++;
+            }
+        }
+        return hintsInWindow < mMaxHints ? 0 : oldestInWindow + mBudgetWindowMillis - nowMillis;
+    }
+
+    /**
+     * Forget the stories on screen and those hinted, for a new feed. The budget carries over.
+     */
+    public void reset() {
+        mVisibleSince.clear();
+        mHinted.clear();
+    }
+}
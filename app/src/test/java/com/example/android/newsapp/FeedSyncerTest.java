@@ -0,0 +1,262 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link FeedSyncer} with a fake clock against a local stand-in for the Guardian API.
+ */
+public class FeedSyncerTest {
+
+    private static final String ETAG = "\"search-10-v1\"";
+    private static final long MIN_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private byte[] body;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private volatile CountDownLatch slowRequestStarted;
+    private volatile CountDownLatch releaseSlowRequest;
+
+    private long now = TimeUnit.DAYS.toMillis(17000);
+    private final FeedSyncer.Clock clock = new FeedSyncer.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    private NewsItemCache cache;
+    private FeedSyncer syncer;
+
+    @Before
+    public void setUp() throws IOException {
+        body = readFixture("search_10.json");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                fullResponses.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                slowRequestStarted.countDown();
+                try {
+                    releaseSlowRequest.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/error", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        cache = new NewsItemCache(folder.newFolder("cache"), 1024 * 1024, TimeUnit.DAYS.toMillis(3));
+        syncer = new FeedSyncer(cache, new GuardianClient(new NewsItemParser()), null, clock, MIN_INTERVAL_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void sync_storesEveryQueryInTheCache() {
+        List<String> urls = Arrays.asList(url("/search", "news"), url("/search", "sport"));
+
+        assertEquals(FeedSyncer.Result.SYNCED, syncer.sync(urls));
+
+        for (String url : urls) {
+            NewsItemCache.Entry entry = cache.get(url);
+            assertNotNull(entry);
+            assertEquals(10, entry.getNewsItems().size());
+            assertEquals(ETAG, entry.getETag());
+        }
+        assertEquals(now, syncer.getLastSyncMillis());
+    }
+
+    @Test
+    public void sync_withinMinInterval_isSkipped() {
+        List<String> urls = Collections.singletonList(url("/search", "news"));
+        assertEquals(FeedSyncer.Result.SYNCED, syncer.sync(urls));
+
+        now += MIN_INTERVAL_MILLIS - 1;
+        assertEquals(FeedSyncer.Result.SKIPPED_RECENT, syncer.sync(urls));
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void sync_afterMinInterval_revalidatesTheCache() {
+        List<String> urls = Collections.singletonList(url("/search", "news"));
+        assertEquals(FeedSyncer.Result.SYNCED, syncer.sync(urls));
+
+        now += MIN_INTERVAL_MILLIS;
+        assertEquals(FeedSyncer.Result.SYNCED, syncer.sync(urls));
+
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, notModifiedResponses.get());
+        assertEquals(10, cache.get(urls.get(0)).getNewsItems().size());
+    }
+
+    @Test
+    public void sync_failure_isRetriedWithoutWaitingForTheInterval() {
+        String good = url("/search", "news");
+        List<String> urls = Arrays.asList(good, url("/error", "sport"));
+
+        assertEquals(FeedSyncer.Result.FAILED, syncer.sync(urls));
+        // the query that worked is still stored
+        assertNotNull(cache.get(good));
+        assertEquals(0, syncer.getLastSyncMillis());
+
+        now += 1000;
+        assertEquals(FeedSyncer.Result.SYNCED, syncer.sync(Collections.singletonList(good)));
+    }
+
+    @Test
+    public void sync_whileAnotherSyncRuns_doesNotRunTwice() throws Exception {
+        slowRequestStarted = new CountDownLatch(1);
+        releaseSlowRequest = new CountDownLatch(1);
+        final List<String> urls = Collections.singletonList(url("/slow", "news"));
+        final FeedSyncer.Result[] firstResult = new FeedSyncer.Result[1];
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                firstResult[0] = syncer.sync(urls);
+            }
+        });
+        first.start();
+        assertTrue(slowRequestStarted.await(5, TimeUnit.SECONDS));
+
+        assertEquals(FeedSyncer.Result.ALREADY_RUNNING, syncer.sync(urls));
+
+        releaseSlowRequest.countDown();
+        first.join(5000);
+        assertEquals(FeedSyncer.Result.SYNCED, firstResult[0]);
+    }
+
+    @Test
+    public void sync_cancelled_abortsTheRequestInFlight() throws Exception {
+        slowRequestStarted = new CountDownLatch(1);
+        releaseSlowRequest = new CountDownLatch(1);
+        final String slow = url("/slow", "news");
+        final String news = url("/search", "news");
+        final CancellationToken cancellation = new CancellationToken();
+        final FeedSyncer.Result[] result = new FeedSyncer.Result[1];
+        Thread sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = syncer.sync(Arrays.asList(slow, news), cancellation);
+            }
+        });
+        sync.start();
+        assertTrue(slowRequestStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        cancellation.cancel();
+        sync.join(5000);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        releaseSlowRequest.countDown();
+
+        assertEquals(FeedSyncer.Result.CANCELLED, result[0]);
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1000);
+        assertNull(cache.get(news));
+        assertEquals(0, syncer.getLastSyncMillis());
+    }
+
+    @Test
+    public void sync_quotaShort_isDeferred() {
+        // room for one background request, and no refill to wait for
+        QuotaScheduler quota = new QuotaScheduler(3, 0, new QuotaScheduler.Clock() {
+            @Override
+            public long nanoTime() {
+                return 0;
+            }
+        });
+        quota.setMaxWaitMillis(QuotaScheduler.Priority.BACKGROUND, 0);
+        syncer = new FeedSyncer(cache, new GuardianClient(new NewsItemParser()), quota, clock, MIN_INTERVAL_MILLIS);
+        String news = url("/search", "news");
+        String sport = url("/search", "sport");
+
+        assertEquals(FeedSyncer.Result.DEFERRED, syncer.sync(Arrays.asList(news, sport)));
+        assertNotNull(cache.get(news));
+        assertNull(cache.get(sport));
+        assertEquals(0, syncer.getLastSyncMillis());
+        assertEquals(1, quota.getDroppedCount(QuotaScheduler.Priority.BACKGROUND));
+    }
+
+    @Test
+    public void sync_noQueries_storesNothing() {
+        assertEquals(FeedSyncer.Result.SYNCED, syncer.sync(Collections.<String>emptyList()));
+        assertNull(cache.get(url("/search", "news")));
+    }
+
+    private String url(String path, String section) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path + "?format=json&section=" + section;
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = FeedSyncerTest.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link MultiSectionFetcher} merges sections, and that sections are fetched in
+ * parallel so the feed takes about as long as its slowest section.
+ */
+public class MultiSectionFetcherTest {
+
+    private static final long SECTION_DELAY_MILLIS = 300;
+
+    @Test
+    public void merge_sortsByDateAndDropsDuplicates() {
+        List<NewsItem> news = Arrays.asList(item("news/a", 300), item("shared/x", 200));
+        List<NewsItem> sport = Arrays.asList(item("sport/b", 400), item("shared/x", 200), item("sport/c", 100));
+
+        ArrayList<NewsItem> newestFirst = MultiSectionFetcher.merge(Arrays.asList(news, sport), true);
+        assertEquals(Arrays.asList("sport/b", "news/a", "shared/x", "sport/c"), webUrls(newestFirst));
+
+        ArrayList<NewsItem> oldestFirst = MultiSectionFetcher.merge(Arrays.asList(news, sport), false);
+        assertEquals(Arrays.asList("sport/c", "shared/x", "news/a", "sport/b"), webUrls(oldestFirst));
+    }
+
+    @Test
+    public void fetchAll_takesAboutAsLongAsTheSlowestSection() {
+        List<String> urls = Arrays.asList("news", "sport", "technology", "science");
+        long start = System.nanoTime();
+        ArrayList<NewsItem> merged = MultiSectionFetcher.fetchAll(urls, new MultiSectionFetcher.SectionSource() {
+            @Override
+            public ArrayList<NewsItem> fetch(String url, CancellationToken cancellation) {
+                sleep(SECTION_DELAY_MILLIS);
+                return new ArrayList<>(Arrays.asList(item(url + "/1", 1), item(url + "/2", 2)));
+            }
+        }, true, null);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(8, merged.size());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < SECTION_DELAY_MILLIS * 2);
+    }
+
+    @Test
+    public void fetchAll_failingSectionDoesNotLoseTheOthers() {
+        List<String> urls = Arrays.asList("news", "broken", "empty");
+        ArrayList<NewsItem> merged = MultiSectionFetcher.fetchAll(urls, new MultiSectionFetcher.SectionSource() {
+            @Override
+            public ArrayList<NewsItem> fetch(String url, CancellationToken cancellation) {
+                if (url.equals("broken")) {
+                    throw new IllegalStateException("section failed");
+                }
+                return url.equals("empty") ? null : new ArrayList<>(Arrays.asList(item(url + "/1", 1)));
+            }
+        }, true, null);
+
+        assertEquals(Arrays.asList("news/1"), webUrls(merged));
+    }
+
+    @Test
+    public void fetchAll_nothingLoaded_returnsNull() {
+        assertNull(MultiSectionFetcher.fetchAll(Arrays.asList("news", "sport"), new MultiSectionFetcher.SectionSource() {
+            @Override
+            public ArrayList<NewsItem> fetch(String url, CancellationToken cancellation) {
+                return null;
+            }
+        }, true, null));
+    }
+
+    @Test
+    public void fetchAll_timedOutSection_isCancelled() {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        long start = System.nanoTime();
+        ArrayList<NewsItem> merged = MultiSectionFetcher.fetchAll(Arrays.asList("news", "stuck"),
+                new MultiSectionFetcher.SectionSource() {
+                    @Override
+                    public ArrayList<NewsItem> fetch(String url, CancellationToken cancellation) {
+                        if (url.equals("stuck")) {
+                            // like a blocking read, which only closing the connection ends
+                            cancellation.addListener(new Runnable() {
+                                @Override
+                                public void run() {
+                                    cancelled.countDown();
+                                }
+                            });
+                            awaitUninterruptibly(cancelled, SECTION_DELAY_MILLIS * 10);
+                            return null;
+                        }
+                        return new ArrayList<>(Arrays.asList(item(url + "/1", 1)));
+                    }
+                }, true, null, SECTION_DELAY_MILLIS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Arrays.asList("news/1"), webUrls(merged));
+        assertEquals(0, cancelled.getCount());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < SECTION_DELAY_MILLIS * 2);
+    }
+
+    @Test
+    public void fetchAll_cancelledLoad_cancelsEverySection() throws InterruptedException {
+        final CountDownLatch cancelled = new CountDownLatch(2);
+        final CancellationToken load = new CancellationToken();
+        MultiSectionFetcher.fetchAll(Arrays.asList("news", "sport"), new MultiSectionFetcher.SectionSource() {
+            @Override
+            public ArrayList<NewsItem> fetch(String url, CancellationToken cancellation) {
+                load.cancel();
+                if (cancellation.isCanceled()) {
+                    cancelled.countDown();
+                }
+                return null;
+            }
+        }, true, load);
+
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+    }
+
+    private static NewsItem item(String webUrl, long publicationTime) {
+        return new NewsItem("Section", "Headline " + webUrl, "", "", publicationTime, webUrl, "");
+    }
+
+    private static List<String> webUrls(List<NewsItem> newsItems) {
+        List<String> webUrls = new ArrayList<>();
+        for (NewsItem newsItem : newsItems) {
+            webUrls.add(newsItem.getWebUrl());
+        }
+        return webUrls;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch, long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (latch.getCount() > 0 && System.nanoTime() < deadline) {
+            try {
+                latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // ignored, as a blocking socket read would
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the in memory layer of {@link NewsItemCache} in front of its files.
+ */
+public class NewsItemCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private NewsItemCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("news_items");
+        cache = new NewsItemCache(directory, 1024 * 1024, TimeUnit.DAYS.toMillis(1));
+    }
+
+    @Test
+    public void putEntryIsServedFromMemory() {
+        cache.put("world", items("a", "b"), "\"v1\"", null);
+
+        // without the files only the memory layer can answer
+        deleteFiles();
+        NewsItemCache.Entry entry = cache.getFromMemory("world");
+        assertNotNull(entry);
+        assertEquals(2, entry.getNewsItems().size());
+        assertEquals("\"v1\"", entry.getETag());
+        assertEquals("", entry.getLastModified());
+        assertNotNull(cache.get("world"));
+    }
+
+    @Test
+    public void entryReadFromDiskIsKeptInMemory() {
+        cache.put("world", items("a"), null, null);
+        NewsItemCache reopened = new NewsItemCache(directory, 1024 * 1024, TimeUnit.DAYS.toMillis(1));
+        assertNull(reopened.getFromMemory("world"));
+
+        assertNotNull(reopened.get("world"));
+        assertNotNull(reopened.getFromMemory("world"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesLeaveMemory() {
+        for (int i = 0; i < 9; i++) {
+            cache.put("section" + i, items("a"), null, null);
+        }
+        // section0 is the oldest, until it is used again
+        assertNull(cache.getFromMemory("section0"));
+        assertNotNull(cache.getFromMemory("section1"));
+
+        cache.put("section9", items("a"), null, null);
+        assertNotNull(cache.getFromMemory("section1"));
+        assertNull(cache.getFromMemory("section2"));
+        // the files are still there
+        assertNotNull(cache.get("section0"));
+    }
+
+    @Test
+    public void memoryEntryDoesNotAliasTheStoredList() {
+        ArrayList<NewsItem> newsItems = items("a");
+        cache.put("world", newsItems, null, null);
+        newsItems.clear();
+        assertEquals(1, cache.getFromMemory("world").getNewsItems().size());
+    }
+
+    @Test
+    public void trailTextSurvivesTheDisk() {
+        ArrayList<NewsItem> newsItems = new ArrayList<>();
+        newsItems.add(new NewsItem("World", "Headline", "Caf\u00e9 \u2013 \u201cquoted\u201d", "Author",
+                1500000000000L, "a", ""));
+        cache.put("world", newsItems, null, null);
+
+        NewsItemCache reopened = new NewsItemCache(directory, 1024 * 1024, TimeUnit.DAYS.toMillis(1));
+        assertEquals("Caf\u00e9 \u2013 \u201cquoted\u201d",
+                reopened.get("world").getNewsItems().get(0).getTrailText());
+    }
+
+    @Test
+    public void profileSurvivesTheDisk() {
+        cache.put("world", items("a"), "\"lite\"", null, FetchProfile.LITE);
+        cache.put("sport", items("b"), null, null);
+
+        NewsItemCache reopened = new NewsItemCache(directory, 1024 * 1024, TimeUnit.DAYS.toMillis(1));
+        assertSame(FetchProfile.LITE, reopened.get("world").getProfile());
+        assertSame(FetchProfile.STANDARD, reopened.get("sport").getProfile());
+    }
+
+    @Test
+    public void memoryIsReadWhileTheDiskIsBusy() throws InterruptedException {
+        cache.put("world", items("a"), null, null);
+        final NewsItemCache.Entry[] entry = new NewsItemCache.Entry[1];
+        Thread mainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                entry[0] = cache.getFromMemory("world");
+            }
+        });
+        // the lock a put holds while it writes and trims the files
+        synchronized (cache) {
+            mainThread.start();
+            mainThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        assertNotNull(entry[0]);
+    }
+
+    private void deleteFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static ArrayList<NewsItem> items(String... webUrls) {
+        ArrayList<NewsItem> newsItems = new ArrayList<>();
+        for (String webUrl : webUrls) {
+            newsItems.add(new NewsItem("World", "Headline " + webUrl, "Trail", "Author",
+                    1500000000000L, webUrl, ""));
+        }
+        return newsItems;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Feeds {@link WarmupPredictor} scripted screens and times.
+ */
+public class WarmupPredictorTest {
+
+    private static final long MIN_DWELL_MILLIS = 500;
+    private static final int MAX_HINTS = 3;
+    private static final long BUDGET_WINDOW_MILLIS = 60000;
+    private static final int MAX_OTHER_URLS = 2;
+
+    private WarmupPredictor predictor;
+
+    @Before
+    public void setUp() {
+        predictor = new WarmupPredictor(MIN_DWELL_MILLIS, MAX_HINTS, BUDGET_WINDOW_MILLIS, MAX_OTHER_URLS);
+    }
+
+    @Test
+    public void storyIsLikelyOnlyAfterTheMinimumDwell() {
+        predictor.setVisible(Collections.singletonList("a"), 1000);
+
+        assertEquals(MIN_DWELL_MILLIS, predictor.millisUntilLikely(1000));
+        assertEquals(100, predictor.millisUntilLikely(1400));
+        assertNull(predictor.nextHint(1499));
+
+        assertEquals(0, predictor.millisUntilLikely(1500));
+        WarmupPredictor.Hint hint = predictor.nextHint(1500);
+        assertNotNull(hint);
+        assertEquals("a", hint.getLikelyUrl());
+        assertEquals(Collections.<String>emptyList(), hint.getOtherUrls());
+    }
+
+    @Test
+    public void nothingBecomesLikelyWithoutVisibleStories() {
+        assertEquals(-1, predictor.millisUntilLikely(1000));
+        assertNull(predictor.nextHint(1000));
+    }
+
+    @Test
+    public void longestVisibleStoryIsHintedFirst() {
+        predictor.setVisible(Collections.singletonList("b"), 1000);
+        predictor.setVisible(Arrays.asList("a", "b", "c"), 1200);
+
+        WarmupPredictor.Hint hint = predictor.nextHint(2000);
+        assertEquals("b", hint.getLikelyUrl());
+        // ties keep screen order
+        assertEquals(Arrays.asList("a", "c"), hint.getOtherUrls());
+    }
+
+    @Test
+    public void storyIsNeverTheMainHintTwice() {
+        predictor.setVisible(Arrays.asList("a", "b"), 1000);
+
+        assertEquals("a", predictor.nextHint(1500).getLikelyUrl());
+        WarmupPredictor.Hint hint = predictor.nextHint(1500);
+        assertEquals("b", hint.getLikelyUrl());
+        // the story hinted before is still worth keeping warm
+        assertEquals(Collections.singletonList("a"), hint.getOtherUrls());
+
+        assertEquals(-1, predictor.millisUntilLikely(1500));
+        assertNull(predictor.nextHint(5000));
+    }
+
+    @Test
+    public void otherUrlsAreCapped() {
+        predictor.setVisible(Arrays.asList("a", "b", "c", "d", "e"), 1000);
+
+        WarmupPredictor.Hint hint = predictor.nextHint(1500);
+        assertEquals("a", hint.getLikelyUrl());
+        assertEquals(Arrays.asList("b", "c"), hint.getOtherUrls());
+    }
+
+    @Test
+    public void dwellStartsOverWhenStoryLeavesTheScreen() {
+        predictor.setVisible(Collections.singletonList("a"), 1000);
+        // scrolled away, and back
+        predictor.setVisible(Collections.<String>emptyList(), 1400);
+        predictor.setVisible(Collections.singletonList("a"), 1450);
+
+        assertNull(predictor.nextHint(1600));
+        assertEquals(350, predictor.millisUntilLikely(1600));
+        assertEquals("a", predictor.nextHint(1950).getLikelyUrl());
+    }
+
+    @Test
+    public void hintsStayWithinTheBudget() {
+        predictor.setVisible(Arrays.asList("a", "b", "c", "d"), 1000);
+
+        assertNotNull(predictor.nextHint(2000));
+        assertNotNull(predictor.nextHint(3000));
+        assertNotNull(predictor.nextHint(4000));
+        assertNull(predictor.nextHint(5000));
+        assertNull(predictor.nextHint(2000 + BUDGET_WINDOW_MILLIS - 1));
+
+        // the first hint has left the window
+        assertEquals("d", predictor.nextHint(2000 + BUDGET_WINDOW_MILLIS).getLikelyUrl());
+    }
+
+    @Test
+    public void spentBudget_delaysTheNextHintUntilTheOldestLeavesTheWindow() {
+        predictor.setVisible(Arrays.asList("a", "b", "c", "d"), 1000);
+        predictor.nextHint(2000);
+        predictor.nextHint(3000);
+        predictor.nextHint(4000);
+
+        assertEquals(BUDGET_WINDOW_MILLIS - 3000, predictor.millisUntilLikely(5000));
+        assertEquals(0, predictor.millisUntilLikely(2000 + BUDGET_WINDOW_MILLIS));
+        assertEquals("d", predictor.nextHint(2000 + BUDGET_WINDOW_MILLIS).getLikelyUrl());
+        // every visible story is hinted, nothing more to wait for
+        assertEquals(-1, predictor.millisUntilLikely(2000 + BUDGET_WINDOW_MILLIS));
+    }
+
+    @Test
+    public void budgetCarriesOverAReset() {
+        predictor.setVisible(Arrays.asList("a", "b", "c"), 1000);
+        predictor.nextHint(2000);
+        predictor.nextHint(2000);
+        predictor.nextHint(2000);
+
+        predictor.reset();
+        predictor.setVisible(Collections.singletonList("a"), 3000);
+        assertNull(predictor.nextHint(4000));
+        // stories hinted in the old feed may be hinted again
+        assertEquals("a", predictor.nextHint(2000 + BUDGET_WINDOW_MILLIS).getLikelyUrl());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ArticleSearchIndex} over tens of thousands of made up news items:
+ * building the index a page of the feed at a time, and searching it with queries as typed.
+ * The search runs in sample mode, so the report has the percentiles of a single query to
+ * hold against the 16 ms of a frame. Run with {@code ./gradlew :core:jmh}; the memory the
+ * index holds is measured by {@code ./gradlew :core:searchIndexFootprint}.
+ */
+@State(Scope.Benchmark)
+public class ArticleSearchIndexBenchmark {
+
+    /** News items per add, as many as a page of the feed */
+    static final int BATCH_SIZE = 20;
+
+    private static final int QUERY_COUNT = 4096;
+    private static final int RESULT_LIMIT = 50;
+
+    @Param({"10000", "50000"})
+    public int size;
+
+    private List<NewsItem> newsItems;
+    private ArticleSearchIndex index;
+    private final String[] queries = new String[QUERY_COUNT];
+    private int nextQuery;
+
+    @Setup
+    public void setUp() {
+        SyntheticNewsItems synthetic = new SyntheticNewsItems(size);
+        newsItems = synthetic.newsItems(size);
+        index = build(newsItems);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries[i] = synthetic.query();
+        }
+    }
+
+    /**
+     * Index every news item into an empty index.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArticleSearchIndex buildIndex() {
+        return build(newsItems);
+    }
+
+    /**
+     * Search for the next query.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<NewsItem> search() {
+        String query = queries[nextQuery];
+        nextQuery = (nextQuery + 1) % QUERY_COUNT;
+        return index.search(query, RESULT_LIMIT);
+    }
+
+    static ArticleSearchIndex build(List<NewsItem> newsItems) {
+        ArticleSearchIndex index = new ArticleSearchIndex();
+        for (int i = 0; i < newsItems.size(); i += BATCH_SIZE) {
+            index.add(newsItems.subList(i, Math.min(newsItems.size(), i + BATCH_SIZE)));
+        }
+        return index;
+    }
+}
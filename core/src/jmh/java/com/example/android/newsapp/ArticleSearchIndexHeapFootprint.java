@@ -0,0 +1,51 @@
+package com.example.android.newsapp;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the heap the {@link ArticleSearchIndex} of 10,000 and 50,000 made up news items
+ * holds on top of the news items themselves. JMH reports the bytes allocated rather than
+ * those kept alive, so this compares the used heap after full collections instead. Run with
+ * {@code ./gradlew :core:searchIndexFootprint}.
+ */
+public final class ArticleSearchIndexHeapFootprint {
+
+    private static final int[] SIZES = {10000, 50000};
+
+    private ArticleSearchIndexHeapFootprint() {
+    }
+
+    public static void main(String[] args) {
+        for (int size : SIZES) {
+            List<NewsItem> newsItems = new SyntheticNewsItems(size).newsItems(size);
+
+            long before = usedHeap();
+            ArticleSearchIndex index = ArticleSearchIndexBenchmark.build(newsItems);
+            long bytes = usedHeap() - before;
+
+            System.out.println(String.format(Locale.US, "%6d news items %6d terms %8.1f MB %6.1f bytes per item",
+                    index.size(), index.getTermCount(), bytes / 1e6, (double) bytes / index.size()));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the used heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
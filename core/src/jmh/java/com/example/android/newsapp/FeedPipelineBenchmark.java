@@ -0,0 +1,152 @@
+package com.example.android.newsapp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Benchmarks each stage a Guardian search response goes through before its news items are
+ * shown: reading the body, parsing the JSON, stripping the trailText html, and parsing and
+ * formatting the publication dates. Each stage runs over a whole recorded response of 10, 50
+ * or 200 results, so the scores are responses per millisecond. Run with {@code ./gradlew
+ * :core:jmh}; the gc profiler adds the allocation rate and bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+public class FeedPipelineBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"search_10.json", "search_50.json", "search_200.json"})
+    public String fixture;
+
+    private final NewsItemParser parser = new NewsItemParser();
+
+    private byte[] body;
+    private byte[] gzipBody;
+    private final byte[] readBuffer = new byte[8192];
+
+    // the raw fields of each result, as they arrive in the response
+    private String[] trailTexts;
+    private String[] publicationDates;
+    private long[] publicationTimes;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = readFixture(fixture);
+        gzipBody = gzip(body);
+
+        JsonArray results = new JsonParser().parse(new String(body, UTF_8)).getAsJsonObject()
+                .getAsJsonObject("response").getAsJsonArray("results");
+        trailTexts = new String[results.size()];
+        publicationDates = new String[results.size()];
+        publicationTimes = new long[results.size()];
+        for (int i = 0; i < results.size(); i++) {
+            JsonObject result = results.get(i).getAsJsonObject();
+            JsonElement trailText = result.getAsJsonObject("fields").get("trailText");
+            trailTexts[i] = trailText != null ? trailText.getAsString() : "";
+            publicationDates[i] = result.get("webPublicationDate").getAsString();
+            publicationTimes[i] = PublicationDates.parse(publicationDates[i]);
+        }
+    }
+
+    /**
+     * Read an uncompressed body, as sent when the server ignores Accept-Encoding.
+     */
+    @Benchmark
+    public long readIdentityBody() throws IOException {
+        return drain(GuardianClient.decodeBody(new ByteArrayInputStream(body), null));
+    }
+
+    /**
+     * Read and inflate a gzip compressed body, as the client requests it.
+     */
+    @Benchmark
+    public long readGzipBody() throws IOException {
+        return drain(GuardianClient.decodeBody(new ByteArrayInputStream(gzipBody), "gzip"));
+    }
+
+    /**
+     * Parse the whole body into news items, including the html stripping and date parsing
+     * done per result.
+     */
+    @Benchmark
+    public List<NewsItem> parseJson() throws IOException {
+        return parser.parse(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public void stripHtml(Blackhole blackhole) {
+        for (String trailText : trailTexts) {
+            blackhole.consume(HtmlStripper.strip(trailText));
+        }
+    }
+
+    @Benchmark
+    public void parseDates(Blackhole blackhole) {
+        for (String publicationDate : publicationDates) {
+            blackhole.consume(PublicationDates.parse(publicationDate));
+        }
+    }
+
+    /**
+     * Format the dates the way each bound row does.
+     */
+    @Benchmark
+    public void formatDates(Blackhole blackhole) {
+        for (long publicationTime : publicationTimes) {
+            blackhole.consume(PublicationDates.format(publicationTime));
+        }
+    }
+
+    private long drain(InputStream in) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = in.read(readBuffer)) != -1) {
+            total += read;
+        }
+        in.close();
+        return total;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = FeedPipelineBenchmark.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        if (in == null) {
+            throw new IOException("missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            byte[] buffer = new byte[8192];
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the heap retained by a feed of 10,000 news items, the recorded 200 result
+ * response parsed over and over, in the compact {@link NewsItem} layout and in the layout
+ * it replaced, with seven separate strings per news item. JMH reports the bytes
+ * allocated rather than those kept alive, so this compares the used heap after full
+ * collections instead. Run with {@code ./gradlew :core:heapFootprint}.
+ */
+public final class NewsItemHeapFootprint {
+
+    private static final int ITEM_COUNT = 10000;
+
+    private NewsItemHeapFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        byte[] body = readFixture("search_200.json");
+        NewsItemParser parser = new NewsItemParser();
+        List<NewsItem> source = new ArrayList<>(ITEM_COUNT);
+        while (source.size() < ITEM_COUNT) {
+            source.addAll(parser.parse(new ByteArrayInputStream(body)));
+        }
+
+        // both layouts are built from fresh copies of the same strings, as the parser makes them
+        long before = usedHeap();
+        List<PlainNewsItem> plain = new ArrayList<>(source.size());
+        for (NewsItem newsItem : source) {
+            plain.add(new PlainNewsItem(newsItem));
+        }
+        long plainBytes = usedHeap() - before;
+
+        before = usedHeap();
+        List<NewsItem> compact = new ArrayList<>(source.size());
+        for (NewsItem newsItem : source) {
+            compact.add(new NewsItem(copy(newsItem.getCategory()), copy(newsItem.getHeadline()),
+                    newsItem.getTrailText(), copy(newsItem.getAuthor()), newsItem.getPublicationTime(),
+                    copy(newsItem.getWebUrl()), copy(newsItem.getThumbnailUrl())));
+        }
+        long compactBytes = usedHeap() - before;
+
+        System.out.println(String.format(Locale.US, "%d news items", compact.size()));
+        System.out.println(String.format(Locale.US, "  separate strings %8.1f bytes per item",
+                (double) plainBytes / plain.size()));
+        System.out.println(String.format(Locale.US, "  compact          %8.1f bytes per item",
+                (double) compactBytes / compact.size()));
+        System.out.println(String.format(Locale.US, "  pooled strings   %8d", StringPool.getShared().size()));
+    }
+
+    /**
+     * Copy a string into a new instance with its own characters, unlike {@code new String(s)}
+     * which may share them.
+     */
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the used heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = NewsItemHeapFootprint.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        if (in == null) {
+            throw new IOException("missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            byte[] buffer = new byte[8192];
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The previous layout of a news item, each field its own string as the parser read it.
+     */
+    private static final class PlainNewsItem {
+        final String category;
+        final String headline;
+        final String trailText;
+        final String author;
+        final long publicationTime;
+        final String webUrl;
+        final String thumbnailUrl;
+
+        PlainNewsItem(NewsItem newsItem) {
+            category = copy(newsItem.getCategory());
+            headline = copy(newsItem.getHeadline());
+            trailText = newsItem.getTrailText();
+            author = copy(newsItem.getAuthor());
+            publicationTime = newsItem.getPublicationTime();
+            webUrl = copy(newsItem.getWebUrl());
+            thumbnailUrl = copy(newsItem.getThumbnailUrl());
+        }
+    }
+}
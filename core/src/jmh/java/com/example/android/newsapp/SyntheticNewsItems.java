@@ -0,0 +1,76 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Makes up any number of news items whose words follow Zipf's law like the words of real
+ * text do, so a few words are in most news items and most words are in few. The recorded
+ * responses hold too few distinct words to stand in for tens of thousands of stories.
+ */
+final class SyntheticNewsItems {
+
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int HEADLINE_WORDS = 10;
+    private static final int TRAIL_TEXT_WORDS = 25;
+    private static final String[] SECTIONS = {"World news", "UK news", "Politics", "Business", "Sport",
+            "Football", "Environment", "Technology", "Culture", "Opinion"};
+
+    private final List<String> mWords = new ArrayList<>(VOCABULARY_SIZE);
+    // the chance of a word being any of the words up to the index
+    private final double[] mCumulative = new double[VOCABULARY_SIZE];
+    private final Random mRandom;
+
+    SyntheticNewsItems(long seed) {
+        mRandom = new Random(seed);
+        double total = 0;
+        for (int rank = 1; rank <= VOCABULARY_SIZE; rank++) {
+            // common words are short
+            char[] word = new char[2 + mRandom.nextInt(Math.min(10, 1 + rank / 200))];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = (char) ('a' + mRandom.nextInt(26));
+            }
+            mWords.add(new String(word));
+            total += 1.0 / rank;
+            mCumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            mCumulative[i] /= total;
+        }
+    }
+
+    List<NewsItem> newsItems(int count) {
+        List<NewsItem> newsItems = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            newsItems.add(new NewsItem(SECTIONS[mRandom.nextInt(SECTIONS.length)], words(HEADLINE_WORDS),
+                    words(TRAIL_TEXT_WORDS), words(2), i, "https://www.theguardian.com/news/" + i, ""));
+        }
+        return newsItems;
+    }
+
+    /**
+     * Make up a query as typed a letter at a time from the shortest word searched for, with
+     * the odd complete word before it.
+     */
+    String query() {
+        String word = word();
+        String prefix = word.substring(0, ArticleSearchIndex.MIN_WORD_LENGTH
+                + mRandom.nextInt(word.length() - ArticleSearchIndex.MIN_WORD_LENGTH + 1));
+        return mRandom.nextInt(4) == 0 ? word() + " " + prefix : prefix;
+    }
+
+    private String word() {
+        int index = Arrays.binarySearch(mCumulative, mRandom.nextDouble());
+        return mWords.get(Math.min(index < 0 ? -index - 1 : index, VOCABULARY_SIZE - 1));
+    }
+
+    private String words(int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            words.append(word()).append(' ');
+        }
+        return words.toString();
+    }
+}
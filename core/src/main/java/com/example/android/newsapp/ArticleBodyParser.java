@@ -0,0 +1,87 @@
+package com.example.android.newsapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pull parser for Guardian search responses requested with {@code show-fields=body}.
+ * Reads the html body of each result, keyed by its web url.
+ */
+public class ArticleBodyParser implements GuardianClient.BodyReader<Map<String, String>> {
+
+    /**
+     * Parse the article bodies from a UTF-8 encoded response body.
+     *
+     * @return the html body of each result that has one by web url, in the order of the results
+     */
+    @Override
+    public Map<String, String> read(InputStream body) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, Charset.forName("UTF-8")));
+        try {
+            Map<String, String> bodies = new LinkedHashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    readResponse(reader, bodies);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return bodies;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void readResponse(JsonReader reader, Map<String, String> bodies) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readResult(reader, bodies);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readResult(JsonReader reader, Map<String, String> bodies) throws IOException {
+        String webUrl = null;
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("webUrl".equals(name) && reader.peek() == JsonToken.STRING) {
+                webUrl = reader.nextString();
+            } else if ("fields".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("body".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                        body = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (webUrl != null && body != null && !body.isEmpty()) {
+            bodies.put(webUrl, body);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Article bodies saved for reading offline, one gzip compressed file per article, keyed by
+ * the article's web url. Once the files add up to more than the maximum size, the least
+ * recently read or saved articles are deleted.
+ * <p>
+ * The names of the saved files are kept in memory once the directory has been listed, and
+ * kept up to date as articles are saved and deleted, so {@link #contains} doesn't touch the
+ * disk and never waits for an article being written.
+ */
+public class ArticleBodyStore {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // names of the saved files, read without the lock once mIndexed is set
+    private final Set<String> mSavedNames =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean mIndexed;
+
+    /**
+     * Constructs a new {@link ArticleBodyStore}.
+     *
+     * @param directory where the article files are kept
+     * @param maxBytes  total size of the files above which articles are deleted
+     */
+    public ArticleBodyStore(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Whether the body of the given article is saved. Looks it up in memory, so it is cheap
+     * enough to call for every row on screen, after the first call lists the directory.
+     */
+    public boolean contains(String webUrl) {
+        if (!mIndexed) {
+            index();
+        }
+        return mSavedNames.contains(hash(webUrl));
+    }
+
+    /**
+     * List the saved articles into memory, if that hasn't been done yet. Call on a background
+     * thread to spare the first {@link #contains} the disk access.
+     */
+    public synchronized void index() {
+        if (mIndexed) {
+            return;
+        }
+        String[] names = mDirectory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (!name.endsWith(".tmp")) {
+                    mSavedNames.add(name);
+                }
+            }
+        }
+        mIndexed = true;
+    }
+
+    /**
+     * Return the saved html body of the given article, or null if it isn't saved.
+     */
+    public synchronized String get(String webUrl) throws IOException {
+        File file = fileFor(webUrl);
+        if (!file.isFile()) {
+            mSavedNames.remove(file.getName());
+            return null;
+        }
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(file.length() * 4, 1 << 20));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            // mark the article as recently read
+            file.setLastModified(System.currentTimeMillis());
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Save the html body of the given article, replacing any saved body, then delete the
+     * least recently used articles until the store fits in its maximum size.
+     */
+    public synchronized void put(String webUrl, String body) throws IOException {
+        index();
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create directory " + mDirectory);
+        }
+        // write to a temporary file first so a crash never leaves a half written article
+        File file = fileFor(webUrl);
+        File tempFile = new File(mDirectory, file.getName() + ".tmp");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.write(body.getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to rename " + tempFile + " to " + file);
+        }
+        mSavedNames.add(file.getName());
+        trimToSize();
+    }
+
+    /**
+     * Get the total size of the saved articles, compressed.
+     */
+    public synchronized long size() {
+        long totalBytes = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                totalBytes += file.length();
+            }
+        }
+        return totalBytes;
+    }
+
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // oldest first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long lastModifiedA = a.lastModified();
+                long lastModifiedB = b.lastModified();
+                return lastModifiedA < lastModifiedB ? -1 : (lastModifiedA == lastModifiedB ? 0 : 1);
+            }
+        });
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        for (File file : files) {
+            if (totalBytes <= mMaxBytes) {
+                break;
+            }
+            totalBytes -= file.length();
+            if (file.delete()) {
+                mSavedNames.remove(file.getName());
+            }
+        }
+    }
+
+    private File fileFor(String webUrl) {
+        return new File(mDirectory, hash(webUrl));
+    }
+
+    /**
+     * Hash the web url so it can be used as a file name.
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
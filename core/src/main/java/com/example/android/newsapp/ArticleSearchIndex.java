@@ -0,0 +1,376 @@
+package com.example.android.newsapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over the headline, trail text, byline and section of the news items the
+ * app has seen, for searching them without the network.
+ * <p>
+ * Every term points to the news items it appears in, weighted by the field it appears in.
+ * The terms are kept sorted, so the words of a query match every term they are a prefix of,
+ * which gives results while the user is still typing; a whole word scores higher than a word
+ * it is the start of. Single letters are left out of the index and the queries, as a letter
+ * would match most of the terms. Only news items that match every word of the query are
+ * returned, best first, and the newest first among equals.
+ * <p>
+ * News items are added as they arrive, keyed by their web url: one seen again unchanged
+ * costs a lookup, a changed one replaces the old version. Replaced versions are skipped
+ * while searching and dropped once they outnumber the live news items.
+ */
+public class ArticleSearchIndex {
+
+    // a word in the headline says more about the story than one in the trail text
+    static final int HEADLINE_WEIGHT = 4;
+    static final int SECTION_WEIGHT = 3;
+    static final int BYLINE_WEIGHT = 2;
+    static final int TRAIL_TEXT_WEIGHT = 1;
+
+    /** Share of the score a term gets when the query word is only its start */
+    static final float PREFIX_MATCH_FACTOR = 0.5f;
+
+    /** Shortest word indexed or searched for */
+    static final int MIN_WORD_LENGTH = 2;
+
+    // marks a replaced document in the scratch space, so the search skips it with the
+    // same check as a document that missed a word
+    private static final int REPLACED = Integer.MIN_VALUE;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    // guarded by this
+    private final TreeMap<String, Postings> mTerms = new TreeMap<>();
+    private final Map<String, Integer> mDocIds = new HashMap<>();
+    // by document id, null once replaced by a newer version
+    private final ArrayList<NewsItem> mDocs = new ArrayList<>();
+    private int mLiveCount;
+
+    // scratch space of the search, reused to keep it from allocating per query:
+    // the number of words each document matched so far, or REPLACED
+    private int[] mMatchedTokens = new int[0];
+    private float[] mScores = new float[0];
+    private float[] mTokenScores = new float[0];
+
+    private final LatencyHistogram mSearchLatency = new LatencyHistogram();
+
+    /**
+     * The documents a term appears in, in the order they were added, with the weight of
+     * the term in each.
+     */
+    private static final class Postings {
+        int[] mIds = new int[2];
+        int[] mWeights = new int[2];
+        int mSize;
+
+        void add(int docId, int weight) {
+            if (mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+                mWeights = Arrays.copyOf(mWeights, mSize * 2);
+            }
+            mIds[mSize] = docId;
+            mWeights[mSize] = weight;
+            mSize++;
+        }
+    }
+
+    /**
+     * Add news items, or replace the versions indexed before.
+     *
+     * @return the number of news items that were new or changed
+     */
+    public synchronized int add(List<NewsItem> newsItems) {
+        int added = 0;
+        for (NewsItem newsItem : newsItems) {
+            String webUrl = newsItem.getWebUrl();
+            if (webUrl == null || webUrl.isEmpty()) {
+                continue;
+            }
+            Integer oldId = mDocIds.get(webUrl);
+            if (oldId != null) {
+                if (mDocs.get(oldId).contentEquals(newsItem)) {
+                    continue;
+                }
+                // left in the postings, and skipped from now on
+                mDocs.set(oldId, null);
+                if (oldId < mMatchedTokens.length) {
+                    mMatchedTokens[oldId] = REPLACED;
+                }
+                mLiveCount--;
+            }
+            index(newsItem);
+            added++;
+        }
+        if (mDocs.size() - mLiveCount > mLiveCount) {
+            compact();
+        }
+        return added;
+    }
+
+    /**
+     * Find the news items that match every word of the query, best match first.
+     *
+     * @param query as typed; every word matches the terms it is the start of
+     * @param limit the most news items to return
+     */
+    public synchronized List<NewsItem> search(String query, int limit) {
+        long start = System.nanoTime();
+        List<String> tokens = new ArrayList<>();
+        for (String token : tokenize(query)) {
+            if (token.length() >= MIN_WORD_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        ensureScratchCapacity();
+
+        // documents matching the first word; later words only narrow them down
+        IntList candidates = new IntList();
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            for (Map.Entry<String, Postings> entry : mTerms.subMap(token, true, token + Character.MAX_VALUE, false)
+                    .entrySet()) {
+                Postings postings = entry.getValue();
+                float factor = entry.getKey().length() == token.length() ? 1 : PREFIX_MATCH_FACTOR;
+                float idf = (float) Math.log(1 + mLiveCount / (double) postings.mSize);
+                for (int i = 0; i < postings.mSize; i++) {
+                    int docId = postings.mIds[i];
+                    int matched = mMatchedTokens[docId];
+                    if (matched < t) {
+                        // missed an earlier word, or was replaced
+                        continue;
+                    }
+                    float score = postings.mWeights[i] * idf * factor;
+                    if (matched == t) {
+                        // the first term this word matches in the document
+                        mMatchedTokens[docId] = t + 1;
+                        mTokenScores[docId] = score;
+                        if (t == 0) {
+                            candidates.add(docId);
+                        }
+                    } else if (score > mTokenScores[docId]) {
+                        // a word counts once, by the best term it matches
+                        mTokenScores[docId] = score;
+                    }
+                }
+            }
+            for (int i = 0; i < candidates.mSize; i++) {
+                int docId = candidates.mValues[i];
+                if (mMatchedTokens[docId] == t + 1) {
+                    mScores[docId] += mTokenScores[docId];
+                }
+            }
+        }
+
+        List<NewsItem> results = topResults(candidates, tokens.size(), limit);
+        for (int i = 0; i < candidates.mSize; i++) {
+            int docId = candidates.mValues[i];
+            mMatchedTokens[docId] = 0;
+            mScores[docId] = 0;
+            mTokenScores[docId] = 0;
+        }
+        mSearchLatency.recordNanos(System.nanoTime() - start);
+        return results;
+    }
+
+    /**
+     * Get the number of news items that can be found.
+     */
+    public synchronized int size() {
+        return mLiveCount;
+    }
+
+    /**
+     * Get the number of distinct terms indexed.
+     */
+    public synchronized int getTermCount() {
+        return mTerms.size();
+    }
+
+    /**
+     * Get the time searches took.
+     */
+    public LatencyHistogram getSearchLatency() {
+        return mSearchLatency;
+    }
+
+    /**
+     * Describe the index and its search times in one line, for the log.
+     */
+    public String summary() {
+        int size;
+        int termCount;
+        synchronized (this) {
+            size = mLiveCount;
+            termCount = mTerms.size();
+        }
+        return String.format(Locale.US, "search: %d news items, %d terms, %d searches, p50 %.1f ms p99 %.1f ms",
+                size, termCount, mSearchLatency.getCount(),
+                mSearchLatency.getValueAtPercentile(50) / (double) TimeUnit.MILLISECONDS.toMicros(1),
+                mSearchLatency.getValueAtPercentile(99) / (double) TimeUnit.MILLISECONDS.toMicros(1));
+    }
+
+    /**
+     * Split text into lower case words without accents, so a word is found without typing
+     * its accents.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7f) {
+                text = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void index(NewsItem newsItem) {
+        Map<String, Integer> weights = new HashMap<>();
+        addTerms(weights, newsItem.getHeadline(), HEADLINE_WEIGHT);
+        addTerms(weights, newsItem.getCategory(), SECTION_WEIGHT);
+        addTerms(weights, newsItem.getAuthor(), BYLINE_WEIGHT);
+        addTerms(weights, newsItem.getTrailText(), TRAIL_TEXT_WEIGHT);
+
+        int docId = mDocs.size();
+        mDocs.add(newsItem);
+        mDocIds.put(newsItem.getWebUrl(), docId);
+        mLiveCount++;
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            Postings postings = mTerms.get(weight.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                mTerms.put(weight.getKey(), postings);
+            }
+            postings.add(docId, weight.getValue());
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        for (String token : tokenize(text)) {
+            // single letters are left to the prefixes of longer words
+            if (token.length() < MIN_WORD_LENGTH) {
+                continue;
+            }
+            Integer previous = weights.get(token);
+            weights.put(token, previous == null ? weight : previous + weight);
+        }
+    }
+
+    /**
+     * Index the live news items again without the replaced ones.
+     */
+    private void compact() {
+        List<NewsItem> live = new ArrayList<>(mLiveCount);
+        for (NewsItem newsItem : mDocs) {
+            if (newsItem != null) {
+                live.add(newsItem);
+            }
+        }
+        mTerms.clear();
+        mDocIds.clear();
+        mDocs.clear();
+        mLiveCount = 0;
+        Arrays.fill(mMatchedTokens, 0);
+        for (NewsItem newsItem : live) {
+            index(newsItem);
+        }
+    }
+
+    private void ensureScratchCapacity() {
+        if (mMatchedTokens.length < mDocs.size()) {
+            int capacity = Math.max(mDocs.size(), mMatchedTokens.length * 2);
+            mMatchedTokens = new int[capacity];
+            mScores = new float[capacity];
+            mTokenScores = new float[capacity];
+            for (int docId = 0; docId < mDocs.size(); docId++) {
+                if (mDocs.get(docId) == null) {
+                    mMatchedTokens[docId] = REPLACED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick the best scoring candidates that matched every word, keeping only the limit
+     * in a heap rather than sorting them all.
+     */
+    private List<NewsItem> topResults(IntList candidates, int tokenCount, int limit) {
+        Comparator<Integer> worstFirst = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareDocs(a, b);
+            }
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, worstFirst);
+        for (int i = 0; i < candidates.mSize; i++) {
+            int docId = candidates.mValues[i];
+            if (mMatchedTokens[docId] != tokenCount
+                    || (best.size() == limit && compareDocs(docId, best.peek()) <= 0)) {
+                continue;
+            }
+            best.add(docId);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        NewsItem[] results = new NewsItem[best.size()];
+        for (int i = results.length - 1; i >= 0; i--) {
+            results[i] = mDocs.get(best.poll());
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Order documents by score, then by publication time.
+     */
+    private int compareDocs(int a, int b) {
+        int byScore = Float.compare(mScores[a], mScores[b]);
+        if (byScore != 0) {
+            return byScore;
+        }
+        long timeA = mDocs.get(a).getPublicationTime();
+        long timeB = mDocs.get(b).getPublicationTime();
+        return timeA < timeB ? -1 : (timeA == timeB ? 0 : 1);
+    }
+
+    /**
+     * Growable list of ints, so collecting candidates doesn't box them.
+     */
+    private static final class IntList {
+        int[] mValues = new int[64];
+        int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets whoever started some work cancel it from another thread. Unlike Android's
+ * {@code CancellationSignal} it takes any number of listeners, so one token can cancel
+ * several requests running at once.
+ */
+public class CancellationToken {
+
+    private boolean mCanceled;
+    private final List<Runnable> mListeners = new ArrayList<>();
+
+    /**
+     * Cancel the work: runs every listener, once, on the calling thread.
+     */
+    public void cancel() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Run the listener when the token is cancelled, or right away if it already is.
+     */
+    public void addListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Stop the listener from running when the token is cancelled.
+     */
+    public synchronized void removeListener(Runnable listener) {
+        mListeners.remove(listener);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+
+/**
+ * Stops requests to an API that keeps failing, so a struggling server isn't hammered with
+ * retries and the app serves what it has cached straight away instead of waiting on
+ * timeouts.
+ * <p>
+ * After a number of failures in a row the circuit opens, and requests fail fast for a
+ * while. Then it lets one trial request through: if that succeeds the circuit closes
+ * again, if it fails it stays open for another while. Times are passed in, so this runs and
+ * is tested on the JVM.
+ */
+public class CircuitBreaker {
+
+    /**
+     * A request wasn't made because the circuit is open.
+     */
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException() {
+            super("API unhealthy, request not made");
+        }
+    }
+
+    public enum State {
+        /** Requests go through */
+        CLOSED,
+        /** Requests fail fast */
+        OPEN,
+        /** One trial request is let through to see whether the API recovered */
+        HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+
+    private int mConsecutiveFailures;
+    private boolean mOpen;
+    private long mOpenUntilMillis;
+    private boolean mTrialInFlight;
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold failures in a row that open the circuit
+     * @param openMillis       time the circuit stays open before a trial request
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+    }
+
+    public synchronized State getState(long nowMillis) {
+        if (!mOpen) {
+            return State.CLOSED;
+        }
+        return nowMillis < mOpenUntilMillis ? State.OPEN : State.HALF_OPEN;
+    }
+
+    /**
+     * Whether a request may go out now. When this returns true, the outcome of the request
+     * must be reported with one of the record methods.
+     */
+    public synchronized boolean allowRequest(long nowMillis) {
+        switch (getState(nowMillis)) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (mTrialInFlight) {
+                    return false;
+                }
+                mTrialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The API answered, even if with an error that isn't its fault.
+     */
+    public synchronized void recordSuccess() {
+        mConsecutiveFailures = 0;
+        mOpen = false;
+        mTrialInFlight = false;
+    }
+
+    /**
+     * The request failed in a way that suggests the API is unhealthy.
+     */
+    public synchronized void recordFailure(long nowMillis) {
+        mConsecutiveFailures++;
+        if (mTrialInFlight || mConsecutiveFailures >= mFailureThreshold) {
+            mOpen = true;
+            mOpenUntilMillis = nowMillis + mOpenMillis;
+        }
+        mTrialInFlight = false;
+    }
+
+    /**
+     * The request was given up on before it told us anything, e.g. cancelled.
+     */
+    public synchronized void recordAbandoned() {
+        mTrialInFlight = false;
+    }
+}
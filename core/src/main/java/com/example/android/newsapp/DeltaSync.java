@@ -0,0 +1,101 @@
+package com.example.android.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Incremental refresh of a feed ordered newest first. Rather than downloading and parsing
+ * the whole first page again, only the stories published since the newest one already held
+ * are requested, using the API's date filter, and merged into the held list. The response,
+ * and the time spent parsing it, then grows with the number of new stories only.
+ */
+public final class DeltaSync {
+
+    private static final String FROM_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private DeltaSync() {
+    }
+
+    /**
+     * Return the publication time of the newest news item, or {@link PublicationDates#UNKNOWN}
+     * if none of them has a known publication time.
+     */
+    public static long newestPublicationTime(List<NewsItem> newsItems) {
+        long newest = PublicationDates.UNKNOWN;
+        for (NewsItem newsItem : newsItems) {
+            newest = Math.max(newest, newsItem.getPublicationTime());
+        }
+        return newest;
+    }
+
+    /**
+     * Build the query for the stories published at or after the given time.
+     * The filter is inclusive, so the newest held stories are sent again and
+     * {@link #merge} drops them.
+     *
+     * @param url         query url of the first page of the feed
+     * @param sinceMillis publication time of the newest held story
+     */
+    public static String buildDeltaUrl(String url, long sinceMillis) {
+        SimpleDateFormat format = new SimpleDateFormat(FROM_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return url + (url.indexOf('?') < 0 ? '?' : '&')
+                    + "from-date=" + URLEncoder.encode(format.format(new Date(sinceMillis)), "UTF-8")
+                    + "&use-date=published";
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Whether an incremental response came back as a full page, so there may be more new
+     * stories than fit on one page. None of the held stories belong on the first page then,
+     * and the response replaces them rather than being merged in.
+     */
+    public static boolean isGap(List<NewsItem> delta, int pageSize) {
+        return delta.size() >= pageSize;
+    }
+
+    /**
+     * Merge new stories into the held ones, newest first. A story in both lists keeps its
+     * new version, which may have an updated headline or thumbnail. Only the newest
+     * {@code limit} stories are kept, as a full refresh of the first page would return.
+     */
+    public static ArrayList<NewsItem> merge(List<NewsItem> delta, List<NewsItem> held, int limit) {
+        Map<String, NewsItem> byWebUrl = new LinkedHashMap<>(delta.size() + held.size());
+        for (NewsItem newsItem : delta) {
+            byWebUrl.put(newsItem.getWebUrl(), newsItem);
+        }
+        for (NewsItem newsItem : held) {
+            if (!byWebUrl.containsKey(newsItem.getWebUrl())) {
+                byWebUrl.put(newsItem.getWebUrl(), newsItem);
+            }
+        }
+
+        ArrayList<NewsItem> merged = new ArrayList<>(byWebUrl.values());
+        // stable, so stories published at the same time keep the order the API gave them
+        Collections.sort(merged, new Comparator<NewsItem>() {
+            @Override
+            public int compare(NewsItem a, NewsItem b) {
+                long timeA = a.getPublicationTime();
+                long timeB = b.getPublicationTime();
+                return timeA > timeB ? -1 : (timeA == timeB ? 0 : 1);
+            }
+        });
+        if (merged.size() > limit) {
+            merged.subList(limit, merged.size()).clear();
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.newsapp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of the feed last shown, so a cold start can draw the feed before
+ * its first frame instead of waiting for the loader.
+ * <p>
+ * The file holds a magic number and format version, the time it was saved, the key of the
+ * feed, the number of news items, then each news item's fields. Numbers are big endian and
+ * strings are a length followed by UTF-8 bytes; the trailText is copied as the bytes
+ * {@link NewsItem} holds, so it is neither encoded nor decoded. The file is memory mapped
+ * to read it and written to a temporary file that replaces it, so a reader never sees a
+ * half written snapshot. A snapshot of another version reads as missing.
+ */
+public final class FeedSnapshot {
+
+    /** "NFSN", marks a snapshot file */
+    private static final int MAGIC = 0x4e46534e;
+
+    /** Bump this whenever the format changes, older snapshots are then ignored */
+    static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String mKey;
+    private final long mSavedAt;
+    private final ArrayList<NewsItem> mNewsItems;
+
+    private FeedSnapshot(String key, long savedAt, ArrayList<NewsItem> newsItems) {
+        mKey = key;
+        mSavedAt = savedAt;
+        mNewsItems = newsItems;
+    }
+
+    /**
+     * Get the key of the feed the snapshot was taken of.
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Get the time the snapshot was saved, in milliseconds since the epoch.
+     */
+    public long getSavedAt() {
+        return mSavedAt;
+    }
+
+    /**
+     * Get the news items of the snapshot, in the order they were shown.
+     */
+    public ArrayList<NewsItem> getNewsItems() {
+        return mNewsItems;
+    }
+
+    /**
+     * Read the snapshot in the given file.
+     *
+     * @return the snapshot, or null if there is none or it is damaged or of another version
+     */
+    public static FeedSnapshot read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long savedAt = in.getLong();
+            String key = readString(in);
+            int count = in.getInt();
+            if (count < 0) {
+                return null;
+            }
+            // every news item takes at least its fixed size, so a bad count can't over allocate
+            ArrayList<NewsItem> newsItems = new ArrayList<>(Math.min(count, in.remaining() / 32));
+            for (int i = 0; i < count; i++) {
+                String category = readString(in);
+                String headline = readString(in);
+                byte[] trailText = readBytes(in);
+                String author = readString(in);
+                long publicationTime = in.getLong();
+                String webUrl = readString(in);
+                String thumbnailUrl = readString(in);
+                newsItems.add(new NewsItem(category, headline, trailText, author, publicationTime,
+                        webUrl, thumbnailUrl));
+            }
+            return in.hasRemaining() ? null : new FeedSnapshot(key, savedAt, newsItems);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // truncated, or a length that runs past the end
+            return null;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Save a snapshot of the given news items in the given file, replacing any snapshot in it.
+     *
+     * @param key identifies the feed, so a snapshot of another feed isn't shown
+     */
+    public static void write(File file, String key, List<NewsItem> newsItems) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            writeBytes(out, key.getBytes(UTF_8));
+            out.writeInt(newsItems.size());
+            for (NewsItem newsItem : newsItems) {
+                writeBytes(out, newsItem.getCategory().getBytes(UTF_8));
+                writeBytes(out, newsItem.getHeadline().getBytes(UTF_8));
+                writeBytes(out, newsItem.getTrailTextBytes());
+                writeBytes(out, newsItem.getAuthor().getBytes(UTF_8));
+                out.writeLong(newsItem.getPublicationTime());
+                writeBytes(out, newsItem.getWebUrl().getBytes(UTF_8));
+                writeBytes(out, newsItem.getThumbnailUrl().getBytes(UTF_8));
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to rename " + tempFile + " to " + file);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Bad length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer in) {
+        return new String(readBytes(in), UTF_8);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.android.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How much the app fetches over the network it is on: how many stories a page holds, which
+ * fields of a story are requested, how large the thumbnails are, and how far ahead of the
+ * user thumbnails and pages are prefetched.
+ * <p>
+ * Query urls are built and cached without a profile; the profile is applied to a url just
+ * before it is requested, so switching profiles doesn't orphan the cached feed. The cache
+ * records the profile its news items were fetched with, so news items missing fields the
+ * current profile asks for are fetched again in full.
+ */
+public final class FetchProfile {
+
+    /** Fields a card shows in full */
+    static final String ALL_FIELDS = "thumbnail,trailText,headline,byline";
+
+    /** A fast network that costs nothing: larger pages, fewer requests, prefetch freely */
+    public static final FetchProfile FULL = new FetchProfile("full", 30, ALL_FIELDS, 0, 6, 8);
+    /** The app as it always fetched */
+    public static final FetchProfile STANDARD = new FetchProfile("standard", 20, ALL_FIELDS, 0, 4, 5);
+    /** A slow or costly network: small pages without trail text, small thumbnails, little prefetching */
+    public static final FetchProfile LITE = new FetchProfile("lite", 10, "thumbnail,headline,byline", 140, 1, 2);
+
+    /**
+     * A thumbnail served by the Guardian's image service, whose last path segment is the
+     * width, e.g. https://media.guim.co.uk/1a2b/0_0_3000_1800/500.jpg
+     */
+    private static final Pattern GUARDIAN_IMAGE_URL = Pattern.compile("^(https?://[^/]*guim\\.co\\.uk/.+/)\\d+(\\.jpg)$");
+
+    private final String mName;
+    private final int mPageSize;
+    private final String mShowFields;
+    private final int mThumbnailWidth;
+    private final int mPrefetchRows;
+    private final int mPagingDistance;
+
+    /**
+     * Constructs a new {@link FetchProfile}.
+     *
+     * @param name           for the log
+     * @param pageSize       number of stories requested per page
+     * @param showFields     fields of the stories requested
+     * @param thumbnailWidth width of the thumbnails requested in pixels, 0 for the width the API links to
+     * @param prefetchRows   number of rows ahead of the screen whose thumbnails are preloaded
+     * @param pagingDistance the next page is requested when the last visible row is this close to the end
+     */
+    FetchProfile(String name, int pageSize, String showFields, int thumbnailWidth, int prefetchRows,
+                 int pagingDistance) {
+        mName = name;
+        mPageSize = pageSize;
+        mShowFields = showFields;
+        mThumbnailWidth = thumbnailWidth;
+        mPrefetchRows = prefetchRows;
+        mPagingDistance = pagingDistance;
+    }
+
+    /**
+     * Pick the profile for a network. A metered network gets a lighter profile than a free
+     * one of the same quality, and a network nothing was measured on yet the standard one.
+     */
+    public static FetchProfile select(NetworkQualityEstimator.Quality quality, boolean metered) {
+        switch (quality) {
+            case GOOD:
+                return metered ? STANDARD : FULL;
+            case MODERATE:
+                return metered ? LITE : STANDARD;
+            case POOR:
+                return LITE;
+            default:
+                return STANDARD;
+        }
+    }
+
+    /**
+     * Get the profile of the given name, or null if there is none.
+     */
+    public static FetchProfile forName(String name) {
+        for (FetchProfile profile : new FetchProfile[]{FULL, STANDARD, LITE}) {
+            if (profile.mName.equals(name)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether news items fetched with this profile have every field the other profile asks
+     * for, whatever the page size.
+     */
+    public boolean hasFieldsOf(FetchProfile other) {
+        return Arrays.asList(mShowFields.split(",")).containsAll(Arrays.asList(other.mShowFields.split(",")));
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public String getShowFields() {
+        return mShowFields;
+    }
+
+    public int getPrefetchRows() {
+        return mPrefetchRows;
+    }
+
+    public int getPagingDistance() {
+        return mPagingDistance;
+    }
+
+    /**
+     * Return the feed query url with this profile's page size and fields in place of its
+     * own. Urls that don't ask for the fields of the cards, like those for the bodies of
+     * articles, are returned as they are.
+     */
+    public String apply(String url) {
+        if (!ALL_FIELDS.equals(getParameter(url, "show-fields"))) {
+            return url;
+        }
+        String profiled = replaceParameter(url, "page-size", String.valueOf(mPageSize));
+        return replaceParameter(profiled, "show-fields", mShowFields);
+    }
+
+    /**
+     * Return the url of the thumbnail at this profile's width, if the image service can
+     * serve it at that width.
+     */
+    public String thumbnailUrl(String url) {
+        if (mThumbnailWidth == 0 || url == null) {
+            return url;
+        }
+        Matcher matcher = GUARDIAN_IMAGE_URL.matcher(url);
+        if (!matcher.matches()) {
+            return url;
+        }
+        return matcher.group(1) + mThumbnailWidth + matcher.group(2);
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+    private static String getParameter(String url, String name) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (parameter.startsWith(name + '=')) {
+                return decode(parameter.substring(name.length() + 1));
+            }
+        }
+        return null;
+    }
+
+    private static String replaceParameter(String url, String name, String value) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return url;
+        }
+        String[] parameters = url.substring(queryStart + 1).split("&");
+        StringBuilder replaced = new StringBuilder(url.length() + 16).append(url, 0, queryStart + 1);
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                replaced.append('&');
+            }
+            if (parameters[i].startsWith(name + '=')) {
+                replaced.append(name).append('=').append(encode(value));
+            } else {
+                replaced.append(parameters[i]);
+            }
+        }
+        return replaced.toString();
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
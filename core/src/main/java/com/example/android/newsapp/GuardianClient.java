@@ -0,0 +1,314 @@
+package com.example.android.newsapp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Performs requests against the Guardian API. Responses are requested gzip compressed, and
+ * requests carry the validators of the stored response so the server can answer
+ * 304 Not Modified instead of sending the body again.
+ */
+public class GuardianClient {
+
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+
+    private final NewsItemParser mParser;
+
+    /**
+     * Constructs a new {@link GuardianClient}.
+     *
+     * @param parser used to read the news items from response bodies
+     */
+    public GuardianClient(NewsItemParser parser) {
+        mParser = parser;
+    }
+
+    /**
+     * Request the given URL.
+     *
+     * @param eTag         entity tag of the stored response, or null
+     * @param lastModified last modified date of the stored response, or null
+     * @throws HttpStatusException if the server answers with an error
+     * @throws IOException         if the request fails
+     */
+    public NewsResponse fetch(URL url, String eTag, String lastModified) throws IOException {
+        return newCall(url, eTag, lastModified).execute();
+    }
+
+    /**
+     * Reads what a response body holds, other than the news items of a search.
+     */
+    public interface BodyReader<T> {
+        /**
+         * Read the uncompressed response body.
+         */
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * Request the given URL unconditionally and read its body with the given reader.
+     *
+     * @throws HttpStatusException if the server answers with an error
+     * @throws IOException         if the request fails
+     */
+    public <T> T fetchBody(URL url, BodyReader<T> reader) throws IOException {
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        try {
+            urlConnection = openConnection(url);
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw statusException(urlConnection, responseCode);
+            }
+            inputStream = urlConnection.getInputStream();
+            return reader.read(decodeBody(inputStream, urlConnection.getContentEncoding()));
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Prepare a request for the given URL that can be cancelled from another thread while
+     * it runs.
+     *
+     * @param eTag         entity tag of the stored response, or null
+     * @param lastModified last modified date of the stored response, or null
+     */
+    public Call newCall(URL url, String eTag, String lastModified) {
+        return new Call(url, eTag, lastModified);
+    }
+
+    /**
+     * A single request, executed once on the calling thread. Cancelling it disconnects the
+     * connection, which aborts the socket, so a blocked connect or read fails straight away
+     * instead of running into its timeout.
+     */
+    public class Call {
+        private final URL mUrl;
+        private final String mETag;
+        private final String mLastModified;
+
+        private volatile boolean mCanceled;
+        private volatile HttpURLConnection mConnection;
+
+        Call(URL url, String eTag, String lastModified) {
+            mUrl = url;
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        /**
+         * Run the request.
+         *
+         * @throws InterruptedIOException if the call was cancelled
+         * @throws HttpStatusException    if the server answers with an error
+         * @throws IOException            if the request fails
+         */
+        public NewsResponse execute() throws IOException {
+            try {
+                return executeRequest();
+            } catch (IOException e) {
+                // disconnecting surfaces as whatever the connection was doing at the time
+                if (mCanceled && !(e instanceof InterruptedIOException)) {
+                    InterruptedIOException canceled = new InterruptedIOException("Canceled");
+                    canceled.initCause(e);
+                    throw canceled;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Cancel the request; safe to call from any thread, any number of times.
+         */
+        public void cancel() {
+            mCanceled = true;
+            HttpURLConnection connection = mConnection;
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        public boolean isCanceled() {
+            return mCanceled;
+        }
+
+        private NewsResponse executeRequest() throws IOException {
+            HttpURLConnection urlConnection = null;
+            CountingInputStream inputStream = null;
+            try {
+                urlConnection = openConnection(mUrl);
+                mConnection = urlConnection;
+                if (mCanceled) {
+                    throw new InterruptedIOException("Canceled");
+                }
+                if (mETag != null && !mETag.isEmpty()) {
+                    urlConnection.setRequestProperty("If-None-Match", mETag);
+                }
+                if (mLastModified != null && !mLastModified.isEmpty()) {
+                    urlConnection.setRequestProperty("If-Modified-Since", mLastModified);
+                }
+                long start = System.nanoTime();
+                urlConnection.connect();
+                long connected = System.nanoTime();
+
+                int responseCode = urlConnection.getResponseCode();
+                long firstByte = System.nanoTime();
+                if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    // keep the stored validators unless the server sent new ones
+                    NewsResponse response = new NewsResponse(null, true,
+                            headerOrDefault(urlConnection, "ETag", mETag),
+                            headerOrDefault(urlConnection, "Last-Modified", mLastModified), 0);
+                    response.setTimings(connected - start, firstByte - connected, 0, 0);
+                    return response;
+                }
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    throw statusException(urlConnection, responseCode);
+                }
+
+                inputStream = new CountingInputStream(urlConnection.getInputStream());
+                TimedInputStream body = new TimedInputStream(decodeBody(inputStream, urlConnection.getContentEncoding()));
+                ArrayList<NewsItem> newsItems = mParser.parse(body);
+                long parsed = System.nanoTime();
+
+                NewsResponse response = new NewsResponse(newsItems, false,
+                        urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"),
+                        inputStream.getCount());
+                // the parser pulls the body as it goes, so whatever wasn't spent reading was parsing
+                response.setTimings(connected - start, firstByte - connected,
+                        body.getNanos(), parsed - firstByte - body.getNanos());
+                return response;
+            } finally {
+                if (urlConnection != null) {
+                    urlConnection.disconnect();
+                }
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a GET request for the given URL, not yet connected.
+     */
+    private static HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        urlConnection.setRequestMethod("GET");
+        // Setting this ourselves turns off transparent decompression, see decodeBody
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        return urlConnection;
+    }
+
+    /**
+     * Wrap the raw response stream so it reads the uncompressed body.
+     *
+     * @param contentEncoding value of the Content-Encoding header, or null
+     */
+    static InputStream decodeBody(InputStream raw, String contentEncoding) throws IOException {
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(raw);
+        }
+        return raw;
+    }
+
+    private static HttpStatusException statusException(HttpURLConnection urlConnection, int responseCode) {
+        return new HttpStatusException(responseCode, HttpStatusException.parseRetryAfter(
+                urlConnection.getHeaderField("Retry-After"), System.currentTimeMillis()));
+    }
+
+    private static String headerOrDefault(HttpURLConnection urlConnection, String name, String defaultValue) {
+        String value = urlConnection.getHeaderField(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Counts the bytes read through it, so we know what actually came over the network.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Adds up the time spent in reads, which is waiting on the network and inflating.
+     */
+    private static class TimedInputStream extends FilterInputStream {
+        private long mNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getNanos() {
+            return mNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                mNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, length);
+            } finally {
+                mNanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
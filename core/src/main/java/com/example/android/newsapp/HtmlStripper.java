@@ -0,0 +1,247 @@
+package com.example.android.newsapp;
+
+/**
+ * Turns the html of a trailText into plain text, giving the same text as
+ * {@code Html.fromHtml(html).toString()} does for the markup the Guardian uses, without
+ * building a {@code Spanned} and without depending on the Android framework.
+ * <ul>
+ * <li>tags are removed, {@code <br>} becomes a line break and block elements such as
+ * {@code <p>} are separated by a blank line</li>
+ * <li>runs of spaces and line breaks in the text collapse into a single space</li>
+ * <li>character entity references are decoded</li>
+ * </ul>
+ * The only allocation is the returned String, and text without markup is returned as is.
+ */
+public final class HtmlStripper {
+
+    // Named character references we decode, and the characters they stand for
+    private static final String[] ENTITY_NAMES = {
+            "amp", "lt", "gt", "quot", "apos", "nbsp", "ndash", "mdash", "lsquo", "rsquo",
+            "sbquo", "ldquo", "rdquo", "bdquo", "hellip", "bull", "middot", "pound", "euro",
+            "yen", "cent", "copy", "reg", "trade", "deg", "plusmn", "times", "divide", "frac12",
+            "frac14", "frac34", "laquo", "raquo", "eacute", "egrave", "aacute", "agrave",
+            "iacute", "oacute", "uacute", "ntilde", "ccedil", "auml", "ouml", "uuml", "szlig"};
+    private static final char[] ENTITY_CHARS = {
+            '&', '<', '>', '"', '\'', '\u00a0', '\u2013', '\u2014', '\u2018', '\u2019',
+            '\u201a', '\u201c', '\u201d', '\u201e', '\u2026', '\u2022', '\u00b7', '\u00a3',
+            '\u20ac', '\u00a5', '\u00a2', '\u00a9', '\u00ae', '\u2122', '\u00b0', '\u00b1',
+            '\u00d7', '\u00f7', '\u00bd', '\u00bc', '\u00be', '\u00ab', '\u00bb', '\u00e9',
+            '\u00e8', '\u00e1', '\u00e0', '\u00ed', '\u00f3', '\u00fa', '\u00f1', '\u00e7',
+            '\u00e4', '\u00f6', '\u00fc', '\u00df'};
+
+    /** Longest entity name in the table above, longer references are left alone */
+    private static final int MAX_ENTITY_NAME_LENGTH = 6;
+
+    /** Reused output buffer, the output is never longer than the input */
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<>();
+
+    private HtmlStripper() {
+    }
+
+    /**
+     * Return the plain text of the given html.
+     */
+    public static String strip(String html) {
+        int length = html.length();
+        if (length == 0) {
+            return html;
+        }
+        char[] out = BUFFER.get();
+        if (out == null || out.length < length) {
+            out = new char[Math.max(length, 256)];
+            BUFFER.set(out);
+        }
+
+        int outLength = 0;
+        // false as soon as the output differs from the input
+        boolean unchanged = true;
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+
+            if (c == '<') {
+                int tagEnd = skipTag(html, i);
+                if (tagEnd > i) {
+                    outLength = handleTag(html, i, out, outLength);
+                    unchanged = false;
+                    i = tagEnd;
+                    continue;
+                }
+            } else if (c == '&') {
+                int entityEnd = html.indexOf(';', i);
+                if (entityEnd > i + 1) {
+                    int decoded = decodeEntity(html, i + 1, entityEnd);
+                    if (decoded > 0xffff) {
+                        // a reference is at least as long as the surrogate pair it stands for
+                        outLength += Character.toChars(decoded, out, outLength);
+                        unchanged = false;
+                        i = entityEnd + 1;
+                        continue;
+                    } else if (decoded >= 0) {
+                        c = (char) decoded;
+                        unchanged = false;
+                        i = entityEnd;
+                    }
+                }
+            }
+
+            if (c == ' ' || c == '\n') {
+                // collapse white space; nothing is added after a space, a line break, or at the start
+                char previous = outLength == 0 ? '\n' : out[outLength - 1];
+                if (previous == ' ' || previous == '\n') {
+                    unchanged = false;
+                } else {
+                    if (c != ' ') {
+                        unchanged = false;
+                    }
+                    out[outLength++] = ' ';
+                }
+            } else {
+                out[outLength++] = c;
+            }
+            i++;
+        }
+
+        if (unchanged) {
+            return html;
+        }
+        return new String(out, 0, outLength);
+    }
+
+    /**
+     * Return the index just past the tag or comment starting at {@code start}, or {@code start}
+     * if the '<' doesn't open a tag and so is plain text.
+     */
+    private static int skipTag(String html, int start) {
+        int length = html.length();
+        if (start + 1 >= length) {
+            return start;
+        }
+        char next = html.charAt(start + 1);
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end < 0 ? length : end + 3;
+        }
+        if (!isLetter(next) && next != '/' && next != '!') {
+            return start;
+        }
+        // find the closing '>', ignoring any inside quoted attribute values
+        char quote = 0;
+        for (int i = start + 1; i < length; i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Write the text a tag stands for: a line break for {@code <br>}, an object replacement
+     * character for {@code <img>}, and a blank line around block elements. Each tag is at
+     * least three characters long and writes at most two, so the output stays shorter than
+     * the input.
+     *
+     * @return the new output length
+     */
+    private static int handleTag(String html, int start, char[] out, int outLength) {
+        int nameStart = start + 1;
+        boolean closing = nameStart < html.length() && html.charAt(nameStart) == '/';
+        if (closing) {
+            nameStart++;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < html.length() && (isLetter(html.charAt(nameEnd)) || isDigit(html.charAt(nameEnd)))) {
+            nameEnd++;
+        }
+        int nameLength = nameEnd - nameStart;
+
+        if (!closing && tagIs(html, nameStart, nameLength, "br")) {
+            out[outLength++] = '\n';
+        } else if (!closing && tagIs(html, nameStart, nameLength, "img")) {
+            out[outLength++] = '\ufffc';
+        } else if (isBlockTag(html, nameStart, nameLength)) {
+            // both opening and closing block tags leave a blank line, unless at the very start
+            if (outLength > 0) {
+                int newlines = 0;
+                for (int i = outLength - 1; i >= 0 && out[i] == '\n'; i--) {
+                    newlines++;
+                }
+                for (; newlines < 2; newlines++) {
+                    out[outLength++] = '\n';
+                }
+            }
+        }
+        return outLength;
+    }
+
+    private static boolean isBlockTag(String html, int nameStart, int nameLength) {
+        if (nameLength == 2 && Character.toLowerCase(html.charAt(nameStart)) == 'h') {
+            char level = html.charAt(nameStart + 1);
+            return level >= '1' && level <= '6';
+        }
+        return tagIs(html, nameStart, nameLength, "p")
+                || tagIs(html, nameStart, nameLength, "div")
+                || tagIs(html, nameStart, nameLength, "blockquote")
+                || tagIs(html, nameStart, nameLength, "ul")
+                || tagIs(html, nameStart, nameLength, "li");
+    }
+
+    private static boolean tagIs(String html, int nameStart, int nameLength, String name) {
+        return nameLength == name.length() && html.regionMatches(true, nameStart, name, 0, nameLength);
+    }
+
+    /**
+     * Decode the entity reference between '&' and ';'.
+     *
+     * @return the code point, or -1 if it isn't a known reference
+     */
+    private static int decodeEntity(String html, int start, int end) {
+        if (html.charAt(start) == '#') {
+            int radix = 10;
+            int digitsStart = start + 1;
+            if (digitsStart < end && (html.charAt(digitsStart) == 'x' || html.charAt(digitsStart) == 'X')) {
+                radix = 16;
+                digitsStart++;
+            }
+            if (digitsStart == end || end - digitsStart > 6) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = digitsStart; i < end; i++) {
+                int digit = Character.digit(html.charAt(i), radix);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = value * radix + digit;
+            }
+            return value <= Character.MAX_CODE_POINT ? value : -1;
+        }
+
+        int nameLength = end - start;
+        if (nameLength > MAX_ENTITY_NAME_LENGTH) {
+            return -1;
+        }
+        for (int i = 0; i < ENTITY_NAMES.length; i++) {
+            String name = ENTITY_NAMES[i];
+            if (name.length() == nameLength && html.regionMatches(start, name, 0, nameLength)) {
+                return ENTITY_CHARS[i];
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server answered with an error status, and maybe said when to try again.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Value of {@link #getRetryAfterMillis()} when the server didn't say */
+    public static final long NO_RETRY_AFTER = -1;
+
+    private final int mStatusCode;
+    private final long mRetryAfterMillis;
+
+    /**
+     * Constructs a new {@link HttpStatusException}.
+     *
+     * @param statusCode       of the response
+     * @param retryAfterMillis how long the server asked us to wait before trying again, or
+     *                         {@link #NO_RETRY_AFTER}
+     */
+    public HttpStatusException(int statusCode, long retryAfterMillis) {
+        super("Error response code: " + statusCode);
+        mStatusCode = statusCode;
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * Get how long the server asked us to wait before trying again, or {@link #NO_RETRY_AFTER}.
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    /**
+     * Read a Retry-After header, which holds either a number of seconds or an HTTP date.
+     *
+     * @param value     of the header, or null
+     * @param nowMillis current time, that an HTTP date is relative to
+     * @return the time to wait, or {@link #NO_RETRY_AFTER} if there is no readable value
+     */
+    static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null || value.trim().isEmpty()) {
+            return NO_RETRY_AFTER;
+        }
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds >= 0 ? TimeUnit.SECONDS.toMillis(seconds) : NO_RETRY_AFTER;
+        } catch (NumberFormatException e) {
+            // not seconds, so it should be a date
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(value);
+            return Math.max(0, date.getTime() - nowMillis);
+        } catch (ParseException e) {
+            return NO_RETRY_AFTER;
+        }
+    }
+}
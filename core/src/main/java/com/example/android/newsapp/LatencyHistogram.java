@@ -0,0 +1,134 @@
+package com.example.android.newsapp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in microseconds, laid out like an HDR histogram: every power of two
+ * is split into 16 linear buckets, so any percentile is reported within 1/16 (about 6%) of
+ * the recorded value, from one microsecond up to about a day and a half, in a fixed 544 buckets.
+ * <p>
+ * Recording doesn't allocate or lock, so it is cheap enough to leave on in release builds,
+ * and can be done from any thread. Reads see a recent, not necessarily atomic, view.
+ */
+public class LatencyHistogram {
+
+    // 2^SUB_BUCKET_BITS linear buckets per power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // values below this get a bucket each
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_COUNT;
+
+    /** Largest shift applied to a value, which caps the range at 2^37 us, about a day and a half */
+    private static final int MAX_SHIFT = 32;
+
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKET_COUNT;
+
+    /** Highest value that can be recorded, larger values are counted as this */
+    public static final long MAX_VALUE_MICROS = (2L * SUB_BUCKET_COUNT << MAX_SHIFT) - 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mTotalMicros = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /**
+     * Record a latency measured with {@link System#nanoTime()}.
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Record a latency in microseconds; negative values count as 0.
+     */
+    public void recordMicros(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE_MICROS);
+        mCounts.incrementAndGet(bucketIndex(value));
+        mTotalCount.incrementAndGet();
+        mTotalMicros.addAndGet(value);
+        long max = mMaxMicros.get();
+        while (value > max && !mMaxMicros.compareAndSet(max, value)) {
+            max = mMaxMicros.get();
+        }
+    }
+
+    /**
+     * Get the number of values recorded.
+     */
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    /**
+     * Get the largest value recorded, in microseconds.
+     */
+    public long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    /**
+     * Get the mean of the recorded values in microseconds, 0 if there are none.
+     */
+    public long getMeanMicros() {
+        long count = mTotalCount.get();
+        return count == 0 ? 0 : mTotalMicros.get() / count;
+    }
+
+    /**
+     * Get the value at the given percentile, in microseconds: the upper end of the bucket
+     * holding it, but never more than the largest value recorded.
+     *
+     * @param percentile between 0 and 100
+     * @return the value, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = mTotalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), mMaxMicros.get());
+            }
+        }
+        return mMaxMicros.get();
+    }
+
+    /**
+     * Forget all the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mTotalMicros.set(0);
+        mMaxMicros.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        // the top SUB_BUCKET_BITS + 1 bits of the value pick the bucket
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency of each stage of loading the feed, kept as a {@link LatencyHistogram} per stage and
+ * per query, so slow stages show up as percentiles rather than single log lines.
+ * <p>
+ * Queries are keyed by their parameters without the page and api key, so every page of a
+ * feed shares its histograms. The number of keys is capped; further queries are counted
+ * under {@link #OTHER_KEY}. Recording to a known key doesn't allocate.
+ */
+public class LoadMetrics {
+
+    /** Connecting to the server, including the DNS lookup and TLS handshake */
+    public static final int STAGE_CONNECT = 0;
+    /** From sending the request to receiving the response headers */
+    public static final int STAGE_FIRST_BYTE = 1;
+    /** Waiting for body bytes to arrive, and inflating them */
+    public static final int STAGE_READ = 2;
+    /** Parsing the body into news items, net of the time spent waiting on reads */
+    public static final int STAGE_PARSE = 3;
+    /** From the loader returning its result to the main thread receiving it */
+    public static final int STAGE_HAND_OFF = 4;
+    /** From the main thread receiving the result to the first frame showing it */
+    public static final int STAGE_FIRST_FRAME = 5;
+    /** From the activity being created on a cold start to the first news item being drawn */
+    public static final int STAGE_FIRST_CARD = 6;
+
+    public static final int STAGE_COUNT = 7;
+
+    private static final String[] STAGE_NAMES = {
+            "connect", "first byte", "read", "parse", "hand-off", "first frame", "first card"};
+
+    /** Key for queries beyond the maximum number of keys */
+    public static final String OTHER_KEY = "other";
+
+    private static final int MAX_KEYS = 32;
+
+    // query parameters that don't change what is loaded, so are left out of the key, and the
+    // search terms, which would give every search a key of its own
+    private static final String[] IGNORED_PARAMETERS =
+            {"page", "api-key", "format", "show-fields", "page-size", "from-date", "q"};
+
+    private static LoadMetrics sInstance;
+
+    private final ConcurrentMap<String, LatencyHistogram[]> mHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * Get the metrics shared by the whole app.
+     */
+    public static synchronized LoadMetrics getInstance() {
+        if (sInstance == null) {
+            sInstance = new LoadMetrics();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Record how long a stage took for the given query key.
+     *
+     * @param stage one of the STAGE_ constants
+     */
+    public void record(String key, int stage, long nanos) {
+        histogramsFor(key)[stage].recordNanos(nanos);
+    }
+
+    /**
+     * Get the histogram of a stage for a query key, or null if nothing was recorded for it.
+     */
+    public LatencyHistogram getHistogram(String key, int stage) {
+        LatencyHistogram[] histograms = mHistograms.get(key);
+        return histograms != null ? histograms[stage] : null;
+    }
+
+    /**
+     * Get the query keys that have metrics, sorted.
+     */
+    public List<String> getKeys() {
+        List<String> keys = new ArrayList<>(mHistograms.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Forget all the metrics.
+     */
+    public void reset() {
+        mHistograms.clear();
+    }
+
+    /**
+     * Append a table of the percentiles of every stage, per query key, in milliseconds.
+     */
+    public void dump(StringBuilder out) {
+        for (String key : getKeys()) {
+            out.append(key).append('\n');
+            out.append(String.format(Locale.US, "  %-12s %7s %8s %8s %8s %8s%n",
+                    "stage", "count", "p50", "p90", "p99", "max"));
+            LatencyHistogram[] histograms = mHistograms.get(key);
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                LatencyHistogram histogram = histograms[stage];
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                out.append(String.format(Locale.US, "  %-12s %7d %8.1f %8.1f %8.1f %8.1f%n",
+                        STAGE_NAMES[stage], histogram.getCount(),
+                        histogram.getValueAtPercentile(50) / 1000.0,
+                        histogram.getValueAtPercentile(90) / 1000.0,
+                        histogram.getValueAtPercentile(99) / 1000.0,
+                        histogram.getMaxMicros() / 1000.0));
+            }
+        }
+    }
+
+    /**
+     * Get the name of a stage, for display.
+     */
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Return the key of a query url: its parameters, without those that only affect paging,
+     * authentication or the response format. The start date of an incremental refresh is
+     * dropped too, so incremental refreshes of a feed share one key.
+     */
+    public static String queryKey(String url) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder();
+        int start = queryStart + 1;
+        while (start < url.length()) {
+            int end = url.indexOf('&', start);
+            if (end < 0) {
+                end = url.length();
+            }
+            int equals = url.indexOf('=', start);
+            int nameEnd = equals >= 0 && equals < end ? equals : end;
+            if (end > start && !isIgnored(url, start, nameEnd)) {
+                if (key.length() > 0) {
+                    key.append('&');
+                }
+                key.append(url, start, end);
+            }
+            start = end + 1;
+        }
+        return key.toString();
+    }
+
+    private static boolean isIgnored(String url, int nameStart, int nameEnd) {
+        for (String parameter : IGNORED_PARAMETERS) {
+            if (parameter.length() == nameEnd - nameStart && url.startsWith(parameter, nameStart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private LatencyHistogram[] histogramsFor(String key) {
+        LatencyHistogram[] histograms = mHistograms.get(key);
+        if (histograms != null) {
+            return histograms;
+        }
+        if (mHistograms.size() >= MAX_KEYS) {
+            key = OTHER_KEY;
+            histograms = mHistograms.get(key);
+            if (histograms != null) {
+                return histograms;
+            }
+        }
+        LatencyHistogram[] created = new LatencyHistogram[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            created[i] = new LatencyHistogram();
+        }
+        histograms = mHistograms.putIfAbsent(key, created);
+        return histograms != null ? histograms : created;
+    }
+}
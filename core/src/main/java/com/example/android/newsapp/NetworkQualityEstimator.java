@@ -0,0 +1,139 @@
+package com.example.android.newsapp;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates how good the network is from the requests the app makes anyway: the throughput
+ * of response bodies and the time to the first byte of a response, which stands in for the
+ * round trip time. Both are exponentially weighted moving averages, so the estimate follows
+ * the network as it changes but one odd request doesn't swing it.
+ * <p>
+ * The {@link Quality} moves only once the averages are clearly past a threshold, so a
+ * network that hovers around one doesn't flip the app between fetch profiles.
+ */
+public class NetworkQualityEstimator {
+
+    /**
+     * How good the network is, as far as the requests tell.
+     */
+    public enum Quality {
+        /** Nothing was measured on this network yet */
+        UNKNOWN,
+        POOR,
+        MODERATE,
+        GOOD
+    }
+
+    /** Bodies smaller than this are mostly latency, and don't tell the throughput */
+    static final long MIN_THROUGHPUT_BYTES = 16 * 1024;
+
+    /** Weight of a new sample in the moving averages */
+    static final double SAMPLE_WEIGHT = 0.3;
+
+    // a good network loads a page of the feed in a fraction of a second
+    static final double GOOD_BYTES_PER_SECOND = 250 * 1024;
+    static final long GOOD_RTT_MILLIS = 400;
+    // a poor one takes seconds
+    static final double POOR_BYTES_PER_SECOND = 40 * 1024;
+    static final long POOR_RTT_MILLIS = 1500;
+
+    /** How far past a threshold the averages must be to change the quality */
+    private static final double HYSTERESIS = 0.2;
+
+    private static final double UNMEASURED = -1;
+
+    // guarded by this
+    private double mBytesPerSecond = UNMEASURED;
+    private double mRttMillis = UNMEASURED;
+    private Quality mQuality = Quality.UNKNOWN;
+    private int mSampleCount;
+
+    /**
+     * Add the timings of a response.
+     *
+     * @param bytes          size of the body as received, 0 for a response without one
+     * @param readNanos      time spent reading the body
+     * @param firstByteNanos time from sending the request to the start of the response
+     */
+    public synchronized void record(long bytes, long readNanos, long firstByteNanos) {
+        if (firstByteNanos > 0) {
+            mRttMillis = average(mRttMillis, firstByteNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        if (bytes >= MIN_THROUGHPUT_BYTES && readNanos > 0) {
+            mBytesPerSecond = average(mBytesPerSecond, bytes * (double) TimeUnit.SECONDS.toNanos(1) / readNanos);
+        }
+        mSampleCount++;
+        mQuality = classify();
+    }
+
+    /**
+     * Forget the measurements, when the device moved to another network.
+     *
+     * @param linkBytesPerSecond the bandwidth the new network claims, used as the throughput
+     *                           until a response is measured, or a negative value if unknown
+     */
+    public synchronized void reset(double linkBytesPerSecond) {
+        mBytesPerSecond = linkBytesPerSecond > 0 ? linkBytesPerSecond : UNMEASURED;
+        mRttMillis = UNMEASURED;
+        mSampleCount = 0;
+        mQuality = Quality.UNKNOWN;
+        mQuality = classify();
+    }
+
+    public synchronized Quality getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * Get the average throughput in bytes per second, or a negative value if unknown.
+     */
+    public synchronized double getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * Get the average time to the first byte of a response in milliseconds, or a negative
+     * value if unknown.
+     */
+    public synchronized double getRttMillis() {
+        return mRttMillis;
+    }
+
+    /**
+     * Describe the estimate in one line, for the log.
+     */
+    public synchronized String summary() {
+        return String.format(Locale.US, "network: %s, %s kB/s, first byte after %s ms, %d responses",
+                mQuality.name().toLowerCase(Locale.US),
+                mBytesPerSecond < 0 ? "?" : String.valueOf(Math.round(mBytesPerSecond / 1024)),
+                mRttMillis < 0 ? "?" : String.valueOf(Math.round(mRttMillis)),
+                mSampleCount);
+    }
+
+    private static double average(double average, double sample) {
+        return average < 0 ? sample : average + SAMPLE_WEIGHT * (sample - average);
+    }
+
+    /**
+     * Work out the quality from the averages, holding on to the current one unless they are
+     * clearly past a threshold.
+     */
+    private Quality classify() {
+        if (mBytesPerSecond < 0 && mRttMillis < 0) {
+            return Quality.UNKNOWN;
+        }
+        // leaving a quality takes a larger change than staying in it
+        double poorSlack = mQuality == Quality.POOR ? 1 + HYSTERESIS : 1 - HYSTERESIS;
+        if ((mBytesPerSecond >= 0 && mBytesPerSecond < POOR_BYTES_PER_SECOND * poorSlack)
+                || (mRttMillis >= 0 && mRttMillis > POOR_RTT_MILLIS / poorSlack)) {
+            return Quality.POOR;
+        }
+        double goodSlack = mQuality == Quality.GOOD ? 1 - HYSTERESIS : 1 + HYSTERESIS;
+        if ((mBytesPerSecond < 0 || mBytesPerSecond >= GOOD_BYTES_PER_SECOND * goodSlack)
+                && (mRttMillis < 0 || mRttMillis <= GOOD_RTT_MILLIS / goodSlack)) {
+            return Quality.GOOD;
+        }
+        return Quality.MODERATE;
+    }
+}
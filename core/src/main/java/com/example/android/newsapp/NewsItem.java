@@ -0,0 +1,126 @@
+package com.example.android.newsapp;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A news item of the feed. Thousands of them can be held at once, so they are kept compact:
+ * the category and author repeat across many news items and are shared through the
+ * {@link StringPool}, the publication time is a primitive, and the trailText, which is only
+ * read when a row is bound, is held as UTF-8 bytes and decoded on each read.
+ */
+public class NewsItem {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private String category;
+    private String headline;
+    private byte[] trailText;
+    private String author;
+    private long publicationTime;
+    private String webUrl;
+    private String thumbnailUrl;
+
+    /**
+     * Constructor to create new NewItem Object
+     * @param category category of new item
+     * @param headline headline of article
+     * @param trailText intro to article
+     * @param author name of author
+     * @param publicationTime time article published, in milliseconds since the epoch,
+     *                        or {@link PublicationDates#UNKNOWN}
+     * @param webUrl web url of article on website
+     * @param thumbnailUrl url of image associated with article
+     */
+    public NewsItem (String category, String headline, String trailText, String author, long publicationTime, String webUrl, String thumbnailUrl) {
+        this(category, headline, trailText.isEmpty() ? EMPTY : trailText.getBytes(UTF_8), author,
+                publicationTime, webUrl, thumbnailUrl);
+    }
+
+    /**
+     * Constructor for a news item whose trailText is already UTF-8 encoded, as it is stored.
+     */
+    NewsItem(String category, String headline, byte[] trailText, String author, long publicationTime,
+             String webUrl, String thumbnailUrl) {
+        StringPool pool = StringPool.getShared();
+        this.category = pool.intern(category);
+        this.headline = headline;
+        this.trailText = trailText.length == 0 ? EMPTY : trailText;
+        this.author = pool.intern(author);
+        this.publicationTime = publicationTime;
+        this.webUrl = webUrl;
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    /**
+     * Get the category of news item.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Get the headline of news item.
+     */
+    public String getHeadline() {
+        return headline;
+    }
+
+    /**
+     * Get the trailText of news item. It is decoded on every call, so read it once per bind.
+     */
+    public String getTrailText() {
+        return trailText.length == 0 ? "" : new String(trailText, UTF_8);
+    }
+
+    /**
+     * Get the trailText as UTF-8 bytes, without decoding it. The array must not be modified.
+     */
+    byte[] getTrailTextBytes() {
+        return trailText;
+    }
+
+    /**
+     * Get the author of news item.
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Get the publication time of news item, in milliseconds since the epoch.
+     */
+    public long getPublicationTime() {
+        return publicationTime;
+    }
+
+    /**
+     * Get the web url of news item.
+     */
+    public String getWebUrl() {
+        return webUrl;
+    }
+
+    /**
+     * Get the image url of news item.
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    /**
+     * Whether the other news item shows the same content, compared without decoding the
+     * trailText of either.
+     */
+    public boolean contentEquals(NewsItem other) {
+        return headline.equals(other.headline)
+                && Arrays.equals(trailText, other.trailText)
+                && category.equals(other.category)
+                && author.equals(other.author)
+                && publicationTime == other.publicationTime
+                && webUrl.equals(other.webUrl)
+                && thumbnailUrl.equals(other.thumbnailUrl);
+    }
+}
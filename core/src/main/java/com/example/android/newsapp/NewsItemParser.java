@@ -0,0 +1,143 @@
+package com.example.android.newsapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Pull parser for Guardian search responses. Reads {@code response.results[]} straight from
+ * the stream into {@link NewsItem} objects, so the body is never held as a String or as a
+ * JSON object tree.
+ */
+public class NewsItemParser {
+
+    /**
+     * Parse the news items from a UTF-8 encoded response body.
+     */
+    public ArrayList<NewsItem> parse(InputStream inputStream) throws IOException {
+        return parse(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Parse the news items from a response body.
+     *
+     * @return the news items, or null if the response has no results array.
+     */
+    public ArrayList<NewsItem> parse(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            ArrayList<NewsItem> newsItems = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    newsItems = readResponse(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return newsItems;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private ArrayList<NewsItem> readResponse(JsonReader reader) throws IOException {
+        ArrayList<NewsItem> newsItems = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                newsItems = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    newsItems.add(readResult(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return newsItems;
+    }
+
+    private NewsItem readResult(JsonReader reader) throws IOException {
+        String category = "";
+        String headline = "";
+        String trailTextHtml = "";
+        String author = "";
+        long publicationTime = PublicationDates.UNKNOWN;
+        String webUrl = "";
+        String thumbnailUrl = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sectionName":
+                    category = nextString(reader);
+                    break;
+                case "webPublicationDate":
+                    // parsed here on the loader thread, so binding a row never has to
+                    publicationTime = PublicationDates.parse(nextString(reader));
+                    break;
+                case "webUrl":
+                    webUrl = nextString(reader);
+                    break;
+                case "fields":
+                    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        break;
+                    }
+                    // the "fields" object holds the values requested through show-fields
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "headline":
+                                headline = nextString(reader);
+                                break;
+                            case "trailText":
+                                trailTextHtml = nextString(reader);
+                                break;
+                            case "byline":
+                                author = nextString(reader);
+                                break;
+                            case "thumbnail":
+                                thumbnailUrl = nextString(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // remove html tags from the trailText
+        String trailText = HtmlStripper.strip(trailTextHtml);
+
+        return new NewsItem(category, headline, trailText, author, publicationTime, webUrl, thumbnailUrl);
+    }
+
+    /**
+     * Read the next value as a String, mapping nulls and non-primitive values to an empty String
+     * in the same way as {@code JSONObject.optString} does for missing keys.
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return "";
+    }
+}
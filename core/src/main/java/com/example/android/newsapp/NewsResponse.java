@@ -0,0 +1,109 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+
+/**
+ * Result of a request to the Guardian API: the news items, or a not modified answer to a
+ * conditional request, along with the validators to send on the next request.
+ */
+public class NewsResponse {
+    private ArrayList<NewsItem> newsItems;
+    private boolean notModified;
+    private String eTag;
+    private String lastModified;
+    private long bytesReceived;
+    private long connectNanos;
+    private long firstByteNanos;
+    private long readNanos;
+    private long parseNanos;
+
+    /**
+     * Constructor to create new NewsResponse Object
+     * @param newsItems news items parsed from the body, null when not modified
+     * @param notModified true if the server answered 304 Not Modified
+     * @param eTag value of the ETag header, or null
+     * @param lastModified value of the Last-Modified header, or null
+     * @param bytesReceived number of body bytes read from the network, before decompression
+     */
+    public NewsResponse(ArrayList<NewsItem> newsItems, boolean notModified, String eTag, String lastModified,
+                        long bytesReceived) {
+        this.newsItems = newsItems;
+        this.notModified = notModified;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.bytesReceived = bytesReceived;
+    }
+
+    /**
+     * Get the news items of the response, null if the response was not modified.
+     */
+    public ArrayList<NewsItem> getNewsItems() {
+        return newsItems;
+    }
+
+    /**
+     * Whether the server answered that the stored response is still current.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Get the entity tag of the response.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Get the last modified date of the response.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the number of bytes received for the body.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Set how long each stage of the request took, in nanoseconds.
+     */
+    void setTimings(long connectNanos, long firstByteNanos, long readNanos, long parseNanos) {
+        this.connectNanos = connectNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.readNanos = readNanos;
+        this.parseNanos = parseNanos;
+    }
+
+    /**
+     * Get the time taken to connect, including the DNS lookup and TLS handshake.
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * Get the time from sending the request to receiving the response headers.
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * Get the time spent waiting for body bytes and inflating them, 0 if there was no body.
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    /**
+     * Get the time spent parsing the body, net of the read time, 0 if there was no body.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.android.newsapp;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parsing and display of news item publication dates.
+ * Dates are parsed once, when the news items are loaded, into milliseconds since the epoch.
+ * Display strings are cached per calendar day, so binding a row neither parses nor creates
+ * a formatter, and normally allocates nothing but the copy of the default time zone it
+ * checks the cache against.
+ */
+public final class PublicationDates {
+
+    /** Publication time of a news item whose date is missing or malformed */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final String DISPLAY_PATTERN = "EEEE, dd.MM.yyyy";
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /** Number of days whose display string is cached, must be a power of two */
+    private static final int CACHE_SIZE = 64;
+
+    // Direct mapped cache of display strings by local epoch day, guarded by the class lock
+    private static final long[] sCachedDays = new long[CACHE_SIZE];
+    private static final String[] sCachedStrings = new String[CACHE_SIZE];
+    private static Locale sLocale;
+    private static TimeZone sTimeZone;
+    private static SimpleDateFormat sDisplayFormat;
+
+    private PublicationDates() {
+    }
+
+    /**
+     * Parse a webPublicationDate of the form {@code 2018-05-24T03:43:47Z}, optionally with
+     * fractional seconds, without allocating.
+     *
+     * @return milliseconds since the epoch, or {@link #UNKNOWN} if the date can't be parsed
+     */
+    public static long parse(String date) {
+        if (date == null || date.length() < 20
+                || date.charAt(4) != '-' || date.charAt(7) != '-' || date.charAt(10) != 'T'
+                || date.charAt(13) != ':' || date.charAt(16) != ':'
+                || date.charAt(date.length() - 1) != 'Z') {
+            return UNKNOWN;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+
+        int millis = 0;
+        if (date.length() > 20) {
+            // fractional seconds, ".SSS" followed by the 'Z'
+            if (date.charAt(19) != '.') {
+                return UNKNOWN;
+            }
+            int fractionLength = date.length() - 21;
+            if (fractionLength < 1) {
+                return UNKNOWN;
+            }
+            // every digit must be valid, but only the first three count
+            for (int i = 23; i < date.length() - 1; i++) {
+                char c = date.charAt(i);
+                if (c < '0' || c > '9') {
+                    return UNKNOWN;
+                }
+            }
+            int fraction = digits(date, 20, Math.min(fractionLength, 3));
+            if (fraction < 0) {
+                return UNKNOWN;
+            }
+            for (int i = fractionLength; i < 3; i++) {
+                fraction *= 10;
+            }
+            millis = fraction;
+        }
+
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L + millis;
+    }
+
+    /**
+     * Format a publication time for display, in the default time zone and locale.
+     *
+     * @return the formatted date, or an empty String for {@link #UNKNOWN}
+     */
+    public static synchronized String format(long time) {
+        if (time == UNKNOWN) {
+            return "";
+        }
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        if (sDisplayFormat == null || locale != sLocale || !timeZone.getID().equals(sTimeZone.getID())) {
+            // first use, or the user changed the language or time zone: start over
+            sLocale = locale;
+            sTimeZone = timeZone;
+            sDisplayFormat = new SimpleDateFormat(DISPLAY_PATTERN, locale);
+            sDisplayFormat.setTimeZone(sTimeZone);
+            Arrays.fill(sCachedStrings, null);
+        }
+
+        long localTime = time + sTimeZone.getOffset(time);
+        // floor division, so times before the epoch land on the right day
+        long localDay = localTime >= 0 ? localTime / MILLIS_PER_DAY : (localTime + 1) / MILLIS_PER_DAY - 1;
+        int index = (int) (localDay & (CACHE_SIZE - 1));
+        if (sCachedStrings[index] == null || sCachedDays[index] != localDay) {
+            sCachedDays[index] = localDay;
+            sCachedStrings[index] = sDisplayFormat.format(new Date(time));
+        }
+        return sCachedStrings[index];
+    }
+
+    /**
+     * Parse a run of decimal digits, returning -1 if any character isn't a digit.
+     */
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Number of days in the given month of the proleptic Gregorian calendar.
+     */
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Number of days from 1970-01-01 to the given date of the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        // count years from March, so the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
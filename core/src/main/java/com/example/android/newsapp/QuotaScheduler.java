@@ -0,0 +1,394 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Shares the request rate an API key allows between everything in the app that makes
+ * requests, so they don't run the key into 429 Too Many Requests between them.
+ * <p>
+ * Every key gets a token bucket, and every request takes a token from the bucket of the key
+ * in its url. When tokens are short, requests queue, and the one with the highest
+ * {@link Priority} goes first. Lower priorities may also not take the last tokens of the
+ * bucket, which are kept for the feed the user is looking at, and wait less long before
+ * they are dropped with a {@link QuotaExceededException}: work that can be done later
+ * is done later, and callers retry it when they next run.
+ * <p>
+ * Extra attempts at a request a caller already paid for, such as retries, are
+ * {@linkplain #charge(URL) charged} without waiting, which may overdraw the bucket so
+ * later requests wait for it to refill.
+ */
+public class QuotaScheduler {
+
+    /**
+     * What a request is for, from the most to the least urgent.
+     */
+    public enum Priority {
+        /** The feed the user is waiting to see; may take every token */
+        FOREGROUND(0, TimeUnit.SECONDS.toMillis(10)),
+        /** Content the user will probably want soon, like the next page */
+        PREFETCH(0.2, TimeUnit.SECONDS.toMillis(5)),
+        /** Syncs and downloads nobody is waiting on */
+        BACKGROUND(0.5, TimeUnit.SECONDS.toMillis(30));
+
+        /** Part of the bucket that must be left after the request takes its token */
+        final double reserve;
+        final long defaultMaxWaitMillis;
+
+        Priority(double reserve, long defaultMaxWaitMillis) {
+            this.reserve = reserve;
+            this.defaultMaxWaitMillis = defaultMaxWaitMillis;
+        }
+    }
+
+    /**
+     * A request wasn't made because the key's quota was too short for its priority.
+     */
+    public static class QuotaExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public QuotaExceededException(Priority priority) {
+            super("API quota short, " + priority.name().toLowerCase(Locale.US) + " request dropped");
+        }
+    }
+
+    /**
+     * Source of the time the buckets refill by, replaced by a fake clock in tests.
+     */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /** Burst of requests a key allows */
+    static final int DEFAULT_CAPACITY = 5;
+    /** Sustained rate a key allows; the Guardian's developer keys allow about a call a second */
+    static final double DEFAULT_REFILL_PER_SECOND = 1;
+
+    private final int mCapacity;
+    private final double mRefillPerNano;
+    private final Clock mClock;
+    private final long[] mMaxWaitNanos = new long[Priority.values().length];
+
+    // guarded by itself
+    private final Map<String, Bucket> mBuckets = new HashMap<>();
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private final AtomicLongArray mGrantedCounts = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray mDroppedCounts = new AtomicLongArray(Priority.values().length);
+    private final LatencyHistogram[] mQueueDelays = new LatencyHistogram[Priority.values().length];
+    private final AtomicLong mChargedCount = new AtomicLong();
+    private final AtomicLong mRefundedCount = new AtomicLong();
+
+    /**
+     * Constructs a {@link QuotaScheduler} with the default rate limit.
+     */
+    public QuotaScheduler() {
+        this(DEFAULT_CAPACITY, DEFAULT_REFILL_PER_SECOND, SYSTEM_CLOCK);
+    }
+
+    /**
+     * Constructs a new {@link QuotaScheduler}.
+     *
+     * @param capacity          number of requests a key allows in a burst
+     * @param refillPerSecond   number of requests a key allows per second in the long run
+     * @param clock             to refill the buckets by
+     */
+    public QuotaScheduler(int capacity, double refillPerSecond, Clock clock) {
+        mCapacity = capacity;
+        mRefillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        mClock = clock;
+        for (Priority priority : Priority.values()) {
+            mMaxWaitNanos[priority.ordinal()] = TimeUnit.MILLISECONDS.toNanos(priority.defaultMaxWaitMillis);
+            mQueueDelays[priority.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Set how long requests of the given priority may queue before they are dropped.
+     */
+    void setMaxWaitMillis(Priority priority, long maxWaitMillis) {
+        mMaxWaitNanos[priority.ordinal()] = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Take a token for a request to the given url, waiting for one if need be. Blocks, so
+     * call it on a background thread.
+     *
+     * @param cancellation cancels the wait, may be null
+     * @throws QuotaExceededException if no token came within the wait allowed for the priority
+     * @throws InterruptedIOException if the wait was cancelled
+     */
+    public void acquire(URL url, Priority priority, CancellationToken cancellation) throws IOException {
+        if (!acquire(getBucket(url), priority, mMaxWaitNanos[priority.ordinal()], cancellation)) {
+            mDroppedCounts.incrementAndGet(priority.ordinal());
+            throw new QuotaExceededException(priority);
+        }
+    }
+
+    /**
+     * Take a token for a request to the given url if one is to be had right away.
+     *
+     * @return whether the request may be made
+     */
+    public boolean tryAcquire(URL url, Priority priority) {
+        try {
+            return acquire(getBucket(url), priority, 0, null);
+        } catch (InterruptedIOException e) {
+            // doesn't wait, so isn't interrupted
+            return false;
+        }
+    }
+
+    /**
+     * Take a token for another attempt at a request that already had its own, without
+     * waiting, even if the bucket runs short.
+     */
+    public void charge(URL url) {
+        Bucket bucket = getBucket(url);
+        synchronized (bucket) {
+            bucket.refill(mClock.nanoTime());
+            // never owe more than a full bucket
+            bucket.mTokens = Math.max(bucket.mTokens - 1, -mCapacity);
+        }
+        mChargedCount.incrementAndGet();
+    }
+
+    /**
+     * Give back the token of a request that turned out not to be needed, waking whoever
+     * waits for it.
+     */
+    public void refund(URL url) {
+        Bucket bucket = getBucket(url);
+        synchronized (bucket) {
+            bucket.refill(mClock.nanoTime());
+            bucket.mTokens = Math.min(bucket.mTokens + 1, mCapacity);
+            bucket.notifyAll();
+        }
+        mRefundedCount.incrementAndGet();
+    }
+
+    /**
+     * Get the tokens currently in the bucket of the key in the given url, negative if it
+     * is overdrawn.
+     */
+    public double getAvailableTokens(URL url) {
+        Bucket bucket = getBucket(url);
+        synchronized (bucket) {
+            bucket.refill(mClock.nanoTime());
+            return bucket.mTokens;
+        }
+    }
+
+    public long getGrantedCount(Priority priority) {
+        return mGrantedCounts.get(priority.ordinal());
+    }
+
+    /**
+     * Get the number of requests of the given priority dropped because the quota was short.
+     */
+    public long getDroppedCount(Priority priority) {
+        return mDroppedCounts.get(priority.ordinal());
+    }
+
+    /**
+     * Get the number of extra attempts charged.
+     */
+    public long getChargedCount() {
+        return mChargedCount.get();
+    }
+
+    /**
+     * Get the number of tokens given back.
+     */
+    public long getRefundedCount() {
+        return mRefundedCount.get();
+    }
+
+    /**
+     * Get the time requests of the given priority that got a token waited for it.
+     */
+    public LatencyHistogram getQueueDelay(Priority priority) {
+        return mQueueDelays[priority.ordinal()];
+    }
+
+    /**
+     * Describe the quota use and the queueing delays, for the log.
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder("quota: ");
+        synchronized (mBuckets) {
+            for (Map.Entry<String, Bucket> entry : mBuckets.entrySet()) {
+                Bucket bucket = entry.getValue();
+                synchronized (bucket) {
+                    bucket.refill(mClock.nanoTime());
+                    summary.append(String.format(Locale.US, "%.1f of %d tokens left",
+                            bucket.mTokens, mCapacity));
+                }
+                summary.append(mBuckets.size() > 1 ? " for key " + entry.getKey() + ", " : ", ");
+            }
+        }
+        summary.append(mChargedCount.get()).append(" extra attempts, ")
+                .append(mRefundedCount.get()).append(" refunded\n");
+        for (Priority priority : Priority.values()) {
+            LatencyHistogram delays = mQueueDelays[priority.ordinal()];
+            summary.append(String.format(Locale.US, "%-10s %5d granted %5d dropped, waited p50 %d ms p99 %d ms\n",
+                    priority.name().toLowerCase(Locale.US),
+                    mGrantedCounts.get(priority.ordinal()), mDroppedCounts.get(priority.ordinal()),
+                    TimeUnit.MICROSECONDS.toMillis(delays.getValueAtPercentile(50)),
+                    TimeUnit.MICROSECONDS.toMillis(delays.getValueAtPercentile(99))));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Get the API key a url is sent with, or "" if it has none.
+     */
+    static String apiKey(URL url) {
+        String query = url.getQuery();
+        if (query == null) {
+            return "";
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("api-key=")) {
+                return parameter.substring("api-key=".length());
+            }
+        }
+        return "";
+    }
+
+    private Bucket getBucket(URL url) {
+        String key = apiKey(url);
+        synchronized (mBuckets) {
+            Bucket bucket = mBuckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(mClock.nanoTime());
+                mBuckets.put(key, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    /**
+     * Wait in the bucket's queue until the request is first in line and there are enough
+     * tokens for its priority, then take one.
+     *
+     * @return true if a token was taken, false if none came in time
+     */
+    private boolean acquire(final Bucket bucket, Priority priority, long maxWaitNanos,
+                            CancellationToken cancellation) throws InterruptedIOException {
+        long start = mClock.nanoTime();
+        long deadline = start + maxWaitNanos;
+        // tokens there must be before the request takes its own
+        double needed = 1 + priority.reserve * mCapacity;
+        Ticket ticket = new Ticket(priority, mSequence.getAndIncrement());
+        Runnable wakeUp = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (bucket) {
+                    bucket.notifyAll();
+                }
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addListener(wakeUp);
+        }
+        try {
+            synchronized (bucket) {
+                bucket.mQueue.add(ticket);
+                try {
+                    while (true) {
+                        if (cancellation != null && cancellation.isCanceled()) {
+                            throw new InterruptedIOException("Canceled");
+                        }
+                        long now = mClock.nanoTime();
+                        bucket.refill(now);
+                        boolean first = bucket.mQueue.peek() == ticket;
+                        if (first && bucket.mTokens >= needed) {
+                            bucket.mTokens--;
+                            mGrantedCounts.incrementAndGet(priority.ordinal());
+                            mQueueDelays[priority.ordinal()].recordNanos(now - start);
+                            return true;
+                        }
+                        if (now >= deadline) {
+                            return false;
+                        }
+                        long waitNanos = deadline - now;
+                        if (first) {
+                            // nothing but the refill can change our lot
+                            waitNanos = Math.min(waitNanos, (long) Math.ceil((needed - bucket.mTokens) / mRefillPerNano));
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(bucket, Math.max(waitNanos, 1));
+                    }
+                } finally {
+                    bucket.mQueue.remove(ticket);
+                    // whoever is next in line may go now
+                    bucket.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        } finally {
+            if (cancellation != null) {
+                cancellation.removeListener(wakeUp);
+            }
+        }
+    }
+
+    /**
+     * The tokens of one key and the requests waiting for them.
+     */
+    private class Bucket {
+        // guarded by this
+        double mTokens = mCapacity;
+        long mRefilledAtNanos;
+        final PriorityQueue<Ticket> mQueue = new PriorityQueue<>();
+
+        Bucket(long nowNanos) {
+            mRefilledAtNanos = nowNanos;
+        }
+
+        void refill(long nowNanos) {
+            if (nowNanos > mRefilledAtNanos) {
+                mTokens = Math.min(mCapacity, mTokens + (nowNanos - mRefilledAtNanos) * mRefillPerNano);
+                mRefilledAtNanos = nowNanos;
+            }
+        }
+    }
+
+    /**
+     * A request's place in the queue: higher priorities first, then first come first served.
+     */
+    private static class Ticket implements Comparable<Ticket> {
+        final Priority priority;
+        final long sequence;
+
+        Ticket(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Makes identical requests that overlap in time share one network call. The first caller
+ * starts the call and later callers for the same url and validators wait on it; everyone
+ * gets the same {@link NewsResponse}, so its news items must not be modified.
+ * <p>
+ * Each caller can cancel its wait on its own. The shared call is only cancelled, and its
+ * socket aborted, once every caller waiting on it has cancelled.
+ * <p>
+ * With a {@link QuotaScheduler}, only the caller that starts a call takes a token for it;
+ * callers that join a call in flight don't wait in the quota at all.
+ * <p>
+ * Work that should happen once per response, rather than once per caller, such as recording
+ * its timings, belongs in a {@link Listener}.
+ */
+public class RequestCoalescer {
+
+    /**
+     * Told about every response a shared call gets, once, however many callers wait on it.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread of the shared call, before any caller gets the response.
+         */
+        void onResponse(URL url, NewsResponse response);
+    }
+
+    private final GuardianClient mClient;
+    private final QuotaScheduler mQuota;
+    private final Listener mListener;
+
+    /** Runs the shared calls, so no caller's thread is tied to a call others wait on */
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RequestCoalescer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // calls in flight, by request key; guarded by itself
+    private final Map<String, SharedCall> mInFlight = new HashMap<>();
+
+    /**
+     * Constructs a new {@link RequestCoalescer} that makes its calls without a quota.
+     *
+     * @param client that makes the network calls
+     */
+    public RequestCoalescer(GuardianClient client) {
+        this(client, null);
+    }
+
+    /**
+     * Constructs a new {@link RequestCoalescer}.
+     *
+     * @param client that makes the network calls
+     * @param quota  the calls take their tokens from, may be null
+     */
+    public RequestCoalescer(GuardianClient client, QuotaScheduler quota) {
+        this(client, quota, null);
+    }
+
+    /**
+     * Constructs a new {@link RequestCoalescer}.
+     *
+     * @param client   that makes the network calls
+     * @param quota    the calls take their tokens from, may be null
+     * @param listener told about each response once, may be null
+     */
+    public RequestCoalescer(GuardianClient client, QuotaScheduler quota, Listener listener) {
+        mClient = client;
+        mQuota = quota;
+        mListener = listener;
+    }
+
+    /**
+     * Request the given URL in the foreground, joining an identical request already in
+     * flight if there is one.
+     *
+     * @see #fetch(URL, String, String, CancellationToken, QuotaScheduler.Priority)
+     */
+    public NewsResponse fetch(URL url, String eTag, String lastModified, CancellationToken cancellation)
+            throws IOException {
+        return fetch(url, eTag, lastModified, cancellation, QuotaScheduler.Priority.FOREGROUND);
+    }
+
+    /**
+     * Request the given URL, joining an identical request already in flight if there is one.
+     * A new call waits its turn in the quota first. Blocks until the response arrives or the
+     * token is cancelled.
+     *
+     * @param eTag         entity tag of the stored response, or null
+     * @param lastModified last modified date of the stored response, or null
+     * @param cancellation cancels this caller's request, may be null
+     * @param priority     of a new call in the quota
+     * @throws QuotaScheduler.QuotaExceededException if the quota was too short to start a call
+     * @throws InterruptedIOException                if the request was cancelled
+     * @throws IOException                           if the request fails or the server answers
+     *                                               with an error
+     */
+    public NewsResponse fetch(URL url, String eTag, String lastModified, CancellationToken cancellation,
+                              QuotaScheduler.Priority priority) throws IOException {
+        String key = url.toString() + '\n' + eTag + '\n' + lastModified;
+        Waiter joined = join(key, url, null);
+        if (joined == null) {
+            if (mQuota != null) {
+                mQuota.acquire(url, priority, cancellation);
+            }
+            GuardianClient.Call call = mClient.newCall(url, eTag, lastModified);
+            joined = join(key, url, call);
+            if (joined.mSharedCall.mCall != call && mQuota != null) {
+                // an identical call started while we waited for the token
+                mQuota.refund(url);
+            }
+        }
+        final Waiter waiter = joined;
+        Runnable cancelListener = new Runnable() {
+            @Override
+            public void run() {
+                waiter.cancel();
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addListener(cancelListener);
+        }
+        try {
+            return waiter.await();
+        } finally {
+            if (cancellation != null) {
+                cancellation.removeListener(cancelListener);
+            }
+        }
+    }
+
+    /**
+     * Get the number of distinct calls in flight.
+     */
+    public int getInFlightCount() {
+        synchronized (mInFlight) {
+            return mInFlight.size();
+        }
+    }
+
+    /**
+     * Join the call in flight for the key, or start the given call if there is none.
+     *
+     * @param call to start, or null to only join
+     * @return the caller's wait, or null if there was no call to join and none to start
+     */
+    private Waiter join(String key, URL url, GuardianClient.Call call) {
+        synchronized (mInFlight) {
+            SharedCall sharedCall = mInFlight.get(key);
+            if (sharedCall == null) {
+                if (call == null) {
+                    return null;
+                }
+                sharedCall = new SharedCall(key, url, call);
+                mInFlight.put(key, sharedCall);
+                mExecutor.execute(sharedCall);
+            }
+            Waiter waiter = new Waiter(sharedCall);
+            sharedCall.mWaiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    /**
+     * One network call and the callers waiting on it.
+     */
+    private class SharedCall implements Runnable {
+        private final String mKey;
+        private final URL mUrl;
+        private final GuardianClient.Call mCall;
+        // guarded by mInFlight
+        private final List<Waiter> mWaiters = new ArrayList<>();
+
+        SharedCall(String key, URL url, GuardianClient.Call call) {
+            mKey = key;
+            mUrl = url;
+            mCall = call;
+        }
+
+        @Override
+        public void run() {
+            NewsResponse response = null;
+            IOException error = null;
+            try {
+                response = mCall.execute();
+                if (mListener != null) {
+                    mListener.onResponse(mUrl, response);
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            }
+
+            List<Waiter> waiters;
+            synchronized (mInFlight) {
+                // later callers start a fresh call
+                if (mInFlight.get(mKey) == this) {
+                    mInFlight.remove(mKey);
+                }
+                waiters = new ArrayList<>(mWaiters);
+                mWaiters.clear();
+            }
+            for (Waiter waiter : waiters) {
+                waiter.complete(response, error);
+            }
+        }
+
+        /**
+         * Called, with mInFlight held, when a waiter gives up.
+         *
+         * @return true if that was the last waiter, so the call should be cancelled
+         */
+        boolean removeWaiter(Waiter waiter) {
+            mWaiters.remove(waiter);
+            if (!mWaiters.isEmpty()) {
+                return false;
+            }
+            // nobody wants the response any more
+            if (mInFlight.get(mKey) == this) {
+                mInFlight.remove(mKey);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One caller's wait on a shared call.
+     */
+    private class Waiter {
+        private final SharedCall mSharedCall;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile boolean mCanceled;
+        private volatile NewsResponse mResponse;
+        private volatile IOException mError;
+
+        Waiter(SharedCall sharedCall) {
+            mSharedCall = sharedCall;
+        }
+
+        NewsResponse await() throws IOException {
+            try {
+                mDone.await();
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted");
+            }
+            if (mCanceled) {
+                throw new InterruptedIOException("Canceled");
+            }
+            if (mError != null) {
+                // each caller gets its own exception, with the shared call's failure as the cause
+                IOException error = mError instanceof InterruptedIOException
+                        ? new InterruptedIOException(mError.getMessage())
+                        : new IOException(mError.getMessage());
+                error.initCause(mError);
+                throw error;
+            }
+            return mResponse;
+        }
+
+        void complete(NewsResponse response, IOException error) {
+            mResponse = response;
+            mError = error;
+            mDone.countDown();
+        }
+
+        void cancel() {
+            boolean lastWaiter;
+            synchronized (mInFlight) {
+                if (mCanceled || mDone.getCount() == 0) {
+                    return;
+                }
+                mCanceled = true;
+                lastWaiter = mSharedCall.removeWaiter(this);
+            }
+            mDone.countDown();
+            if (lastWaiter) {
+                mSharedCall.mCall.cancel();
+            }
+        }
+    }
+}
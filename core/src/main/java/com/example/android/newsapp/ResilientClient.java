@@ -0,0 +1,454 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link GuardianClient} that rides out a flaky network and a struggling API:
+ * <ul>
+ * <li>failed requests are retried as the {@link RetryPolicy} says, honouring Retry-After;</li>
+ * <li>with hedging on, a request that takes longer than most do is sent a second time, and
+ * whichever answers first is used, once enough requests were timed to know what most do;</li>
+ * <li>after repeated failures the {@link CircuitBreaker} opens and requests fail fast with
+ * {@link CircuitBreaker.OpenException}, so callers serve their cached data instead.</li>
+ * </ul>
+ * Calls stay cancellable: cancelling one aborts whichever attempts are running, and a wait
+ * before a retry.
+ * <p>
+ * With a {@link QuotaScheduler}, callers take the token for a request before they make it,
+ * and the retries the client makes on top are charged to the quota. A hedge is only sent
+ * when the quota has a token to spare for it.
+ */
+public class ResilientClient extends GuardianClient {
+
+    /**
+     * Tells the time, so tests can move it on.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /** Failures in a row that open the circuit */
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** Percentile of the request latency past which a request is hedged */
+    static final double HEDGE_PERCENTILE = 95;
+    /** Requests timed before hedging starts, so the percentile means something */
+    static final int MIN_HEDGE_SAMPLES = 20;
+
+    private final RetryPolicy mRetryPolicy;
+    private final CircuitBreaker mCircuitBreaker;
+    private final boolean mHedging;
+    private final Clock mClock;
+    private final QuotaScheduler mQuota;
+
+    // latency of the attempts that succeeded
+    private final LatencyHistogram mLatencies = new LatencyHistogram();
+    private final AtomicLong mRetryCount = new AtomicLong();
+    private final AtomicLong mHedgeCount = new AtomicLong();
+    private final AtomicLong mHedgeWinCount = new AtomicLong();
+    private final AtomicLong mHedgeDeniedCount = new AtomicLong();
+    private final AtomicLong mShortCircuitCount = new AtomicLong();
+
+    /** Runs the attempts of hedged calls, which race each other */
+    private final ExecutorService mHedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ResilientClient");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Constructs a {@link ResilientClient} with the default retry policy and circuit breaker,
+     * and hedging on.
+     *
+     * @param parser used to read the news items from response bodies
+     * @param quota  the retries and hedges are charged to, may be null
+     */
+    public ResilientClient(NewsItemParser parser, QuotaScheduler quota) {
+        this(parser, new RetryPolicy(), new CircuitBreaker(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS),
+                true, SYSTEM_CLOCK, quota);
+    }
+
+    /**
+     * Constructs a new {@link ResilientClient}.
+     *
+     * @param parser         used to read the news items from response bodies
+     * @param retryPolicy    decides which failures are retried, and when
+     * @param circuitBreaker tracks the health of the API
+     * @param hedging        whether slow requests are sent a second time
+     * @param clock          the circuit breaker goes by
+     * @param quota          the retries and hedges are charged to, may be null
+     */
+    public ResilientClient(NewsItemParser parser, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker,
+                           boolean hedging, Clock clock, QuotaScheduler quota) {
+        super(parser);
+        mRetryPolicy = retryPolicy;
+        mCircuitBreaker = circuitBreaker;
+        mHedging = hedging;
+        mClock = clock;
+        mQuota = quota;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    /**
+     * Whether requests currently go out, rather than failing fast.
+     */
+    public boolean isHealthy() {
+        return mCircuitBreaker.getState(mClock.currentTimeMillis()) == CircuitBreaker.State.CLOSED;
+    }
+
+    public long getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    /**
+     * Get the number of second requests sent for slow ones.
+     */
+    public long getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    /**
+     * Get the number of second requests that answered before the first.
+     */
+    public long getHedgeWinCount() {
+        return mHedgeWinCount.get();
+    }
+
+    /**
+     * Get the number of slow requests not hedged because the quota was short.
+     */
+    public long getHedgeDeniedCount() {
+        return mHedgeDeniedCount.get();
+    }
+
+    /**
+     * Get the number of requests failed fast because the circuit was open.
+     */
+    public long getShortCircuitCount() {
+        return mShortCircuitCount.get();
+    }
+
+    /**
+     * Describe the counters in one line, for the log.
+     */
+    public String summary() {
+        return String.format(Locale.US, "requests: %d retries | %d hedged, %d won by the hedge, "
+                        + "%d denied by the quota | %d failed fast | circuit %s",
+                mRetryCount.get(), mHedgeCount.get(), mHedgeWinCount.get(), mHedgeDeniedCount.get(),
+                mShortCircuitCount.get(), mCircuitBreaker.getState(mClock.currentTimeMillis()));
+    }
+
+    @Override
+    public Call newCall(URL url, String eTag, String lastModified) {
+        return new ResilientCall(url, eTag, lastModified);
+    }
+
+    /**
+     * Request the given URL unconditionally and read its body with the given reader, with
+     * retries and the circuit breaker, but without hedging: these requests are large.
+     *
+     * @throws CircuitBreaker.OpenException if the circuit is open
+     * @throws HttpStatusException          if the server answers with an error
+     * @throws IOException                  if the request fails
+     */
+    @Override
+    public <T> T fetchBody(URL url, BodyReader<T> reader) throws IOException {
+        for (int attempts = 1; ; attempts++) {
+            allowRequest();
+            chargeRetry(url, attempts);
+            try {
+                T body = super.fetchBody(url, reader);
+                mCircuitBreaker.recordSuccess();
+                return body;
+            } catch (IOException e) {
+                recordFailure(e);
+                long delayMillis = mRetryPolicy.retryDelayMillis(attempts, e);
+                if (delayMillis < 0 || !isHealthy()) {
+                    throw e;
+                }
+                mRetryCount.incrementAndGet();
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted");
+                }
+            }
+        }
+    }
+
+    private void allowRequest() throws CircuitBreaker.OpenException {
+        if (!mCircuitBreaker.allowRequest(mClock.currentTimeMillis())) {
+            mShortCircuitCount.incrementAndGet();
+            throw new CircuitBreaker.OpenException();
+        }
+    }
+
+    /**
+     * Charge a retry to the quota; the caller paid for the first attempt.
+     */
+    private void chargeRetry(URL url, int attempts) {
+        if (mQuota != null && attempts > 1) {
+            mQuota.charge(url);
+        }
+    }
+
+    /**
+     * Tell the circuit breaker what the failure says about the health of the API.
+     */
+    private void recordFailure(IOException error) {
+        if (RetryPolicy.isCanceled(error)) {
+            mCircuitBreaker.recordAbandoned();
+        } else if (RetryPolicy.isRetryable(error)) {
+            mCircuitBreaker.recordFailure(mClock.currentTimeMillis());
+        } else {
+            // the API answered, with something that is the request's fault
+            mCircuitBreaker.recordSuccess();
+        }
+    }
+
+    /**
+     * How long to let an attempt run before hedging it, or -1 not to hedge.
+     */
+    private long hedgeDelayMillis() {
+        if (!mHedging || mLatencies.getCount() < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        return Math.max(1, TimeUnit.MICROSECONDS.toMillis(mLatencies.getValueAtPercentile(HEDGE_PERCENTILE)));
+    }
+
+    /**
+     * The outcome of one attempt of a hedged call.
+     */
+    private static class Outcome {
+        final Call attempt;
+        final NewsResponse response;
+        final IOException error;
+
+        Outcome(Call attempt, NewsResponse response, IOException error) {
+            this.attempt = attempt;
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A request made with retries and hedging, in attempts that are each a plain call.
+     */
+    private class ResilientCall extends Call {
+        private final URL mUrl;
+        private final String mETag;
+        private final String mLastModified;
+
+        // guarded by this
+        private boolean mCanceled;
+        private final List<Call> mRunningAttempts = new ArrayList<>(2);
+
+        ResilientCall(URL url, String eTag, String lastModified) {
+            super(url, eTag, lastModified);
+            mUrl = url;
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        @Override
+        public NewsResponse execute() throws IOException {
+            for (int attempts = 1; ; attempts++) {
+                throwIfCanceled();
+                allowRequest();
+                chargeRetry(mUrl, attempts);
+                try {
+                    NewsResponse response = attempt();
+                    mCircuitBreaker.recordSuccess();
+                    return response;
+                } catch (IOException e) {
+                    if (isCanceled()) {
+                        mCircuitBreaker.recordAbandoned();
+                        InterruptedIOException canceled = new InterruptedIOException("Canceled");
+                        canceled.initCause(e);
+                        throw canceled;
+                    }
+                    recordFailure(e);
+                    long delayMillis = mRetryPolicy.retryDelayMillis(attempts, e);
+                    // once the circuit opened a retry would only fail fast, so report why it opened
+                    if (delayMillis < 0 || !isHealthy()) {
+                        throw e;
+                    }
+                    mRetryCount.incrementAndGet();
+                    waitBeforeRetry(delayMillis);
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            List<Call> attempts;
+            synchronized (this) {
+                if (mCanceled) {
+                    return;
+                }
+                mCanceled = true;
+                attempts = new ArrayList<>(mRunningAttempts);
+                // wakes up a wait before a retry
+                notifyAll();
+            }
+            for (Call attempt : attempts) {
+                attempt.cancel();
+            }
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return mCanceled;
+        }
+
+        private void throwIfCanceled() throws InterruptedIOException {
+            if (isCanceled()) {
+                throw new InterruptedIOException("Canceled");
+            }
+        }
+
+        /**
+         * Make one attempt, hedged if it runs long.
+         */
+        private NewsResponse attempt() throws IOException {
+            long hedgeDelayMillis = hedgeDelayMillis();
+            if (hedgeDelayMillis < 0) {
+                return runAttempt(startAttempt());
+            }
+
+            BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+            Call first = startAttempt();
+            raceAttempt(first, outcomes);
+            Call hedge = null;
+            try {
+                Outcome outcome = outcomes.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+                int running = 1;
+                if (outcome == null && mQuota != null && !mQuota.tryAcquire(mUrl, QuotaScheduler.Priority.PREFETCH)) {
+                    // a second request could cost a more urgent one its token
+                    mHedgeDeniedCount.incrementAndGet();
+                    outcome = outcomes.take();
+                }
+                if (outcome == null) {
+                    // slower than most requests, chances are a second one answers first
+                    hedge = startAttempt();
+                    mHedgeCount.incrementAndGet();
+                    raceAttempt(hedge, outcomes);
+                    running = 2;
+                    outcome = outcomes.take();
+                }
+                while (true) {
+                    running--;
+                    if (outcome.response != null) {
+                        if (outcome.attempt == hedge) {
+                            mHedgeWinCount.incrementAndGet();
+                        }
+                        return outcome.response;
+                    }
+                    if (running == 0) {
+                        throw outcome.error;
+                    }
+                    outcome = outcomes.take();
+                }
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted");
+            } finally {
+                // the loser is of no use any more
+                first.cancel();
+                if (hedge != null) {
+                    hedge.cancel();
+                }
+            }
+        }
+
+        private Call startAttempt() throws InterruptedIOException {
+            Call attempt = ResilientClient.super.newCall(mUrl, mETag, mLastModified);
+            synchronized (this) {
+                if (mCanceled) {
+                    throw new InterruptedIOException("Canceled");
+                }
+                mRunningAttempts.add(attempt);
+            }
+            return attempt;
+        }
+
+        /**
+         * Run the attempt on the calling thread, timing it if it succeeds.
+         */
+        private NewsResponse runAttempt(Call attempt) throws IOException {
+            try {
+                long start = System.nanoTime();
+                NewsResponse response = attempt.execute();
+                mLatencies.recordNanos(System.nanoTime() - start);
+                return response;
+            } finally {
+                synchronized (this) {
+                    mRunningAttempts.remove(attempt);
+                }
+            }
+        }
+
+        /**
+         * Run the attempt in the background, adding its outcome to the queue.
+         */
+        private void raceAttempt(final Call attempt, final BlockingQueue<Outcome> outcomes) {
+            mHedgeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        outcomes.add(new Outcome(attempt, runAttempt(attempt), null));
+                    } catch (IOException e) {
+                        outcomes.add(new Outcome(attempt, null, e));
+                    } catch (RuntimeException e) {
+                        outcomes.add(new Outcome(attempt, null, new IOException(e)));
+                    }
+                }
+            });
+        }
+
+        private synchronized void waitBeforeRetry(long delayMillis) throws InterruptedIOException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            try {
+                while (!mCanceled) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                mCanceled = true;
+                Thread.currentThread().interrupt();
+            }
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a failed request is worth another attempt, and how long to wait first.
+ * <p>
+ * Network failures and server errors (500, 502, 503 and 504) are retried with capped
+ * exponential backoff: the cap doubles with every attempt, and the wait is a random time
+ * between half the cap and the cap, so clients that failed together don't all come back
+ * together. 429 Too Many Requests means we are the problem, so it backs off from a longer
+ * base. When the server sends Retry-After, that is how long we wait, unless it is longer
+ * than we are willing to wait at all. Other error statuses won't go away on their own and
+ * aren't retried.
+ */
+public class RetryPolicy {
+
+    /** Attempts made at most, the first one included */
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    static final long DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(8);
+    /** Longest Retry-After we wait for; a later one fails the request instead */
+    static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** How much longer than other failures a rate limited request backs off */
+    private static final int RATE_LIMITED_FACTOR = 4;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final long mMaxRetryAfterMillis;
+    private final Random mRandom;
+
+    /**
+     * Constructs a {@link RetryPolicy} with the default limits.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                DEFAULT_MAX_RETRY_AFTER_MILLIS, new Random());
+    }
+
+    /**
+     * Constructs a new {@link RetryPolicy}.
+     *
+     * @param maxAttempts         attempts made at most, the first one included
+     * @param baseDelayMillis     cap of the wait before the first retry
+     * @param maxDelayMillis      cap of the wait before any retry
+     * @param maxRetryAfterMillis longest Retry-After the server may ask for and still be retried
+     * @param random              source of the jitter
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long maxRetryAfterMillis,
+                       Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mMaxRetryAfterMillis = maxRetryAfterMillis;
+        mRandom = random;
+    }
+
+    /**
+     * Return how long to wait before attempting the request again, or -1 to give up.
+     *
+     * @param attempts number of attempts made so far, 1 after the first
+     * @param error    the last attempt failed with
+     */
+    public long retryDelayMillis(int attempts, IOException error) {
+        if (attempts >= mMaxAttempts || !isRetryable(error)) {
+            return -1;
+        }
+        long baseDelayMillis = mBaseDelayMillis;
+        if (error instanceof HttpStatusException) {
+            HttpStatusException statusException = (HttpStatusException) error;
+            long retryAfterMillis = statusException.getRetryAfterMillis();
+            if (retryAfterMillis != HttpStatusException.NO_RETRY_AFTER) {
+                return retryAfterMillis <= mMaxRetryAfterMillis ? retryAfterMillis : -1;
+            }
+            if (statusException.getStatusCode() == 429) {
+                baseDelayMillis *= RATE_LIMITED_FACTOR;
+            }
+        }
+        return backoffMillis(attempts, baseDelayMillis);
+    }
+
+    /**
+     * Capped exponential backoff with jitter: between half the cap and the cap.
+     */
+    private long backoffMillis(int attempts, long baseDelayMillis) {
+        long capMillis = mMaxDelayMillis;
+        // past 30 doublings any base is over the cap
+        if (attempts <= 30) {
+            capMillis = Math.min(capMillis, baseDelayMillis << (attempts - 1));
+        }
+        long halfCapMillis = capMillis / 2;
+        return halfCapMillis + (long) (mRandom.nextDouble() * (capMillis - halfCapMillis));
+    }
+
+    /**
+     * Whether a request failing like this may succeed if attempted again.
+     */
+    public static boolean isRetryable(IOException error) {
+        if (isCanceled(error) || error instanceof CircuitBreaker.OpenException) {
+            return false;
+        }
+        if (error instanceof HttpStatusException) {
+            int statusCode = ((HttpStatusException) error).getStatusCode();
+            return statusCode == 429 || statusCode == 500 || statusCode == 502 || statusCode == 503
+                    || statusCode == 504;
+        }
+        // the connection failed, timed out or broke off
+        return true;
+    }
+
+    /**
+     * Whether the request failed because it was cancelled, rather than timing out, which is
+     * also reported as an {@link InterruptedIOException}.
+     */
+    static boolean isCanceled(IOException error) {
+        return error instanceof InterruptedIOException && !(error instanceof SocketTimeoutException);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Least recently used cache of search results, keyed by the normalized query, so "Brexit "
+ * and "brexit" share an entry.
+ * <p>
+ * A query can also be answered from the results of a shorter query it starts with, e.g.
+ * "brexit vo" from "brexit": a story that matches the longer query is also a match for the
+ * shorter one, so filtering the shorter query's results by the words of the longer one
+ * gives results straight away, while the request for the longer query is still in flight.
+ */
+public class SearchResultCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 32;
+    static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final long mMaxAgeMillis;
+
+    // guarded by this
+    private final LinkedHashMap<String, CachedResult> mEntries;
+
+    private static final class CachedResult {
+        final List<NewsItem> mNewsItems;
+        final long mSavedAt;
+        // the sorted words of each news item, made when a longer query is first narrowed
+        // down from the entry and kept for the following keystrokes
+        String[][] mWords;
+
+        CachedResult(List<NewsItem> newsItems, long savedAt) {
+            mNewsItems = newsItems;
+            mSavedAt = savedAt;
+        }
+    }
+
+    public SearchResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Constructs a new {@link SearchResultCache}.
+     *
+     * @param maxEntries   number of queries kept, the least recently used are evicted beyond it
+     * @param maxAgeMillis age after which an entry no longer answers its own query, though it
+     *                     still answers the longer queries until it is evicted
+     */
+    SearchResultCache(final int maxEntries, long maxAgeMillis) {
+        mMaxAgeMillis = maxAgeMillis;
+        mEntries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Normalize a query as typed into the key of its results: the words in lower case,
+     * without accents, separated by single spaces.
+     */
+    public static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder();
+        for (String word : ArticleSearchIndex.tokenize(query)) {
+            if (normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            normalized.append(word);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Return the results cached for the normalized query, or null if there are none or
+     * they are too old to show without asking again.
+     */
+    public synchronized List<NewsItem> get(String normalizedQuery) {
+        CachedResult entry = mEntries.get(normalizedQuery);
+        if (entry == null || System.currentTimeMillis() - entry.mSavedAt > mMaxAgeMillis) {
+            return null;
+        }
+        return entry.mNewsItems;
+    }
+
+    /**
+     * Return the results of the longest shorter query the normalized query starts with,
+     * narrowed down to the news items that match every word of the query, or null if no
+     * shorter query is cached.
+     */
+    public synchronized List<NewsItem> getFromPrefix(String normalizedQuery) {
+        for (int length = normalizedQuery.length() - 1; length > 0; length--) {
+            if (normalizedQuery.charAt(length - 1) == ' ') {
+                // same words as the query one letter shorter
+                continue;
+            }
+            CachedResult entry = mEntries.get(normalizedQuery.substring(0, length));
+            if (entry != null) {
+                return filter(entry, ArticleSearchIndex.tokenize(normalizedQuery));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store the results of the normalized query.
+     */
+    public synchronized void put(String normalizedQuery, List<NewsItem> newsItems) {
+        mEntries.put(normalizedQuery, new CachedResult(new ArrayList<>(newsItems), System.currentTimeMillis()));
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Keep the news items in which every word is the start of a word of the headline, trail
+     * text, byline or section.
+     */
+    private static List<NewsItem> filter(CachedResult entry, List<String> words) {
+        if (entry.mWords == null) {
+            entry.mWords = new String[entry.mNewsItems.size()][];
+            for (int i = 0; i < entry.mWords.length; i++) {
+                entry.mWords[i] = sortedWords(entry.mNewsItems.get(i));
+            }
+        }
+        List<NewsItem> matches = new ArrayList<>();
+        for (int i = 0; i < entry.mWords.length; i++) {
+            if (startsAllWords(entry.mWords[i], words)) {
+                matches.add(entry.mNewsItems.get(i));
+            }
+        }
+        return matches;
+    }
+
+    private static String[] sortedWords(NewsItem newsItem) {
+        TreeSet<String> words = new TreeSet<>();
+        words.addAll(ArticleSearchIndex.tokenize(newsItem.getHeadline()));
+        words.addAll(ArticleSearchIndex.tokenize(newsItem.getTrailText()));
+        words.addAll(ArticleSearchIndex.tokenize(newsItem.getAuthor()));
+        words.addAll(ArticleSearchIndex.tokenize(newsItem.getCategory()));
+        return words.toArray(new String[words.size()]);
+    }
+
+    private static boolean startsAllWords(String[] sortedWords, List<String> words) {
+        for (String word : words) {
+            // the words a word is the start of sort right after it
+            int index = Arrays.binarySearch(sortedWords, word);
+            if (index < 0 && (-index - 1 == sortedWords.length || !sortedWords[-index - 1].startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.android.newsapp;
+
+import java.util.HashMap;
+
+/**
+ * Canonical instances of strings that repeat across many news items, such as section names
+ * and bylines, so each distinct value is held once however many news items carry it.
+ * Unlike {@link String#intern()} the pool is bounded: once it is full, new values are
+ * returned as they are rather than pooled, so unusual input can't grow it without limit.
+ */
+public final class StringPool {
+
+    /** Distinct values pooled at most, far more than the sections and regular bylines */
+    static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final StringPool sShared = new StringPool(DEFAULT_MAX_SIZE);
+
+    private final int mMaxSize;
+    private final HashMap<String, String> mStrings = new HashMap<>();
+
+    /**
+     * Get the pool shared by all news items.
+     */
+    public static StringPool getShared() {
+        return sShared;
+    }
+
+    /**
+     * Constructs a new {@link StringPool}.
+     *
+     * @param maxSize number of distinct values pooled at most
+     */
+    public StringPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Return the pooled instance equal to the given value, pooling the value if it is new
+     * and there is room.
+     */
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = mStrings.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (mStrings.size() < mMaxSize) {
+            mStrings.put(value, value);
+        }
+        return value;
+    }
+
+    /**
+     * Get the number of distinct values pooled.
+     */
+    public synchronized int size() {
+        return mStrings.size();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link ArticleBodyStore} keeps article bodies compressed and within its size.
+ */
+public class ArticleBodyStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("articles");
+    }
+
+    @Test
+    public void put_thenGet_returnsTheBody() throws IOException {
+        ArticleBodyStore store = new ArticleBodyStore(directory, 1024 * 1024);
+        String body = "<p>\u201cWe will not back down,\u201d says union leader.</p>";
+
+        assertFalse(store.contains("https://www.theguardian.com/a"));
+        assertNull(store.get("https://www.theguardian.com/a"));
+        store.put("https://www.theguardian.com/a", body);
+
+        assertTrue(store.contains("https://www.theguardian.com/a"));
+        assertEquals(body, store.get("https://www.theguardian.com/a"));
+    }
+
+    @Test
+    public void put_compressesTheBody() throws IOException {
+        ArticleBodyStore store = new ArticleBodyStore(directory, 1024 * 1024);
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 20000) {
+            body.append("<p>Paragraph ").append(body.length()).append(" of the article.</p>");
+        }
+        store.put("https://www.theguardian.com/a", body.toString());
+
+        assertTrue(store.size() < body.length() / 4);
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsed() throws IOException {
+        // incompressible bodies of over 3kB each, in a store that holds two of them
+        ArticleBodyStore store = new ArticleBodyStore(directory, 8 * 1024);
+        store.put("a", randomBody(1));
+        ageFiles(1000);
+        store.put("b", randomBody(2));
+        ageFiles(2000);
+        // reading a makes b the least recently used
+        store.get("a");
+
+        store.put("c", randomBody(3));
+
+        assertTrue(store.contains("a"));
+        assertFalse(store.contains("b"));
+        assertTrue(store.contains("c"));
+        assertTrue(store.size() <= 8 * 1024);
+    }
+
+    @Test
+    public void contains_findsArticlesSavedBeforeTheStoreWasCreated() throws IOException {
+        new ArticleBodyStore(directory, 1024 * 1024).put("https://www.theguardian.com/a", "<p>Saved</p>");
+
+        ArticleBodyStore store = new ArticleBodyStore(directory, 1024 * 1024);
+        store.index();
+        assertTrue(store.contains("https://www.theguardian.com/a"));
+        assertFalse(store.contains("https://www.theguardian.com/b"));
+        store.put("https://www.theguardian.com/b", "<p>Saved later</p>");
+        assertTrue(store.contains("https://www.theguardian.com/b"));
+    }
+
+    /**
+     * Backdate the files written since the last call, as files written in the same second
+     * may otherwise share a modification time.
+     */
+    private void ageFiles(long time) {
+        for (File file : directory.listFiles()) {
+            if (file.lastModified() > time) {
+                assertTrue(file.setLastModified(time));
+            }
+        }
+    }
+
+    private static String randomBody(long seed) {
+        Random random = new Random(seed);
+        char[] chars = new char[4000];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('!' + random.nextInt(90));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link ArticleSearchIndex} finds news items by the start of their words, ranks
+ * them by where the words appear, and keeps up with news items that change.
+ */
+public class ArticleSearchIndexTest {
+
+    private static final NewsItem ELECTION = newsItem("1", "Politics", "Election results come in overnight",
+            "Turnout was the highest in decades", "Jane Doe", 3000);
+    private static final NewsItem CLIMATE = newsItem("2", "Environment", "Climate talks stall",
+            "Delegates leave without an agreement on elections of the chair", "John Smith", 2000);
+    private static final NewsItem FOOTBALL = newsItem("3", "Football", "Late goal settles derby",
+            "The election of the new manager can wait", "Jane Roe", 1000);
+
+    @Test
+    public void search_matchesTheStartOfWords() {
+        ArticleSearchIndex index = indexOf(ELECTION, CLIMATE, FOOTBALL);
+
+        assertEquals(Arrays.asList(CLIMATE), index.search("clim", 10));
+        assertEquals(Arrays.asList(CLIMATE), index.search("CLIMATE", 10));
+        assertTrue(index.search("limate", 10).isEmpty());
+        // a single letter would match nearly everything
+        assertTrue(index.search("c", 10).isEmpty());
+        assertEquals(Arrays.asList(FOOTBALL), index.search("derby j", 10));
+    }
+
+    @Test
+    public void search_ranksHeadlinesAboveTrailText() {
+        ArticleSearchIndex index = indexOf(ELECTION, CLIMATE, FOOTBALL);
+
+        List<NewsItem> results = index.search("election", 10);
+
+        // the headline first, then the whole word before the word it starts
+        assertEquals(Arrays.asList(ELECTION, FOOTBALL, CLIMATE), results);
+        assertEquals(Arrays.asList(ELECTION, FOOTBALL), index.search("election", 2));
+    }
+
+    @Test
+    public void search_needsEveryWord() {
+        ArticleSearchIndex index = indexOf(ELECTION, CLIMATE, FOOTBALL);
+
+        assertEquals(Arrays.asList(ELECTION, FOOTBALL), index.search("jane elect", 10));
+        assertTrue(index.search("jane climate", 10).isEmpty());
+        assertEquals(Arrays.asList(FOOTBALL), index.search("  derby, jane! ", 10));
+    }
+
+    @Test
+    public void search_ignoresAccentsAndCase() {
+        ArticleSearchIndex index = indexOf(newsItem("4", "Food", "Caf\u00e9 culture", "", "", 0));
+
+        assertEquals(1, index.search("cafe", 10).size());
+        assertEquals(1, index.search("CAF\u00c9", 10).size());
+    }
+
+    @Test
+    public void add_replacesChangedNewsItems() {
+        ArticleSearchIndex index = indexOf(ELECTION, CLIMATE);
+
+        assertEquals(0, index.add(Arrays.asList(ELECTION)));
+        NewsItem updated = newsItem("1", "Politics", "Recount ordered", "", "Jane Doe", 4000);
+        assertEquals(1, index.add(Arrays.asList(updated)));
+
+        assertEquals(2, index.size());
+        assertTrue(index.search("election", 10).contains(CLIMATE));
+        assertEquals(Arrays.asList(updated), index.search("recount", 10));
+        assertTrue(index.search("turnout", 10).isEmpty());
+    }
+
+    @Test
+    public void add_dropsReplacedVersionsOnceTheyPileUp() {
+        ArticleSearchIndex index = new ArticleSearchIndex();
+
+        for (int version = 0; version < 50; version++) {
+            index.add(Arrays.asList(newsItem("1", "News", "Version v" + version, "", "", version)));
+        }
+
+        assertEquals(1, index.size());
+        // the terms of the replaced versions went with them
+        assertTrue(index.getTermCount() < 10);
+        assertEquals(1, index.search("version v49", 10).size());
+        assertTrue(index.search("v48", 10).isEmpty());
+    }
+
+    @Test
+    public void tokenize_splitsOnEverythingButLettersAndDigits() {
+        assertEquals(Arrays.asList("brexit", "talks", "2018", "don", "t", "panic"),
+                ArticleSearchIndex.tokenize("Brexit-talks (2018): don't PANIC"));
+        assertTrue(ArticleSearchIndex.tokenize(" ,. ").isEmpty());
+        assertTrue(ArticleSearchIndex.tokenize(null).isEmpty());
+    }
+
+    private static ArticleSearchIndex indexOf(NewsItem... newsItems) {
+        ArticleSearchIndex index = new ArticleSearchIndex();
+        index.add(Arrays.asList(newsItems));
+        return index;
+    }
+
+    private static NewsItem newsItem(String id, String section, String headline, String trailText,
+                                     String byline, long publicationTime) {
+        return new NewsItem(section, headline, trailText, byline, publicationTime,
+                "https://www.theguardian.com/news/" + id, "");
+    }
+}
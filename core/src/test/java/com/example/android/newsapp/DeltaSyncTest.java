@@ -0,0 +1,75 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the incremental refresh queries and how their stories are merged into the held ones.
+ */
+public class DeltaSyncTest {
+
+    private static final String URL = "https://content.guardianapis.com/search?section=news&order-by=newest";
+
+    @Test
+    public void buildDeltaUrl_filtersOnPublicationDate() {
+        long since = PublicationDates.parse("2018-05-24T03:43:47Z");
+        assertEquals(URL + "&from-date=2018-05-24T03%3A43%3A47Z&use-date=published",
+                DeltaSync.buildDeltaUrl(URL, since));
+    }
+
+    @Test
+    public void newestPublicationTime_ignoresOrder() {
+        List<NewsItem> newsItems = Arrays.asList(item("a", 20), item("b", 30), item("c", 10));
+        assertEquals(30, DeltaSync.newestPublicationTime(newsItems));
+        assertEquals(PublicationDates.UNKNOWN,
+                DeltaSync.newestPublicationTime(Collections.<NewsItem>emptyList()));
+    }
+
+    @Test
+    public void merge_putsNewStoriesOnTopAndDropsRepeats() {
+        List<NewsItem> held = Arrays.asList(item("c", 30), item("b", 20), item("a", 10));
+        NewsItem updated = item("c", 30);
+        List<NewsItem> delta = Arrays.asList(item("e", 50), item("d", 40), updated);
+
+        ArrayList<NewsItem> merged = DeltaSync.merge(delta, held, 20);
+        assertEquals(Arrays.asList("e", "d", "c", "b", "a"), webUrls(merged));
+        // the story sent again keeps its new version
+        assertSame(updated, merged.get(2));
+    }
+
+    @Test
+    public void merge_keepsOnlyTheFirstPage() {
+        List<NewsItem> held = Arrays.asList(item("c", 30), item("b", 20), item("a", 10));
+        List<NewsItem> delta = Arrays.asList(item("e", 50), item("d", 40));
+
+        assertEquals(Arrays.asList("e", "d", "c"), webUrls(DeltaSync.merge(delta, held, 3)));
+    }
+
+    @Test
+    public void isGap_whenTheDeltaFillsAPage() {
+        List<NewsItem> delta = Arrays.asList(item("b", 20), item("a", 10));
+        assertTrue(DeltaSync.isGap(delta, 2));
+        assertFalse(DeltaSync.isGap(delta, 3));
+    }
+
+    private static NewsItem item(String webUrl, long publicationTime) {
+        return new NewsItem("News", "Headline " + webUrl, "", "", publicationTime, webUrl, "");
+    }
+
+    private static List<String> webUrls(List<NewsItem> newsItems) {
+        List<String> webUrls = new ArrayList<>();
+        for (NewsItem newsItem : newsItems) {
+            webUrls.add(newsItem.getWebUrl());
+        }
+        return webUrls;
+    }
+}
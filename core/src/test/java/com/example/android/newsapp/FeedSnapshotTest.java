@@ -0,0 +1,93 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes and reads back {@link FeedSnapshot} files, intact and damaged.
+ */
+public class FeedSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_keepsEveryField() throws IOException {
+        File file = new File(folder.getRoot(), "feed.snapshot");
+        List<NewsItem> newsItems = Arrays.asList(
+                new NewsItem("World news", "Talks resume", "\u201cWe will not back down\u201d \u2013 \u00a31bn",
+                        "Jane Doe", 1527133427000L, "https://www.theguardian.com/a", "https://media.guim.co.uk/a.jpg"),
+                new NewsItem("Sport", "", "", "", PublicationDates.UNKNOWN, "https://www.theguardian.com/b", ""));
+
+        FeedSnapshot.write(file, "section=world&order-by=newest", newsItems);
+        FeedSnapshot snapshot = FeedSnapshot.read(file);
+
+        assertNotNull(snapshot);
+        assertEquals("section=world&order-by=newest", snapshot.getKey());
+        assertTrue(System.currentTimeMillis() - snapshot.getSavedAt() < 60000);
+        ArrayList<NewsItem> read = snapshot.getNewsItems();
+        assertEquals(2, read.size());
+        for (int i = 0; i < newsItems.size(); i++) {
+            assertTrue(newsItems.get(i).contentEquals(read.get(i)));
+        }
+        assertEquals(newsItems.get(0).getTrailText(), read.get(0).getTrailText());
+        assertEquals(PublicationDates.UNKNOWN, read.get(1).getPublicationTime());
+    }
+
+    @Test
+    public void read_missingFileIsNull() throws IOException {
+        assertNull(FeedSnapshot.read(new File(folder.getRoot(), "missing")));
+    }
+
+    @Test
+    public void read_truncatedFileIsNull() throws IOException {
+        File file = writeSnapshot();
+        for (long length = file.length() - 1; length >= 0; length -= 7) {
+            truncate(file, length);
+            assertNull("length " + length, FeedSnapshot.read(file));
+        }
+    }
+
+    @Test
+    public void read_otherVersionIsNull() throws IOException {
+        File file = writeSnapshot();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(4);
+            randomAccessFile.writeInt(FeedSnapshot.FORMAT_VERSION + 1);
+        } finally {
+            randomAccessFile.close();
+        }
+        assertNull(FeedSnapshot.read(file));
+    }
+
+    private File writeSnapshot() throws IOException {
+        File file = new File(folder.getRoot(), "feed.snapshot");
+        FeedSnapshot.write(file, "section=world", Arrays.asList(
+                new NewsItem("World news", "Talks resume", "Trail", "Jane Doe", 1527133427000L,
+                        "https://www.theguardian.com/a", "")));
+        return file;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link FetchProfile} picks a profile for the network, and applies it to feed
+ * queries and thumbnails only.
+ */
+public class FetchProfileTest {
+
+    private static final String FEED_URL = "https://content.guardianapis.com/search?format=json&section=news"
+            + "&show-fields=thumbnail%2CtrailText%2Cheadline%2Cbyline&order-by=newest&page-size=20&api-key=test";
+    private static final String BODIES_URL = "https://content.guardianapis.com/search?format=json"
+            + "&ids=world%2F2018%2Fjun%2F01%2Fstory&show-fields=body&page-size=1&api-key=test";
+    private static final String THUMBNAIL_URL = "https://media.guim.co.uk/1a2b3c/0_0_3000_1800/500.jpg";
+
+    @Test
+    public void select_lightensMeteredAndSlowNetworks() {
+        assertSame(FetchProfile.FULL, FetchProfile.select(NetworkQualityEstimator.Quality.GOOD, false));
+        assertSame(FetchProfile.STANDARD, FetchProfile.select(NetworkQualityEstimator.Quality.GOOD, true));
+        assertSame(FetchProfile.STANDARD, FetchProfile.select(NetworkQualityEstimator.Quality.MODERATE, false));
+        assertSame(FetchProfile.LITE, FetchProfile.select(NetworkQualityEstimator.Quality.MODERATE, true));
+        assertSame(FetchProfile.LITE, FetchProfile.select(NetworkQualityEstimator.Quality.POOR, false));
+        assertSame(FetchProfile.STANDARD, FetchProfile.select(NetworkQualityEstimator.Quality.UNKNOWN, false));
+    }
+
+    @Test
+    public void apply_replacesThePageSizeAndFields() {
+        assertEquals("https://content.guardianapis.com/search?format=json&section=news"
+                        + "&show-fields=thumbnail%2Cheadline%2Cbyline&order-by=newest&page-size=10&api-key=test",
+                FetchProfile.LITE.apply(FEED_URL));
+        assertEquals(FEED_URL, FetchProfile.STANDARD.apply(FEED_URL));
+        assertEquals(FEED_URL + "&page=3", FetchProfile.STANDARD.apply(FEED_URL + "&page=3"));
+    }
+
+    @Test
+    public void apply_leavesOtherQueriesAlone() {
+        assertEquals(BODIES_URL, FetchProfile.LITE.apply(BODIES_URL));
+        assertEquals("https://content.guardianapis.com/search",
+                FetchProfile.FULL.apply("https://content.guardianapis.com/search"));
+    }
+
+    @Test
+    public void thumbnailUrl_asksTheImageServiceForTheWidth() {
+        assertEquals("https://media.guim.co.uk/1a2b3c/0_0_3000_1800/140.jpg",
+                FetchProfile.LITE.thumbnailUrl(THUMBNAIL_URL));
+        assertEquals(THUMBNAIL_URL, FetchProfile.FULL.thumbnailUrl(THUMBNAIL_URL));
+        assertEquals("https://example.com/500.jpg", FetchProfile.LITE.thumbnailUrl("https://example.com/500.jpg"));
+    }
+
+    @Test
+    public void hasFieldsOf_ignoresThePageSize() {
+        assertTrue(FetchProfile.FULL.hasFieldsOf(FetchProfile.STANDARD));
+        assertTrue(FetchProfile.STANDARD.hasFieldsOf(FetchProfile.FULL));
+        assertTrue(FetchProfile.STANDARD.hasFieldsOf(FetchProfile.LITE));
+        assertFalse(FetchProfile.LITE.hasFieldsOf(FetchProfile.STANDARD));
+    }
+
+    @Test
+    public void forName_findsEveryProfile() {
+        for (FetchProfile profile : new FetchProfile[]{FetchProfile.FULL, FetchProfile.STANDARD, FetchProfile.LITE}) {
+            assertSame(profile, FetchProfile.forName(profile.getName()));
+        }
+        assertNull(FetchProfile.forName("unknown"));
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link GuardianClient} against a local stand-in for the Guardian API that supports
+ * ETag/Last-Modified validators and gzip compression.
+ */
+public class GuardianClientTest {
+
+    private static final String ETAG = "\"search-50-v1\"";
+    private static final String LAST_MODIFIED = "Thu, 24 May 2018 03:43:47 GMT";
+
+    private static final String BODIES = "{\"response\":{\"status\":\"ok\",\"results\":["
+            + "{\"id\":\"world/a\",\"webUrl\":\"https://www.theguardian.com/world/a\","
+            + "\"fields\":{\"body\":\"<p>Talks resumed.</p>\"}},"
+            + "{\"id\":\"world/b\",\"webUrl\":\"https://www.theguardian.com/world/b\",\"fields\":{}},"
+            + "{\"fields\":{\"body\":\"<p>No web url</p>\"},\"id\":\"world/c\"}]}}";
+
+    private HttpServer server;
+    private byte[] body;
+    private volatile boolean gzipEnabled = true;
+    private volatile int requestCount;
+
+    private final GuardianClient client = new GuardianClient(new NewsItemParser());
+
+    @Before
+    public void setUp() throws IOException {
+        body = readFixture("search_50.json");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount++;
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                if (ETAG.equals(ifNoneMatch) || LAST_MODIFIED.equals(ifModifiedSince)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] responseBody = body;
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (gzipEnabled && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    responseBody = gzip(body);
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, responseBody.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(responseBody);
+                out.close();
+            }
+        });
+        server.createContext("/bodies", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] responseBody = gzip(BODIES.getBytes("UTF-8"));
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, responseBody.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(responseBody);
+                out.close();
+            }
+        });
+        server.createContext("/error", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetch_returnsItemsAndValidators() throws IOException {
+        NewsResponse response = client.fetch(url("/search"), null, null);
+
+        assertFalse(response.isNotModified());
+        assertEquals(50, response.getNewsItems().size());
+        assertEquals(ETAG, response.getETag());
+        assertEquals(LAST_MODIFIED, response.getLastModified());
+        assertTrue(response.getFirstByteNanos() > 0);
+        assertTrue(response.getReadNanos() > 0);
+        assertTrue(response.getParseNanos() > 0);
+    }
+
+    @Test
+    public void fetch_withMatchingETag_isNotModified() throws IOException {
+        NewsResponse response = client.fetch(url("/search"), ETAG, null);
+
+        assertTrue(response.isNotModified());
+        assertNull(response.getNewsItems());
+        assertEquals(0, response.getBytesReceived());
+        assertEquals(ETAG, response.getETag());
+    }
+
+    @Test
+    public void fetch_withMatchingLastModified_isNotModified() throws IOException {
+        NewsResponse response = client.fetch(url("/search"), null, LAST_MODIFIED);
+
+        assertTrue(response.isNotModified());
+        assertEquals(LAST_MODIFIED, response.getLastModified());
+    }
+
+    @Test
+    public void fetchBody_readsArticleBodies() throws IOException {
+        Map<String, String> bodies = client.fetchBody(url("/bodies"), new ArticleBodyParser());
+
+        assertEquals(1, bodies.size());
+        assertEquals("<p>Talks resumed.</p>", bodies.get("https://www.theguardian.com/world/a"));
+    }
+
+    @Test
+    public void fetch_gzipBody_matchesIdentityBody() throws IOException {
+        gzipEnabled = false;
+        NewsResponse identity = client.fetch(url("/search"), null, null);
+        gzipEnabled = true;
+        NewsResponse compressed = client.fetch(url("/search"), null, null);
+
+        assertEquals(body.length, identity.getBytesReceived());
+        assertTrue(compressed.getBytesReceived() < identity.getBytesReceived());
+        assertEquals(identity.getNewsItems().size(), compressed.getNewsItems().size());
+        for (int i = 0; i < identity.getNewsItems().size(); i++) {
+            assertEquals(identity.getNewsItems().get(i).getWebUrl(), compressed.getNewsItems().get(i).getWebUrl());
+            assertEquals(identity.getNewsItems().get(i).getTrailText(), compressed.getNewsItems().get(i).getTrailText());
+        }
+    }
+
+    @Test
+    public void fetch_errorResponse_throws() {
+        try {
+            client.fetch(url("/error"), null, null);
+            fail("expected an IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("500"));
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path + "?format=json");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = GuardianClientTest.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks {@link HtmlStripper} against {@code Html.fromHtml(html).toString()}, the call the
+ * app made before, on the trailText of the search response fixtures and on trailText in the
+ * other shapes the Guardian sends: blank lines after block elements, a line break per
+ * {@code <br>}, collapsed white space and decoded entities.
+ * <p>
+ * The expected values were recorded once from {@code Html.fromHtml} of Android 8.1, as the
+ * framework isn't available to these tests; {@code resources/golden} holds those of the
+ * fixtures, in the order of their results.
+ */
+public class HtmlStripperTest {
+
+    private static final String[] FIXTURES = {"search_10", "search_50", "search_200"};
+
+    private static final String[][] CORPUS = {
+            {"Theresa May says the Brexit deal will be done by October",
+                    "Theresa May says the Brexit deal will be done by October"},
+            {"<p>Shares in the retailer fell sharply after it warned on profits</p>",
+                    "Shares in the retailer fell sharply after it warned on profits\n\n"},
+            {"<strong>Live</strong>: latest updates as talks resume in Brussels",
+                    "Live: latest updates as talks resume in Brussels"},
+            {"<p>First paragraph.</p><p>Second paragraph.</p>",
+                    "First paragraph.\n\nSecond paragraph.\n\n"},
+            {"Scientists&#39; warning on ocean plastic &amp; microfibres",
+                    "Scientists' warning on ocean plastic & microfibres"},
+            {"&ldquo;We will not back down,&rdquo; says union leader &ndash; video",
+                    "\u201cWe will not back down,\u201d says union leader \u2013 video"},
+            {"Minister&rsquo;s &lsquo;difficult&rsquo; week&hellip;",
+                    "Minister\u2019s \u2018difficult\u2019 week\u2026"},
+            {"The &pound;1bn plan explained", "The \u00a31bn plan explained"},
+            {"Line one<br>Line two<br/>Line three", "Line one\nLine two\nLine three"},
+            {"<a href=\"https://www.theguardian.com/world/live\">Follow the latest</a> as polls close",
+                    "Follow the latest as polls close"},
+            {"<a href='https://www.theguardian.com/a>b'>Quoted &gt; attribute</a>",
+                    "Quoted > attribute"},
+            {"<em>Observer</em> readers   share their\n  favourite  walks",
+                    "Observer readers share their favourite walks"},
+            {"<p> Padded text </p>", "Padded text \n\n"},
+            {"<ul><li>Strikes called off</li><li>Talks to resume</li></ul>",
+                    "Strikes called off\n\nTalks to resume\n\n"},
+            {"Temperatures hit 30&deg;C &#8211; the hottest day", "Temperatures hit 30\u00b0C \u2013 the hottest day"},
+            {"Hex &#x2019;quote&#X201C;", "Hex \u2019quote\u201c"},
+            {"Emoji &#128512; reference", "Emoji \ud83d\ude00 reference"},
+            {"Non&nbsp;breaking", "Non\u00a0breaking"},
+            {"Fish &chips; & unknown &entities;", "Fish &chips; & unknown &entities;"},
+            {"1 < 2 and 3 > 2", "1 < 2 and 3 > 2"},
+            {"Before<!-- a comment -->after", "Beforeafter"},
+            {"<P>Upper case tags</P>", "Upper case tags\n\n"},
+            {"<h2>Heading</h2>Body", "Heading\n\nBody"},
+            {"", ""},
+    };
+
+    @Test
+    public void strip_fixtures_matchesRecordedFromHtml() throws Exception {
+        for (String fixture : FIXTURES) {
+            JSONArray results = new JSONObject(readResource("fixtures/" + fixture + ".json"))
+                    .getJSONObject("response").getJSONArray("results");
+            JSONArray expected = new JSONArray(readResource("golden/trailtext_" + fixture + ".json"));
+            assertEquals(fixture, expected.length(), results.length());
+            for (int i = 0; i < results.length(); i++) {
+                String html = results.getJSONObject(i).getJSONObject("fields").getString("trailText");
+                assertEquals(fixture + " " + i, expected.getString(i), HtmlStripper.strip(html));
+            }
+        }
+    }
+
+    @Test
+    public void strip_matchesCorpus() {
+        for (String[] sample : CORPUS) {
+            assertEquals(sample[0], sample[1], HtmlStripper.strip(sample[0]));
+        }
+    }
+
+    @Test
+    public void strip_plainText_returnsSameInstance() {
+        String plain = "Nothing to strip in this trailText";
+        assertSame(plain, HtmlStripper.strip(plain));
+    }
+
+    @Test
+    public void strip_longText_growsBuffer() {
+        StringBuilder html = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            html.append("<p>Paragraph ").append(i).append("</p>");
+            expected.append("Paragraph ").append(i).append("\n\n");
+        }
+        assertEquals(expected.toString(), HtmlStripper.strip(html.toString()));
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream in = HtmlStripperTest.class.getClassLoader().getResourceAsStream(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the percentiles of {@link LatencyHistogram} against exact ones, and that recording
+ * doesn't allocate.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBounds_coverEveryValueOnce() {
+        long previousUpperBound = -1;
+        for (int index = 0; LatencyHistogram.bucketUpperBound(index) < LatencyHistogram.MAX_VALUE_MICROS; index++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertEquals(index, LatencyHistogram.bucketIndex(previousUpperBound + 1));
+            assertEquals(index, LatencyHistogram.bucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void percentiles_withinPrecisionOfExactValues() {
+        Random random = new Random(42);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal-ish spread from a few hundred microseconds to several seconds
+            values[i] = (long) Math.exp(6 + random.nextDouble() * 9);
+            histogram.recordMicros(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact + exact / 16 + 1);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxMicros());
+        assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    public void smallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.recordMicros(i);
+        }
+        assertEquals(10, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void outOfRangeValues_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+        histogram.recordMicros(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE_MICROS, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void reset_forgetsValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(1500000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void record_doesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+        LatencyHistogram histogram = new LatencyHistogram();
+        // warm up so the measured loop runs compiled
+        for (int i = 0; i < 100000; i++) {
+            histogram.recordNanos(i * 1000L);
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            histogram.recordNanos(i * 1000L);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // allow for the bean's own bookkeeping
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
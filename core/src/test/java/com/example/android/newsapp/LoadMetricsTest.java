@@ -0,0 +1,67 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link LoadMetrics} keys queries and reports them.
+ */
+public class LoadMetricsTest {
+
+    @Test
+    public void queryKey_dropsPagingAndCredentials() {
+        String firstPage = "https://content.guardianapis.com/search?format=json&section=news"
+                + "&show-fields=thumbnail%2CtrailText&order-by=newest&page-size=20&api-key=secret";
+        String thirdPage = firstPage + "&page=3";
+
+        assertEquals("section=news&order-by=newest", LoadMetrics.queryKey(firstPage));
+        assertEquals(LoadMetrics.queryKey(firstPage), LoadMetrics.queryKey(thirdPage));
+        assertEquals("section=news&order-by=newest&use-date=published",
+                LoadMetrics.queryKey(firstPage + "&from-date=2018-05-24T03%3A43%3A47Z&use-date=published"));
+        assertEquals("https://content.guardianapis.com/search", LoadMetrics.queryKey("https://content.guardianapis.com/search"));
+        // every search shares a key
+        assertEquals("order-by=relevance",
+                LoadMetrics.queryKey("https://content.guardianapis.com/search?q=brexit+vote&order-by=relevance"));
+    }
+
+    @Test
+    public void record_keepsStagesPerKey() {
+        LoadMetrics metrics = new LoadMetrics();
+        metrics.record("section=news", LoadMetrics.STAGE_PARSE, TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.record("section=news", LoadMetrics.STAGE_PARSE, TimeUnit.MILLISECONDS.toNanos(6));
+        metrics.record("section=sport", LoadMetrics.STAGE_CONNECT, TimeUnit.MILLISECONDS.toNanos(80));
+
+        assertEquals(2, metrics.getHistogram("section=news", LoadMetrics.STAGE_PARSE).getCount());
+        assertEquals(0, metrics.getHistogram("section=news", LoadMetrics.STAGE_CONNECT).getCount());
+        assertEquals(80000, metrics.getHistogram("section=sport", LoadMetrics.STAGE_CONNECT).getMaxMicros());
+        assertNull(metrics.getHistogram("section=travel", LoadMetrics.STAGE_CONNECT));
+    }
+
+    @Test
+    public void record_beyondMaxKeys_countsAsOther() {
+        LoadMetrics metrics = new LoadMetrics();
+        for (int i = 0; i < 40; i++) {
+            metrics.record("q=" + i, LoadMetrics.STAGE_READ, 1000);
+        }
+        assertEquals(33, metrics.getKeys().size());
+        assertEquals(8, metrics.getHistogram(LoadMetrics.OTHER_KEY, LoadMetrics.STAGE_READ).getCount());
+    }
+
+    @Test
+    public void dump_listsRecordedStages() {
+        LoadMetrics metrics = new LoadMetrics();
+        metrics.record("section=news", LoadMetrics.STAGE_FIRST_BYTE, TimeUnit.MILLISECONDS.toNanos(120));
+        StringBuilder out = new StringBuilder();
+        metrics.dump(out);
+
+        String dump = out.toString();
+        assertTrue(dump, dump.startsWith("section=news\n"));
+        assertTrue(dump, dump.contains("first byte"));
+        assertTrue(dump, !dump.contains("parse"));
+    }
+}
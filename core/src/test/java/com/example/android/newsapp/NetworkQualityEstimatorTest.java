@@ -0,0 +1,94 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link NetworkQualityEstimator} averages the timings of responses, and only changes
+ * the quality once the averages are clearly past a threshold.
+ */
+public class NetworkQualityEstimatorTest {
+
+    private static final long KB = 1024;
+
+    @Test
+    public void record_averagesTheSamples() {
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+
+        estimator.record(100 * KB, millis(200), millis(100));
+        estimator.record(100 * KB, millis(400), millis(200));
+
+        // 500 kB/s then 250 kB/s, 100 ms then 200 ms
+        assertEquals(500 * KB - 0.3 * 250 * KB, estimator.getBytesPerSecond(), 1);
+        assertEquals(130, estimator.getRttMillis(), 0.001);
+        assertEquals(NetworkQualityEstimator.Quality.GOOD, estimator.getQuality());
+    }
+
+    @Test
+    public void record_ignoresTheThroughputOfSmallBodies() {
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+
+        // a 304 takes long to read, but it is all latency
+        estimator.record(0, 0, millis(100));
+        estimator.record(KB, millis(1000), millis(100));
+
+        assertEquals(-1, estimator.getBytesPerSecond(), 0);
+        assertEquals(NetworkQualityEstimator.Quality.GOOD, estimator.getQuality());
+    }
+
+    @Test
+    public void quality_followsTheSlowerOfThroughputAndLatency() {
+        NetworkQualityEstimator fastButFar = new NetworkQualityEstimator();
+        fastButFar.record(1000 * KB, millis(1000), millis(2500));
+        NetworkQualityEstimator closeButSlow = new NetworkQualityEstimator();
+        closeButSlow.record(100 * KB, millis(1000), millis(300));
+
+        assertEquals(NetworkQualityEstimator.Quality.POOR, fastButFar.getQuality());
+        assertEquals(NetworkQualityEstimator.Quality.MODERATE, closeButSlow.getQuality());
+    }
+
+    @Test
+    public void quality_holdsAroundTheThreshold() {
+        // just within the good round trip time isn't enough to become good
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+        estimator.record(0, 0, millis(380));
+        assertEquals(NetworkQualityEstimator.Quality.MODERATE, estimator.getQuality());
+
+        // but a good network stays good when it is just past it
+        estimator = new NetworkQualityEstimator();
+        estimator.record(0, 0, millis(100));
+        for (int i = 0; i < 20; i++) {
+            estimator.record(0, 0, millis(450));
+        }
+        assertEquals(NetworkQualityEstimator.Quality.GOOD, estimator.getQuality());
+
+        for (int i = 0; i < 20; i++) {
+            estimator.record(0, 0, millis(700));
+        }
+        assertEquals(NetworkQualityEstimator.Quality.MODERATE, estimator.getQuality());
+    }
+
+    @Test
+    public void reset_startsFromTheLinkBandwidth() {
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+        estimator.record(0, 0, millis(3000));
+        assertEquals(NetworkQualityEstimator.Quality.POOR, estimator.getQuality());
+
+        estimator.reset(1000 * KB);
+        assertEquals(NetworkQualityEstimator.Quality.GOOD, estimator.getQuality());
+        assertEquals(-1, estimator.getRttMillis(), 0);
+
+        estimator.reset(10 * KB);
+        assertEquals(NetworkQualityEstimator.Quality.POOR, estimator.getQuality());
+
+        estimator.reset(-1);
+        assertEquals(NetworkQualityEstimator.Quality.UNKNOWN, estimator.getQuality());
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks the streaming {@link NewsItemParser} against the previous read-into-String and
+ * {@link JSONObject} tree path, on the search response fixtures in {@code resources/fixtures}.
+ * Both paths strip the trailText html with {@link HtmlStripper}, so only the JSON handling differs.
+ */
+public class NewsItemParserTest {
+
+    private static final String[] FIXTURES = {"search_10.json", "search_50.json", "search_200.json"};
+
+    private final NewsItemParser parser = new NewsItemParser();
+
+    @Test
+    public void streamingParser_matchesTreeParser() throws Exception {
+        for (String fixture : FIXTURES) {
+            byte[] body = readFixture(fixture);
+            ArrayList<NewsItem> expected = parseWithTree(new ByteArrayInputStream(body));
+            ArrayList<NewsItem> actual = parser.parse(new ByteArrayInputStream(body));
+
+            assertNotNull(expected);
+            assertNotNull(actual);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                NewsItem e = expected.get(i);
+                NewsItem a = actual.get(i);
+                assertEquals(e.getCategory(), a.getCategory());
+                assertEquals(e.getHeadline(), a.getHeadline());
+                assertEquals(e.getTrailText(), a.getTrailText());
+                assertEquals(e.getAuthor(), a.getAuthor());
+                assertEquals(e.getPublicationTime(), a.getPublicationTime());
+                assertEquals(e.getWebUrl(), a.getWebUrl());
+                assertEquals(e.getThumbnailUrl(), a.getThumbnailUrl());
+            }
+        }
+    }
+
+    @Test
+    public void streamingParser_handlesMissingResults() throws Exception {
+        String body = "{\"response\":{\"status\":\"error\",\"message\":\"Invalid api key\"}}";
+        assertEquals(null, parser.parse(new ByteArrayInputStream(body.getBytes("UTF-8"))));
+    }
+
+    /**
+     * The previous parse path: read the whole body into a String, then build a JSONObject tree.
+     */
+    private static ArrayList<NewsItem> parseWithTree(InputStream inputStream) throws IOException, JSONException {
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+
+        ArrayList<NewsItem> newsItems = new ArrayList<>();
+        JSONArray results = new JSONObject(output.toString()).getJSONObject("response").getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            JSONObject fields = result.getJSONObject("fields");
+            newsItems.add(new NewsItem(
+                    result.optString("sectionName"),
+                    fields.optString("headline"),
+                    HtmlStripper.strip(fields.optString("trailText")),
+                    fields.optString("byline"),
+                    PublicationDates.parse(result.optString("webPublicationDate")),
+                    result.optString("webUrl"),
+                    fields.optString("thumbnail")));
+        }
+        return newsItems;
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = NewsItemParserTest.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        assertNotNull("missing fixture " + name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
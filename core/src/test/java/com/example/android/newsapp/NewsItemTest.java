@@ -0,0 +1,57 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the compact layout of {@link NewsItem} gives back what it was given.
+ */
+public class NewsItemTest {
+
+    @Test
+    public void trailText_roundTripsThroughUtf8() {
+        String trailText = "\u201cWe will not back down,\u201d says union leader \u2013 \u00a31bn \ud83d\udcf0";
+        assertEquals(trailText, item("a", "Politics", trailText).getTrailText());
+        assertEquals("", item("a", "Politics", "").getTrailText());
+    }
+
+    @Test
+    public void repeatedValues_shareOneInstance() {
+        NewsItem first = item("a", new String("Politics".toCharArray()), "");
+        NewsItem second = item("b", new String("Politics".toCharArray()), "");
+        assertSame(first.getCategory(), second.getCategory());
+        assertSame(first.getAuthor(), second.getAuthor());
+    }
+
+    @Test
+    public void contentEquals_comparesEveryField() {
+        NewsItem newsItem = item("a", "Politics", "Trail");
+        assertTrue(newsItem.contentEquals(item("a", "Politics", "Trail")));
+        assertFalse(newsItem.contentEquals(item("a", "Politics", "Trail updated")));
+        assertFalse(newsItem.contentEquals(item("a", "Sport", "Trail")));
+        assertFalse(newsItem.contentEquals(item("b", "Politics", "Trail")));
+    }
+
+    @Test
+    public void stringPool_stopsGrowingWhenFull() {
+        StringPool pool = new StringPool(2);
+        String a = pool.intern(new String("a".toCharArray()));
+        pool.intern("b");
+        assertSame(a, pool.intern(new String("a".toCharArray())));
+
+        String c = new String("c".toCharArray());
+        assertSame(c, pool.intern(c));
+        assertNotSame(c, pool.intern(new String("c".toCharArray())));
+        assertEquals(2, pool.size());
+    }
+
+    private static NewsItem item(String webUrl, String category, String trailText) {
+        return new NewsItem(category, "Headline", trailText, new String("Jane Doe".toCharArray()),
+                1527133427000L, webUrl, "");
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.android.newsapp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks {@link PublicationDates} against {@link SimpleDateFormat}, and its display strings
+ * against the formatter created per bind that the adapter used before.
+ */
+public class PublicationDatesTest {
+
+    private static final String[] DATES = {
+            "2018-05-24T03:43:47Z", "2018-01-01T00:00:00Z", "2016-02-29T23:59:59Z",
+            "2000-03-01T12:30:00Z", "1999-12-31T23:59:59Z", "2018-12-31T18:05:09Z"};
+
+    private static TimeZone sDefaultTimeZone;
+    private static Locale sDefaultLocale;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // the old code parsed the 'Z' as a literal in the default zone; in UTC both agree
+        sDefaultTimeZone = TimeZone.getDefault();
+        sDefaultLocale = Locale.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        Locale.setDefault(Locale.UK);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        TimeZone.setDefault(sDefaultTimeZone);
+        Locale.setDefault(sDefaultLocale);
+    }
+
+    @Test
+    public void parse_matchesSimpleDateFormat() throws ParseException {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (String date : DATES) {
+            assertEquals(date, iso.parse(date).getTime(), PublicationDates.parse(date));
+        }
+    }
+
+    @Test
+    public void parse_fractionalSeconds() {
+        assertEquals(PublicationDates.parse("2018-05-24T03:43:47Z") + 120,
+                PublicationDates.parse("2018-05-24T03:43:47.12Z"));
+        assertEquals(PublicationDates.parse("2018-05-24T03:43:47Z") + 123,
+                PublicationDates.parse("2018-05-24T03:43:47.123Z"));
+        assertEquals(PublicationDates.parse("2018-05-24T03:43:47Z") + 123,
+                PublicationDates.parse("2018-05-24T03:43:47.123456789012Z"));
+    }
+
+    @Test
+    public void parse_malformed_isUnknown() {
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse(null));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse(""));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-05-24"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-05-24T03:43:47+01:00"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-13-24T03:43:47Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-05-2xT03:43:47Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-05-24T03:43:47.Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-05-24T03:43:47.12xZ"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-05-24T03:43:47.1234x6Z"));
+    }
+
+    @Test
+    public void parse_impossibleDay_isUnknown() {
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-02-31T03:43:47Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-02-29T03:43:47Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("1900-02-29T03:43:47Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2018-04-31T03:43:47Z"));
+        assertEquals(PublicationDates.parse("2000-03-01T03:43:47Z") - 24 * 60 * 60 * 1000L,
+                PublicationDates.parse("2000-02-29T03:43:47Z"));
+    }
+
+    @Test
+    public void format_matchesPreviousFormatting() {
+        for (String date : DATES) {
+            assertEquals(formatDatePerBind(date), PublicationDates.format(PublicationDates.parse(date)));
+        }
+        assertEquals("", PublicationDates.format(PublicationDates.UNKNOWN));
+    }
+
+    @Test
+    public void format_sameDay_returnsCachedString() {
+        String morning = PublicationDates.format(PublicationDates.parse("2018-05-24T03:43:47Z"));
+        String evening = PublicationDates.format(PublicationDates.parse("2018-05-24T21:10:00Z"));
+        assertSame(morning, evening);
+    }
+
+    @Test
+    public void format_timeZoneChanged_formatsInNewZone() {
+        long time = PublicationDates.parse("2018-05-24T21:10:00Z");
+        assertEquals("Thursday, 24.05.2018", PublicationDates.format(time));
+        TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Auckland"));
+        try {
+            assertEquals("Friday, 25.05.2018", PublicationDates.format(time));
+        } finally {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        }
+        assertEquals("Thursday, 24.05.2018", PublicationDates.format(time));
+    }
+
+    /**
+     * The formatting NewsItemAdapter did on every bind before dates were parsed on load.
+     */
+    private static String formatDatePerBind(String dateObj) {
+        SimpleDateFormat inputDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.getDefault());
+        SimpleDateFormat outputDate = new SimpleDateFormat("EEEE, dd.MM.yyyy", Locale.getDefault());
+        try {
+            Date newDate = inputDate.parse(dateObj);
+            return outputDate.format(newDate);
+        } catch (ParseException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks {@link QuotaScheduler} shares the tokens of a key by priority, and drops what
+ * can't wait for them.
+ */
+public class QuotaSchedulerTest {
+
+    private static final URL URL_A = url("https://content.guardianapis.com/search?section=news&api-key=a");
+    private static final URL URL_B = url("https://content.guardianapis.com/search?api-key=b&section=news");
+
+    private long now = TimeUnit.DAYS.toNanos(1);
+    private final QuotaScheduler.Clock clock = new QuotaScheduler.Clock() {
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    };
+
+    @Test
+    public void tryAcquire_takesTheBurstThenWaitsForTheRefill() {
+        QuotaScheduler quota = new QuotaScheduler(5, 1, clock);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+        }
+        assertFalse(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertTrue(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+        assertFalse(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+    }
+
+    @Test
+    public void lowerPriorities_leaveTokensForTheForeground() {
+        QuotaScheduler quota = new QuotaScheduler(10, 1, clock);
+
+        // prefetching leaves 2 of 10 tokens, the background leaves 5
+        int background = 0;
+        while (quota.tryAcquire(URL_A, QuotaScheduler.Priority.BACKGROUND)) {
+            background++;
+        }
+        int prefetch = 0;
+        while (quota.tryAcquire(URL_A, QuotaScheduler.Priority.PREFETCH)) {
+            prefetch++;
+        }
+        int foreground = 0;
+        while (quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND)) {
+            foreground++;
+        }
+
+        assertEquals(5, background);
+        assertEquals(3, prefetch);
+        assertEquals(2, foreground);
+        assertEquals(5, quota.getGrantedCount(QuotaScheduler.Priority.BACKGROUND));
+    }
+
+    @Test
+    public void everyKey_hasItsOwnBucket() {
+        QuotaScheduler quota = new QuotaScheduler(1, 1, clock);
+
+        assertTrue(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+        assertTrue(quota.tryAcquire(URL_B, QuotaScheduler.Priority.FOREGROUND));
+        assertFalse(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+    }
+
+    @Test
+    public void apiKey_isReadFromTheQuery() {
+        assertEquals("a", QuotaScheduler.apiKey(URL_A));
+        assertEquals("b", QuotaScheduler.apiKey(URL_B));
+        assertEquals("", QuotaScheduler.apiKey(url("https://content.guardianapis.com/search?section=news")));
+        assertEquals("", QuotaScheduler.apiKey(url("https://content.guardianapis.com/search")));
+    }
+
+    @Test
+    public void charge_overdrawsTheBucket() {
+        QuotaScheduler quota = new QuotaScheduler(2, 1, clock);
+
+        for (int i = 0; i < 10; i++) {
+            quota.charge(URL_A);
+        }
+
+        // down to a full bucket owed, which takes three seconds to pay back and earn a token
+        assertEquals(-2, quota.getAvailableTokens(URL_A), 0.001);
+        assertEquals(10, quota.getChargedCount());
+        now += TimeUnit.SECONDS.toNanos(2);
+        assertFalse(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertTrue(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+    }
+
+    @Test
+    public void refund_givesTheTokenBackUpToAFullBucket() {
+        QuotaScheduler quota = new QuotaScheduler(2, 0, clock);
+        assertTrue(quota.tryAcquire(URL_A, QuotaScheduler.Priority.FOREGROUND));
+
+        quota.refund(URL_A);
+        quota.refund(URL_A);
+
+        assertEquals(2, quota.getAvailableTokens(URL_A), 0.001);
+        assertEquals(2, quota.getRefundedCount());
+    }
+
+    @Test
+    public void acquire_dropsWhatCantWait() throws IOException {
+        QuotaScheduler quota = new QuotaScheduler(2, 1, clock);
+        quota.setMaxWaitMillis(QuotaScheduler.Priority.BACKGROUND, 0);
+        quota.acquire(URL_A, QuotaScheduler.Priority.BACKGROUND, null);
+
+        try {
+            quota.acquire(URL_A, QuotaScheduler.Priority.BACKGROUND, null);
+            fail("expected the request to be dropped");
+        } catch (QuotaScheduler.QuotaExceededException expected) {
+            // dropped
+        }
+        assertEquals(1, quota.getGrantedCount(QuotaScheduler.Priority.BACKGROUND));
+        assertEquals(1, quota.getDroppedCount(QuotaScheduler.Priority.BACKGROUND));
+    }
+
+    @Test
+    public void acquire_waitsForTheRefill() throws IOException {
+        // a token every 50 ms
+        QuotaScheduler quota = new QuotaScheduler(1, 20, systemClock());
+        quota.acquire(URL_A, QuotaScheduler.Priority.FOREGROUND, null);
+
+        long start = System.nanoTime();
+        quota.acquire(URL_A, QuotaScheduler.Priority.FOREGROUND, null);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        LatencyHistogram queueDelay = quota.getQueueDelay(QuotaScheduler.Priority.FOREGROUND);
+        assertEquals(2, queueDelay.getCount());
+        assertTrue(queueDelay.getMaxMicros() >= TimeUnit.MILLISECONDS.toMicros(40));
+    }
+
+    @Test
+    public void acquire_servesHigherPrioritiesFirst() throws Exception {
+        // a token every 100 ms, and the bucket is empty
+        final QuotaScheduler quota = new QuotaScheduler(2, 10, systemClock());
+        quota.acquire(URL_A, QuotaScheduler.Priority.FOREGROUND, null);
+        quota.acquire(URL_A, QuotaScheduler.Priority.FOREGROUND, null);
+        final List<QuotaScheduler.Priority> order = Collections.synchronizedList(
+                new ArrayList<QuotaScheduler.Priority>());
+
+        Thread prefetch = acquireInBackground(quota, QuotaScheduler.Priority.PREFETCH, order);
+        Thread.sleep(20);
+        Thread foreground = acquireInBackground(quota, QuotaScheduler.Priority.FOREGROUND, order);
+        Thread foregroundLater = acquireInBackground(quota, QuotaScheduler.Priority.FOREGROUND, order);
+        prefetch.join(5000);
+        foreground.join(5000);
+        foregroundLater.join(5000);
+
+        assertEquals(3, order.size());
+        assertEquals(QuotaScheduler.Priority.PREFETCH, order.get(2));
+    }
+
+    @Test
+    public void acquire_isCancellable() throws IOException {
+        QuotaScheduler quota = new QuotaScheduler(1, 0.001, systemClock());
+        quota.acquire(URL_A, QuotaScheduler.Priority.FOREGROUND, null);
+        final CancellationToken cancellation = new CancellationToken();
+        Executors.newSingleThreadScheduledExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancellation.cancel();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        try {
+            quota.acquire(URL_A, QuotaScheduler.Priority.FOREGROUND, cancellation);
+            fail("expected the wait to be cancelled");
+        } catch (InterruptedIOException expected) {
+            // cancelled
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        // a cancelled wait isn't a drop
+        assertEquals(0, quota.getDroppedCount(QuotaScheduler.Priority.FOREGROUND));
+    }
+
+    private static Thread acquireInBackground(final QuotaScheduler quota, final QuotaScheduler.Priority priority,
+                                              final List<QuotaScheduler.Priority> order) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    quota.acquire(URL_A, priority, null);
+                    order.add(priority);
+                } catch (IOException e) {
+                    // left out of the order
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static QuotaScheduler.Clock systemClock() {
+        return new QuotaScheduler.Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+    }
+
+    private static URL url(String spec) {
+        try {
+            return new URL(spec);
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link RequestCoalescer} against a local stand-in for the Guardian API that holds every
+ * response until the test releases it.
+ */
+public class RequestCoalescerTest {
+
+    private static final int CALLERS = 8;
+
+    private HttpServer server;
+    private byte[] body;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile CountDownLatch requestStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private RequestCoalescer coalescer = new RequestCoalescer(new GuardianClient(new NewsItemParser()));
+
+    @Before
+    public void setUp() throws IOException {
+        body = readFixture("search_10.json");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                requestStarted.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                try {
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } catch (IOException e) {
+                    // the client went away
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void identicalRequests_shareOneCall() throws Exception {
+        List<Future<NewsResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(callers.submit(fetch("/search?section=news", null)));
+        }
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        // give the other callers time to join
+        waitForInFlight(1);
+        Thread.sleep(200);
+        release.countDown();
+
+        NewsResponse first = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<NewsResponse> future : futures) {
+            assertSame(first, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(10, first.getNewsItems().size());
+        assertEquals(1, requestCount.get());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void identicalRequests_takeOneQuotaToken() throws Exception {
+        QuotaScheduler quota = new QuotaScheduler(CALLERS * 2, 0, new QuotaScheduler.Clock() {
+            @Override
+            public long nanoTime() {
+                return 0;
+            }
+        });
+        coalescer = new RequestCoalescer(new GuardianClient(new NewsItemParser()), quota);
+        List<Future<NewsResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(callers.submit(fetch("/search?section=news", null)));
+        }
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        waitForInFlight(1);
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<NewsResponse> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(1, requestCount.get());
+        assertEquals(CALLERS * 2 - 1, quota.getAvailableTokens(url("/search")), 0);
+    }
+
+    @Test
+    public void identicalRequests_tellTheListenerOnce() throws Exception {
+        final List<NewsResponse> responses = new ArrayList<>();
+        coalescer = new RequestCoalescer(new GuardianClient(new NewsItemParser()), null,
+                new RequestCoalescer.Listener() {
+                    @Override
+                    public void onResponse(URL url, NewsResponse response) {
+                        synchronized (responses) {
+                            responses.add(response);
+                        }
+                    }
+                });
+        List<Future<NewsResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(callers.submit(fetch("/search?section=news", null)));
+        }
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        waitForInFlight(1);
+        Thread.sleep(200);
+        release.countDown();
+
+        NewsResponse first = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<NewsResponse> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        synchronized (responses) {
+            assertEquals(1, responses.size());
+            assertSame(first, responses.get(0));
+        }
+    }
+
+    @Test
+    public void differentRequests_areNotShared() throws Exception {
+        requestStarted = new CountDownLatch(2);
+        Future<NewsResponse> news = callers.submit(fetch("/search?section=news", null));
+        Future<NewsResponse> sport = callers.submit(fetch("/search?section=sport", null));
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        news.get(5, TimeUnit.SECONDS);
+        sport.get(5, TimeUnit.SECONDS);
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void cancellingOneCaller_leavesTheOthersWaiting() throws Exception {
+        CancellationToken cancellation = new CancellationToken();
+        Future<NewsResponse> cancelled = callers.submit(fetch("/search?section=news", cancellation));
+        Future<NewsResponse> other = callers.submit(fetch("/search?section=news", null));
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+
+        cancellation.cancel();
+        assertCanceled(cancelled);
+        assertEquals(1, coalescer.getInFlightCount());
+
+        release.countDown();
+        assertEquals(10, other.get(5, TimeUnit.SECONDS).getNewsItems().size());
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void cancellingEveryCaller_abortsTheCallRightAway() throws Exception {
+        CancellationToken cancellation = new CancellationToken();
+        Future<NewsResponse> future = callers.submit(fetch("/search?section=news", cancellation));
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        cancellation.cancel();
+        assertCanceled(future);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the server would hold the response for 10 seconds, the read timeout is 10 more
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1000);
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void requestAfterCompletion_startsANewCall() throws Exception {
+        release.countDown();
+        callers.submit(fetch("/search?section=news", null)).get(5, TimeUnit.SECONDS);
+        callers.submit(fetch("/search?section=news", null)).get(5, TimeUnit.SECONDS);
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void cancelledCall_throwsCanceled() throws Exception {
+        GuardianClient.Call call = new GuardianClient(new NewsItemParser())
+                .newCall(url("/search?section=news"), null, null);
+        call.cancel();
+        try {
+            call.execute();
+            fail("expected the call to be cancelled");
+        } catch (InterruptedIOException expected) {
+            assertEquals("Canceled", expected.getMessage());
+        }
+    }
+
+    private Callable<NewsResponse> fetch(final String path, final CancellationToken cancellation) {
+        return new Callable<NewsResponse>() {
+            @Override
+            public NewsResponse call() throws Exception {
+                return coalescer.fetch(url(path), null, null, cancellation);
+            }
+        };
+    }
+
+    private void waitForInFlight(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalescer.getInFlightCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void assertCanceled(Future<NewsResponse> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the request to be cancelled");
+        } catch (ExecutionException expected) {
+            assertTrue(String.valueOf(expected.getCause()), expected.getCause() instanceof InterruptedIOException);
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = RequestCoalescerTest.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link ResilientClient} against a local stand-in for the Guardian API that fails the
+ * way it is scripted to: error statuses with or without Retry-After, dropped connections,
+ * and slow answers.
+ */
+public class ResilientClientTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_DELAY_MILLIS = 10;
+    private static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final int FAILURE_THRESHOLD = 4;
+    private static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * How the stand-in answers one request.
+     */
+    private static final class Fault {
+        final int status;
+        final String retryAfter;
+        final long delayMillis;
+        final boolean dropConnection;
+
+        Fault(int status, String retryAfter, long delayMillis, boolean dropConnection) {
+            this.status = status;
+            this.retryAfter = retryAfter;
+            this.delayMillis = delayMillis;
+            this.dropConnection = dropConnection;
+        }
+    }
+
+    private static Fault status(int status) {
+        return new Fault(status, null, 0, false);
+    }
+
+    private static Fault status(int status, String retryAfter) {
+        return new Fault(status, retryAfter, 0, false);
+    }
+
+    private static Fault slow(long delayMillis) {
+        return new Fault(200, null, delayMillis, false);
+    }
+
+    private static Fault dropConnection() {
+        return new Fault(0, null, 0, true);
+    }
+
+    private HttpServer server;
+    private byte[] body;
+    // answers for the coming requests, in order; requests beyond them succeed
+    private final ConcurrentLinkedQueue<Fault> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private long now = TimeUnit.DAYS.toMillis(17000);
+    private final ResilientClient.Clock clock = new ResilientClient.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        body = readFixture("search_50.json");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                Fault fault = script.poll();
+                if (fault == null) {
+                    fault = status(200);
+                }
+                if (fault.dropConnection) {
+                    exchange.close();
+                    return;
+                }
+                if (fault.delayMillis > 0) {
+                    try {
+                        Thread.sleep(fault.delayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (fault.retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", fault.retryAfter);
+                }
+                if (fault.status != 200) {
+                    exchange.sendResponseHeaders(fault.status, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(body);
+                    out.close();
+                } catch (IOException e) {
+                    // the client hung up, e.g. a hedged request that lost
+                }
+            }
+        });
+        // slow answers mustn't hold up the hedged requests that race them
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private ResilientClient newClient(boolean hedging) {
+        return newClient(hedging, null);
+    }
+
+    private ResilientClient newClient(boolean hedging, QuotaScheduler quota) {
+        return new ResilientClient(new NewsItemParser(),
+                new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, BASE_DELAY_MILLIS * 8, MAX_RETRY_AFTER_MILLIS,
+                        new Random(42)),
+                new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS), hedging, clock, quota);
+    }
+
+    @Test
+    public void serverErrors_areRetried() throws IOException {
+        ResilientClient client = newClient(false);
+        script.add(status(503));
+        script.add(status(500));
+
+        NewsResponse response = client.fetch(url(), null, null);
+
+        assertEquals(50, response.getNewsItems().size());
+        assertEquals(3, requestCount.get());
+        assertEquals(2, client.getRetryCount());
+    }
+
+    @Test
+    public void droppedConnection_isRetried() throws IOException {
+        ResilientClient client = newClient(false);
+        script.add(dropConnection());
+
+        assertEquals(50, client.fetch(url(), null, null).getNewsItems().size());
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void retries_stopAtMaxAttempts() throws IOException {
+        ResilientClient client = newClient(false);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            script.add(status(502));
+        }
+
+        try {
+            client.fetch(url(), null, null);
+            fail("expected the last error");
+        } catch (HttpStatusException e) {
+            assertEquals(502, e.getStatusCode());
+        }
+        assertEquals(MAX_ATTEMPTS, requestCount.get());
+    }
+
+    @Test
+    public void clientErrors_areNotRetried() throws IOException {
+        ResilientClient client = newClient(false);
+        script.add(status(404));
+
+        try {
+            client.fetch(url(), null, null);
+            fail("expected the 404");
+        } catch (HttpStatusException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void tooManyRequests_waitsForRetryAfter() throws IOException {
+        ResilientClient client = newClient(false);
+        script.add(status(429, "1"));
+
+        long start = System.nanoTime();
+        client.fetch(url(), null, null);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void retryAfterBeyondTheMaximum_failsTheRequest() throws IOException {
+        ResilientClient client = newClient(false);
+        script.add(status(503, "3600"));
+
+        long start = System.nanoTime();
+        try {
+            client.fetch(url(), null, null);
+            fail("expected the 503");
+        } catch (HttpStatusException e) {
+            assertEquals(TimeUnit.HOURS.toMillis(1), e.getRetryAfterMillis());
+        }
+        assertEquals(1, requestCount.get());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void cancel_abortsTheWaitBeforeARetry() throws Exception {
+        ResilientClient client = newClient(false);
+        script.add(status(503, "5"));
+        final GuardianClient.Call call = client.newCall(url(), null, null);
+        Executors.newSingleThreadScheduledExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        try {
+            call.execute();
+            fail("expected the call to be cancelled");
+        } catch (InterruptedIOException expected) {
+            // cancelled
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void circuitBreaker_failsFastWhileOpen_thenLetsATrialThrough() throws IOException {
+        ResilientClient client = newClient(false);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            script.add(status(503));
+        }
+        // three failed attempts, then a fourth that opens the circuit
+        fetchExpectingFailure(client);
+        fetchExpectingFailure(client);
+        assertEquals(FAILURE_THRESHOLD, requestCount.get());
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker().getState(now));
+
+        try {
+            client.fetch(url(), null, null);
+            fail("expected to fail fast");
+        } catch (CircuitBreaker.OpenException expected) {
+            // not requested
+        }
+        assertEquals(FAILURE_THRESHOLD, requestCount.get());
+        assertEquals(1, client.getShortCircuitCount());
+
+        // after a while a trial request goes out, and its success closes the circuit
+        now += OPEN_MILLIS;
+        assertEquals(50, client.fetch(url(), null, null).getNewsItems().size());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState(now));
+        assertTrue(client.isHealthy());
+    }
+
+    @Test
+    public void circuitBreaker_reopensWhenTheTrialFails() throws IOException {
+        ResilientClient client = newClient(false);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            script.add(status(500));
+        }
+        fetchExpectingFailure(client);
+        fetchExpectingFailure(client);
+
+        now += OPEN_MILLIS;
+        script.add(status(500));
+        fetchExpectingFailure(client);
+        assertEquals(FAILURE_THRESHOLD + 1, requestCount.get());
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker().getState(now));
+    }
+
+    @Test
+    public void slowRequest_isHedged() throws IOException {
+        ResilientClient client = newClient(true);
+        // time enough requests that the latency percentile can be trusted
+        for (int i = 0; i < ResilientClient.MIN_HEDGE_SAMPLES; i++) {
+            client.fetch(url(), null, null);
+        }
+        int warmUpRequests = requestCount.get();
+        script.add(slow(TimeUnit.SECONDS.toMillis(3)));
+
+        long start = System.nanoTime();
+        NewsResponse response = client.fetch(url(), null, null);
+
+        assertEquals(50, response.getNewsItems().size());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(warmUpRequests + 2, requestCount.get());
+        assertEquals(1, client.getHedgeCount());
+        assertEquals(1, client.getHedgeWinCount());
+    }
+
+    @Test
+    public void slowRequest_isNotHedgedWhenTheQuotaIsShort() throws IOException {
+        // a bucket that holds just enough for the warm up and refills too slowly to matter
+        QuotaScheduler quota = new QuotaScheduler(ResilientClient.MIN_HEDGE_SAMPLES, 0.001,
+                new QuotaScheduler.Clock() {
+                    @Override
+                    public long nanoTime() {
+                        return 0;
+                    }
+                });
+        ResilientClient client = newClient(true, quota);
+        for (int i = 0; i < ResilientClient.MIN_HEDGE_SAMPLES; i++) {
+            quota.acquire(url(), QuotaScheduler.Priority.FOREGROUND, null);
+            client.fetch(url(), null, null);
+        }
+        script.add(slow(500));
+
+        client.fetch(url(), null, null);
+
+        assertEquals(ResilientClient.MIN_HEDGE_SAMPLES + 1, requestCount.get());
+        assertEquals(0, client.getHedgeCount());
+        assertEquals(1, client.getHedgeDeniedCount());
+    }
+
+    @Test
+    public void retries_areChargedToTheQuota() throws IOException {
+        QuotaScheduler quota = new QuotaScheduler(10, 0.001, new QuotaScheduler.Clock() {
+            @Override
+            public long nanoTime() {
+                return 0;
+            }
+        });
+        ResilientClient client = newClient(false, quota);
+        script.add(status(503));
+        script.add(status(503));
+
+        quota.acquire(url(), QuotaScheduler.Priority.FOREGROUND, null);
+        client.fetch(url(), null, null);
+
+        assertEquals(2, quota.getChargedCount());
+        assertEquals(7, quota.getAvailableTokens(url()), 0.001);
+    }
+
+    @Test
+    public void hedging_waitsForTimings() throws IOException {
+        ResilientClient client = newClient(true);
+        script.add(slow(300));
+
+        client.fetch(url(), null, null);
+
+        assertEquals(1, requestCount.get());
+        assertEquals(0, client.getHedgeCount());
+    }
+
+    private void fetchExpectingFailure(ResilientClient client) throws IOException {
+        try {
+            client.fetch(url(), null, null);
+            fail("expected the request to fail");
+        } catch (HttpStatusException expected) {
+            // failed after its retries
+        }
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/search?format=json");
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = ResilientClientTest.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link RetryPolicy} retries what may succeed, backs off within its bounds, and
+ * honors Retry-After.
+ */
+public class RetryPolicyTest {
+
+    /**
+     * Jitter that always lands at the same point between half the cap and the cap.
+     */
+    private static Random fixedJitter(final double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+
+    private static final HttpStatusException UNAVAILABLE =
+            new HttpStatusException(503, HttpStatusException.NO_RETRY_AFTER);
+
+    @Test
+    public void backoff_doublesUpToTheCap() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 30000, fixedJitter(0.999999));
+
+        assertEquals(99, policy.retryDelayMillis(1, UNAVAILABLE));
+        assertEquals(199, policy.retryDelayMillis(2, UNAVAILABLE));
+        assertEquals(399, policy.retryDelayMillis(3, UNAVAILABLE));
+        assertEquals(799, policy.retryDelayMillis(4, UNAVAILABLE));
+        assertEquals(999, policy.retryDelayMillis(5, UNAVAILABLE));
+        assertEquals(999, policy.retryDelayMillis(9, UNAVAILABLE));
+    }
+
+    @Test
+    public void backoff_isAtLeastHalfTheCap() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 30000, fixedJitter(0));
+
+        assertEquals(50, policy.retryDelayMillis(1, UNAVAILABLE));
+        assertEquals(400, policy.retryDelayMillis(4, UNAVAILABLE));
+        assertEquals(500, policy.retryDelayMillis(9, UNAVAILABLE));
+    }
+
+    @Test
+    public void backoff_staysWithinItsBounds() {
+        RetryPolicy policy = new RetryPolicy(100, 100, 1000, 30000, new Random(7));
+
+        for (int attempts = 1; attempts < 100; attempts++) {
+            long capMillis = Math.min(1000, 100L << Math.min(attempts - 1, 20));
+            long delayMillis = policy.retryDelayMillis(attempts, UNAVAILABLE);
+            assertTrue(delayMillis >= capMillis / 2);
+            assertTrue(delayMillis <= capMillis);
+        }
+    }
+
+    @Test
+    public void retries_stopAtMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000, 30000, fixedJitter(0));
+
+        assertTrue(policy.retryDelayMillis(2, UNAVAILABLE) >= 0);
+        assertEquals(-1, policy.retryDelayMillis(3, UNAVAILABLE));
+    }
+
+    @Test
+    public void tooManyRequests_backsOffLonger() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 10000, 30000, fixedJitter(0));
+
+        assertEquals(200, policy.retryDelayMillis(1,
+                new HttpStatusException(429, HttpStatusException.NO_RETRY_AFTER)));
+    }
+
+    @Test
+    public void retryAfter_isHonored() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000, 30000, fixedJitter(0));
+
+        assertEquals(5000, policy.retryDelayMillis(1, new HttpStatusException(429, 5000)));
+        assertEquals(0, policy.retryDelayMillis(1, new HttpStatusException(503, 0)));
+    }
+
+    @Test
+    public void retryAfterBeyondTheMaximum_givesUp() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000, 30000, fixedJitter(0));
+
+        assertEquals(-1, policy.retryDelayMillis(1, new HttpStatusException(503, 30001)));
+    }
+
+    @Test
+    public void isRetryable() {
+        assertTrue(RetryPolicy.isRetryable(new HttpStatusException(500, HttpStatusException.NO_RETRY_AFTER)));
+        assertTrue(RetryPolicy.isRetryable(new HttpStatusException(504, HttpStatusException.NO_RETRY_AFTER)));
+        assertTrue(RetryPolicy.isRetryable(new IOException("Connection reset")));
+        assertTrue(RetryPolicy.isRetryable(new SocketTimeoutException("Read timed out")));
+
+        assertFalse(RetryPolicy.isRetryable(new HttpStatusException(400, HttpStatusException.NO_RETRY_AFTER)));
+        assertFalse(RetryPolicy.isRetryable(new HttpStatusException(404, HttpStatusException.NO_RETRY_AFTER)));
+        assertFalse(RetryPolicy.isRetryable(new HttpStatusException(501, HttpStatusException.NO_RETRY_AFTER)));
+        assertFalse(RetryPolicy.isRetryable(new InterruptedIOException("Canceled")));
+        assertFalse(RetryPolicy.isRetryable(new CircuitBreaker.OpenException()));
+    }
+
+    @Test
+    public void parseRetryAfter_readsSeconds() {
+        assertEquals(120000, HttpStatusException.parseRetryAfter("120", 0));
+        assertEquals(0, HttpStatusException.parseRetryAfter(" 0 ", 0));
+    }
+
+    @Test
+    public void parseRetryAfter_readsAnHttpDate() {
+        // Sun, 06 Nov 1994 08:49:37 GMT
+        long dateMillis = 784111777000L;
+
+        assertEquals(7000, HttpStatusException.parseRetryAfter("Sun, 06 Nov 1994 08:49:37 GMT",
+                dateMillis - 7000));
+        assertEquals(0, HttpStatusException.parseRetryAfter("Sun, 06 Nov 1994 08:49:37 GMT",
+                dateMillis + 7000));
+    }
+
+    @Test
+    public void parseRetryAfter_ignoresUnreadableValues() {
+        assertEquals(HttpStatusException.NO_RETRY_AFTER, HttpStatusException.parseRetryAfter(null, 0));
+        assertEquals(HttpStatusException.NO_RETRY_AFTER, HttpStatusException.parseRetryAfter("", 0));
+        assertEquals(HttpStatusException.NO_RETRY_AFTER, HttpStatusException.parseRetryAfter("-5", 0));
+        assertEquals(HttpStatusException.NO_RETRY_AFTER, HttpStatusException.parseRetryAfter("soon", 0));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link SearchResultCache} shares results between ways of typing a query, answers
+ * longer queries from shorter ones, and keeps only the recent queries.
+ */
+public class SearchResultCacheTest {
+
+    private static final NewsItem VOTE = newsItem("1", "Brexit vote delayed", "MPs will vote next week");
+    private static final NewsItem TALKS = newsItem("2", "Brexit talks resume", "Negotiators meet in Brussels");
+    private static final NewsItem VOTERS = newsItem("3", "What voters think", "A poll on Brexit");
+
+    @Test
+    public void normalize_ignoresCaseSpacingAndPunctuation() {
+        assertEquals("brexit vote", SearchResultCache.normalize("  Brexit,  VOTE! "));
+        assertEquals("", SearchResultCache.normalize(" ? "));
+    }
+
+    @Test
+    public void get_returnsTheResultsOfTheNormalizedQuery() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.put("brexit", Arrays.asList(VOTE, TALKS));
+
+        assertEquals(Arrays.asList(VOTE, TALKS), cache.get(SearchResultCache.normalize("Brexit ")));
+        assertNull(cache.get("brexit vote"));
+    }
+
+    @Test
+    public void get_skipsOldResults() {
+        SearchResultCache cache = new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES, -1);
+        cache.put("brexit", Arrays.asList(VOTE, TALKS));
+
+        assertNull(cache.get("brexit"));
+        // still good enough to narrow down while a longer query is requested
+        assertEquals(Arrays.asList(VOTE), cache.getFromPrefix("brexit delay"));
+    }
+
+    @Test
+    public void getFromPrefix_narrowsDownTheLongestShorterQuery() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.put("br", Arrays.asList(VOTE, TALKS, VOTERS));
+        cache.put("brexit", Arrays.asList(VOTE, TALKS, VOTERS));
+
+        // every word has to start a word of the story
+        assertEquals(Arrays.asList(VOTE, VOTERS), cache.getFromPrefix("brexit vot"));
+        assertEquals(Arrays.asList(TALKS), cache.getFromPrefix("brexit brussels"));
+        assertEquals(Collections.<NewsItem>emptyList(), cache.getFromPrefix("brexit deal"));
+        assertNull(cache.getFromPrefix("eu"));
+        assertNull(cache.getFromPrefix("br"));
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedQuery() {
+        SearchResultCache cache = new SearchResultCache(2, SearchResultCache.DEFAULT_MAX_AGE_MILLIS);
+        List<NewsItem> results = Arrays.asList(VOTE);
+        cache.put("brexit", results);
+        cache.put("vote", results);
+        cache.get("brexit");
+        cache.put("talks", results);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("brexit") != null);
+        assertNull(cache.get("vote"));
+    }
+
+    private static NewsItem newsItem(String id, String headline, String trailText) {
+        return new NewsItem("Politics", headline, trailText, "Political correspondent", 0,
+                "https://www.theguardian.com/politics/" + id, "");
+    }
+}